@@ -0,0 +1,109 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.services.BankAccountService;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountOperation inserts per second, before and after the switch from IDENTITY ids to pooled sequences.
+ * <ul>
+ *     <li>identity: the old mapping, restored through META-INF/identity-orm.xml, without JDBC batching</li>
+ *     <li>pooled: the current mapping with hibernate.jdbc.batch_size=50</li>
+ * </ul>
+ * The database is reached over H2's TCP server so each statement costs a network round-trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountOperationInsertBenchmark {
+
+    private static final int OPERATIONS_PER_TRANSACTION = 500;
+
+    @Param({"identity", "pooled"})
+    public String idGeneration;
+
+    private Server server;
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private BankAccountRepository bankAccountRepository;
+    private AccountOperationRepository accountOperationRepository;
+    private UUID accountId;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = BenchmarkContexts.startTcpServer();
+        if ("identity".equals(idGeneration)) {
+            context = BenchmarkContexts.start(BenchmarkContexts.tcpUrl(server),
+                    "spring.jpa.mapping-resources=META-INF/identity-orm.xml",
+                    "spring.jpa.properties.hibernate.jdbc.batch_size=0");
+        } else {
+            context = BenchmarkContexts.start(BenchmarkContexts.tcpUrl(server),
+                    "spring.jpa.properties.hibernate.jdbc.batch_size=50");
+        }
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        bankAccountRepository = context.getBean(BankAccountRepository.class);
+        accountOperationRepository = context.getBean(AccountOperationRepository.class);
+
+        BankAccountService bankAccountService = context.getBean(BankAccountService.class);
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setName("Benchmark");
+        customerDTO.setEmail("benchmark@gmail.com");
+        CustomerDTO customer = bankAccountService.saveCustomer(customerDTO);
+        accountId = UUID.fromString(bankAccountService.saveCurrentBankAccount(BigDecimal.ZERO, BigDecimal.ZERO, customer.getId()).getId());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_TRANSACTION)
+    public void insertOperations() {
+        transactionTemplate.executeWithoutResult(status -> {
+            BankAccount bankAccount = bankAccountRepository.getReferenceById(accountId);
+            List<AccountOperation> accountOperations = new ArrayList<>(OPERATIONS_PER_TRANSACTION);
+            for (int i = 0; i < OPERATIONS_PER_TRANSACTION; i++) {
+                AccountOperation accountOperation = new AccountOperation();
+                accountOperation.setType(OperationType.CREDIT);
+                accountOperation.setAmount(10_00);
+                accountOperation.setDescription("Credit");
+                accountOperation.setOperationDate(new Date());
+                accountOperation.setBankAccount(bankAccount);
+                accountOperations.add(accountOperation);
+            }
+            accountOperationRepository.saveAll(accountOperations);
+        });
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.AccountHistoryCursorDTO;
+import com.example.ebankbackend.dtos.AccountHistoryDTO;
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.search.CustomerSearchIndex;
+import com.example.ebankbackend.services.BankAccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BankAccountService hot paths against H2 in MySQL mode.
+ * <p>
+ * Every account starts with {@code historyDepth} operations. The thread count is not a JMH parameter:
+ * run the suite through {@link BenchmarkRunner}, which repeats it for each thread count and writes one
+ * JSON result file per run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BankAccountServiceBenchmark {
+
+    private static final int ACCOUNTS = 16;
+    private static final int CUSTOMERS = 10_000;
+    private static final int PAGE_SIZE = 20;
+    private static final String[] KEYWORDS = {"custom", "omer12", "mer99", "gmail"};
+
+    @Param({"100", "10000"})
+    public int historyDepth;
+
+    private ConfigurableApplicationContext context;
+    private BankAccountService bankAccountService;
+    private List<String> accountIds;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = BenchmarkContexts.start(BenchmarkContexts.inMemoryUrl());
+        bankAccountService = context.getBean(BankAccountService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        List<Object[]> customers = new ArrayList<>();
+        for (long id = 1; id <= CUSTOMERS; id++) {
+            customers.add(new Object[]{id, "Customer" + id, "customer" + id + "@gmail.com"});
+        }
+        jdbcTemplate.batchUpdate("insert into customer (id, name, email) values (?, ?, ?)", customers);
+        jdbcTemplate.execute("alter sequence customer_seq restart with " + (CUSTOMERS + 1));
+        context.getBean(CustomerSearchIndex.class).rebuild();
+
+        accountIds = new ArrayList<>();
+        long nextOperationId = 1;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String accountId = bankAccountService.saveCurrentBankAccount(BigDecimal.valueOf(1_000_000_000_000L), BigDecimal.ZERO, (long) (i + 1)).getId();
+            accountIds.add(accountId);
+            //amounts in cents, a history of 10.00 credits
+            jdbcTemplate.update("insert into account_operation (id, amount, balance_after, description, operation_date, type, bank_account_id) " +
+                            "select cast(? as bigint) + x, 1000, 1000 * x, 'Credit', dateadd('SECOND', x, timestamp '2020-01-01 00:00:00'), 'CREDIT', ? " +
+                            "from system_range(1, ?)",
+                    nextOperationId, toBytes(UUID.fromString(accountId)), historyDepth);
+            nextOperationId += historyDepth + 1;
+        }
+        jdbcTemplate.execute("alter sequence account_operation_seq restart with " + nextOperationId);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void debit() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        bankAccountService.debit(randomAccount(), BigDecimal.ONE, "Debit");
+    }
+
+    @Benchmark
+    public void credit() throws BankAccountNotFoundException {
+        bankAccountService.credit(randomAccount(), BigDecimal.ONE, "Credit");
+    }
+
+    @Benchmark
+    public void transfer() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(ACCOUNTS);
+        int destination = (source + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        bankAccountService.transfer(accountIds.get(source), accountIds.get(destination), BigDecimal.ONE);
+    }
+
+    //the offset page furthest from the start, the worst case of /pageOperations
+    @Benchmark
+    public AccountHistoryDTO getAccountHistoryLastPage() throws BankAccountNotFoundException {
+        int lastPage = Math.max(0, (historyDepth - 1) / PAGE_SIZE);
+        return bankAccountService.getAccountHistory(randomAccount(), lastPage, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public AccountHistoryCursorDTO getAccountHistoryCursor() throws BankAccountNotFoundException, InvalidCursorException {
+        return bankAccountService.getAccountHistory(randomAccount(), null, PAGE_SIZE, false);
+    }
+
+    @Benchmark
+    public List<CustomerDTO> searchCustomers() {
+        return bankAccountService.searchCustomers(KEYWORDS[ThreadLocalRandom.current().nextInt(KEYWORDS.length)]);
+    }
+
+    private String randomAccount() {
+        return accountIds.get(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.EbankBackendApplication;
+import org.h2.tools.Server;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts the application, without its web layer unless asked, against an H2 database in MySQL mode,
+ * the stand-in for the production MySQL server in every benchmark.
+ */
+final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    /**
+     * @param url        JDBC url of the database, see {@link #inMemoryUrl()} and {@link #startTcpServer()}
+     * @param properties extra "key=value" application properties
+     */
+    static ConfigurableApplicationContext start(String url, String... properties) {
+        return start(WebApplicationType.NONE, url, properties);
+    }
+
+    /**
+     * Same as {@link #start(String, String...)} with the embedded web server, on a random port unless
+     * {@code server.port} is given.
+     */
+    static ConfigurableApplicationContext startWeb(String url, String... properties) {
+        List<String> withPort = new ArrayList<>(List.of(properties));
+        if (withPort.stream().noneMatch(property -> property.startsWith("server.port="))) withPort.add("server.port=0");
+        return start(WebApplicationType.SERVLET, url, withPort.toArray(new String[0]));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String url, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--ebank.seed.enabled=false",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(EbankBackendApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(new String[0]));
+    }
+
+    static String inMemoryUrl() {
+        return "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    }
+
+    /**
+     * An H2 TCP server, so that every statement pays a real socket round-trip like it does against MySQL.
+     */
+    static Server startTcpServer() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            int port = socket.getLocalPort();
+            socket.close();
+            return Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String tcpUrl(Server server) {
+        return "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:" + UUID.randomUUID()
+                + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    }
+}
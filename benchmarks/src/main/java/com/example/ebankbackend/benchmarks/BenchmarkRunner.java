@@ -0,0 +1,68 @@
+package com.example.ebankbackend.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs benchmarks once per thread count and writes each run as JSON, {@code <results>/<label>-threads-<n>.json},
+ * so that results can be diffed between releases.
+ * <p>
+ * Arguments: {@code [--threads 1,4,16] [--results target/jmh-results] [--label ebank] <regular JMH arguments>}.
+ * Example:
+ * <pre>
+ * mvn -f benchmarks/pom.xml package exec:exec -Djmh.main=com.example.ebankbackend.benchmarks.BenchmarkRunner \
+ *     -Djmh.args="--threads 1,8 --label 0.0.1 BankAccountServiceBenchmark -p historyDepth=10000"
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String threads = "1,4,16";
+        String results = "target/jmh-results";
+        String label = "ebank";
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = args[++i];
+                    break;
+                case "--results":
+                    results = args[++i];
+                    break;
+                case "--label":
+                    label = args[++i];
+                    break;
+                default:
+                    jmhArgs.add(args[i]);
+            }
+        }
+
+        File directory = new File(results);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + directory);
+        }
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        for (String threadCount : threads.split(",")) {
+            int count = Integer.parseInt(threadCount.trim());
+            File result = new File(directory, label + "-threads-" + count + ".json");
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.getPath())
+                    .build();
+            new Runner(options).run();
+            System.out.println("results written to " + result.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.repositories.CustomerRepository;
+import com.example.ebankbackend.search.CustomerSearchIndex;
+import com.example.ebankbackend.services.BankAccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer search latency over a large customer table.
+ * <ul>
+ *     <li>like: the former query, {@code name like '%kw%'} through CustomerRepository.searchCustomer</li>
+ *     <li>index: BankAccountService.searchCustomers, the trigram index plus a findAllById of the top 20</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CustomerSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {"Mohamed", "Fatima", "Youssef", "Khadija", "Hassan", "Salma",
+            "Omar", "Imane", "Karim", "Nadia", "Anas", "Meryem", "Adil", "Hajar", "Rachid", "Sara"};
+    private static final String[] LAST_NAMES = {"Alaoui", "Bennani", "Tazi", "El Idrissi", "Berrada", "Chraibi",
+            "Fassi", "Amrani", "Kettani", "Lahlou", "Sebti", "Ouazzani", "Naciri", "Benjelloun", "Squalli", "Zniber"};
+    private static final String[] KEYWORDS = {"lhou", "Benj", "ssan ber", "Khadija Tazi", "zniber"};
+
+    @Param({"1000000"})
+    public int customers;
+
+    @Param({"like", "index"})
+    public String search;
+
+    private ConfigurableApplicationContext context;
+    private CustomerRepository customerRepository;
+    private BankAccountService bankAccountService;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContexts.start(BenchmarkContexts.inMemoryUrl());
+        customerRepository = context.getBean(CustomerRepository.class);
+        bankAccountService = context.getBean(BankAccountService.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= customers; id++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String email = (first + "." + last).toLowerCase().replace(' ', '-') + id + "@example.com";
+            rows.add(new Object[]{(long) id, first + " " + last, email});
+            if (rows.size() == 10_000 || id == customers) {
+                jdbcTemplate.batchUpdate("insert into customer (id, name, email) values (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        //the rows were written behind the service's back
+        context.getBean(CustomerSearchIndex.class).rebuild();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int searchCustomers() {
+        String keyword = KEYWORDS[next++ % KEYWORDS.length];
+        if ("like".equals(search)) {
+            List<Customer> customers = customerRepository.searchCustomer("%" + keyword + "%");
+            return customers.size();
+        }
+        List<CustomerDTO> customers = bankAccountService.searchCustomers(keyword);
+        return customers.size();
+    }
+}
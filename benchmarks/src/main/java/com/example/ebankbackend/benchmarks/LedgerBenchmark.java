@@ -0,0 +1,99 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.services.BankAccountService;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debits, credits and transfers through BankAccountService with the balances in the database (conditional
+ * updates) against the in-memory ledger, its journal fsynced to a temporary directory. The database is an
+ * H2 TCP server, so every statement of the JPA path pays a socket round-trip as it would against MySQL.
+ * Run it through {@link BenchmarkRunner} for several thread counts: the ledger groups concurrent
+ * operations of a shard into one fsync, so it gains with the number of callers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+
+    private static final int ACCOUNTS = 64;
+
+    @Param({"conditional", "ledger"})
+    public String updateMode;
+
+    private Server server;
+    private ConfigurableApplicationContext context;
+    private BankAccountService bankAccountService;
+    private List<String> accountIds;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = BenchmarkContexts.startTcpServer();
+        context = BenchmarkContexts.start(BenchmarkContexts.tcpUrl(server),
+                "ebank.balance.update-mode=" + updateMode,
+                "ebank.ledger.journal-dir=" + Files.createTempDirectory("ledger-benchmark"));
+        bankAccountService = context.getBean(BankAccountService.class);
+        accountIds = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            CustomerDTO customerDTO = new CustomerDTO();
+            customerDTO.setName("Customer" + i);
+            customerDTO.setEmail("customer" + i + "@gmail.com");
+            Long customerId = bankAccountService.saveCustomer(customerDTO).getId();
+            accountIds.add(bankAccountService.saveCurrentBankAccount(BigDecimal.valueOf(1_000_000_000), BigDecimal.ZERO, customerId).getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public void debit() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        bankAccountService.debit(randomAccount(), BigDecimal.ONE, "Debit");
+    }
+
+    @Benchmark
+    public void credit() throws BankAccountNotFoundException {
+        bankAccountService.credit(randomAccount(), BigDecimal.ONE, "Credit");
+    }
+
+    @Benchmark
+    public void transfer() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(ACCOUNTS);
+        int destination = (source + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        bankAccountService.transfer(accountIds.get(source), accountIds.get(destination), BigDecimal.ONE);
+    }
+
+    private String randomAccount() {
+        return accountIds.get(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.dtos.SavingBankAccountDTO;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.entities.SavingAccount;
+import com.example.ebankbackend.support.Money;
+import org.springframework.beans.BeanUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The BeanUtils based mapping BankAccountMapperImpl used before it was specialized, kept as the baseline.
+ */
+final class LegacyBankAccountMapper {
+
+    CustomerDTO fromCustomer(Customer customer) {
+        CustomerDTO customerDto = new CustomerDTO();
+        customerDto.setId(customer.getId());
+        customerDto.setName(customer.getName());
+        customerDto.setEmail(customer.getEmail());
+        return customerDto;
+    }
+
+    SavingBankAccountDTO fromSavingBankAccount(SavingAccount savingAccount) {
+        SavingBankAccountDTO savingBankAccountDTO = new SavingBankAccountDTO();
+        BeanUtils.copyProperties(savingAccount, savingBankAccountDTO);
+        savingBankAccountDTO.setBalance(Money.fromMinorUnits(savingAccount.getBalance()));
+        savingBankAccountDTO.setId(savingAccount.getId().toString());
+        savingBankAccountDTO.setCustomerDTO(fromCustomer(savingAccount.getCustomer()));
+        savingBankAccountDTO.setType(savingAccount.getClass().getSimpleName());
+        return savingBankAccountDTO;
+    }
+
+    CurrentBankAccountDTO fromCurrentBankAccount(CurrentAccount currentAccount) {
+        CurrentBankAccountDTO currentBankAccountDTO = new CurrentBankAccountDTO();
+        BeanUtils.copyProperties(currentAccount, currentBankAccountDTO);
+        //money is stored in minor units now, BeanUtils skips properties whose types differ
+        currentBankAccountDTO.setBalance(Money.fromMinorUnits(currentAccount.getBalance()));
+        currentBankAccountDTO.setOverDraft(Money.fromMinorUnits(currentAccount.getOverDraft()));
+        currentBankAccountDTO.setId(currentAccount.getId().toString());
+        currentBankAccountDTO.setCustomerDTO(fromCustomer(currentAccount.getCustomer()));
+        currentBankAccountDTO.setType(currentAccount.getClass().getSimpleName());
+        return currentBankAccountDTO;
+    }
+
+    //what BankAccountServiceImpl.getBankAccountList did with each account
+    List<BankAccountDTO> fromBankAccounts(List<? extends BankAccount> bankAccounts) {
+        return bankAccounts.stream().map(bankAccount -> {
+            if (bankAccount instanceof SavingAccount) {
+                return fromSavingBankAccount((SavingAccount) bankAccount);
+            } else {
+                return fromCurrentBankAccount((CurrentAccount) bankAccount);
+            }
+        }).collect(Collectors.toList());
+    }
+
+    AccountOperationDTO fromAccountOperation(AccountOperation accountOperation) {
+        AccountOperationDTO accountOperationDTO = new AccountOperationDTO();
+        BeanUtils.copyProperties(accountOperation, accountOperationDTO);
+        accountOperationDTO.setAmount(Money.fromMinorUnits(accountOperation.getAmount()));
+        accountOperationDTO.setBalanceAfter(Money.fromMinorUnits(accountOperation.getBalanceAfter()));
+        return accountOperationDTO;
+    }
+}
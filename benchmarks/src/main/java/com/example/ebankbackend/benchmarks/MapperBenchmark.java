@@ -0,0 +1,96 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.enums.AccountStatus;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.mappers.BankAccountMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping cost, BeanUtils.copyProperties (legacy) against the hand-written BankAccountMapperImpl.
+ * Run with {@code -prof gc} to compare allocations as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    //a page of accounts owned by a few customers
+    private static final int PAGE_SIZE = 100;
+    private static final int CUSTOMERS_PER_PAGE = 10;
+
+    @Param({"legacy", "specialized"})
+    public String mapper;
+
+    private final LegacyBankAccountMapper legacyMapper = new LegacyBankAccountMapper();
+    private final BankAccountMapperImpl specializedMapper = new BankAccountMapperImpl();
+    private AccountOperation accountOperation;
+    private CurrentAccount currentAccount;
+    private List<BankAccount> page;
+
+    @Setup
+    public void setUp() {
+        accountOperation = new AccountOperation(1L, new Date(), 100_00, 1100_00, OperationType.CREDIT, null, "Credit");
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Customer customer = new Customer();
+            customer.setId((long) (i % CUSTOMERS_PER_PAGE));
+            customer.setName("Customer" + i % CUSTOMERS_PER_PAGE);
+            customer.setEmail("customer" + i % CUSTOMERS_PER_PAGE + "@gmail.com");
+            CurrentAccount account = new CurrentAccount(900_00);
+            account.setId(UUID.randomUUID());
+            account.setBalance((1000 + i) * 100L);
+            account.setCreationDat(new Date());
+            account.setStatus(AccountStatus.ACTIVATED);
+            account.setCustomer(customer);
+            page.add(account);
+        }
+        currentAccount = (CurrentAccount) page.get(0);
+    }
+
+    @Benchmark
+    public AccountOperationDTO fromAccountOperation() {
+        return "legacy".equals(mapper)
+                ? legacyMapper.fromAccountOperation(accountOperation)
+                : specializedMapper.fromAccountOperation(accountOperation);
+    }
+
+    @Benchmark
+    public CurrentBankAccountDTO fromCurrentBankAccount() {
+        return "legacy".equals(mapper)
+                ? legacyMapper.fromCurrentBankAccount(currentAccount)
+                : specializedMapper.fromCurrentBankAccount(currentAccount);
+    }
+
+    @Benchmark
+    public List<BankAccountDTO> fromBankAccountPage() {
+        return "legacy".equals(mapper)
+                ? legacyMapper.fromBankAccounts(page)
+                : specializedMapper.fromBankAccounts(page);
+    }
+}
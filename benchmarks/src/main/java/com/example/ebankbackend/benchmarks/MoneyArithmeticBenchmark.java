@@ -0,0 +1,106 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.support.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance arithmetic of debits and credits: the former double path against exact long minor units
+ * with overflow checks, alone and with the BigDecimal to minor units conversion every request pays once.
+ * Run with {@code -prof gc} to check the long path does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+
+    private static final int OPERATIONS = 1024;
+    private static final int ACCOUNTS = 64;
+
+    private final double[] doubleBalances = new double[ACCOUNTS];
+    private final long[] longBalances = new long[ACCOUNTS];
+    private final double[] doubleAmounts = new double[OPERATIONS];
+    private final long[] longAmounts = new long[OPERATIONS];
+    private final BigDecimal[] decimalAmounts = new BigDecimal[OPERATIONS];
+    private final boolean[] credits = new boolean[OPERATIONS];
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            longBalances[i] = 1_000_000_00L;
+            doubleBalances[i] = 1_000_000;
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            long cents = random.nextLong(1, 100_000_00L);
+            longAmounts[i] = cents;
+            decimalAmounts[i] = BigDecimal.valueOf(cents, Money.SCALE);
+            doubleAmounts[i] = decimalAmounts[i].doubleValue();
+            credits[i] = random.nextBoolean();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double doubleBalance() {
+        double[] balances = doubleBalances;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int account = i % ACCOUNTS;
+            double amount = doubleAmounts[i];
+            if (credits[i]) {
+                balances[account] = balances[account] + amount;
+            } else if (balances[account] >= amount) {
+                balances[account] = balances[account] - amount;
+            }
+        }
+        return balances[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long longBalance() {
+        long[] balances = longBalances;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int account = i % ACCOUNTS;
+            long amount = longAmounts[i];
+            if (credits[i]) {
+                balances[account] = Math.addExact(balances[account], amount);
+            } else if (balances[account] >= amount) {
+                balances[account] = Math.subtractExact(balances[account], amount);
+            }
+        }
+        return balances[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long longBalanceFromDecimal() {
+        long[] balances = longBalances;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int account = i % ACCOUNTS;
+            long amount = Money.toMinorUnits(decimalAmounts[i]);
+            if (credits[i]) {
+                balances[account] = Math.addExact(balances[account], amount);
+            } else if (balances[account] >= amount) {
+                balances[account] = Math.subtractExact(balances[account], amount);
+            }
+        }
+        return balances[0];
+    }
+}
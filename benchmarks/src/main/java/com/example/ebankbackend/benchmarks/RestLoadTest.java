@@ -0,0 +1,206 @@
+package com.example.ebankbackend.benchmarks;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.threads.VirtualThreads;
+import org.h2.tools.Server;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load against the REST layer: every client sends its next request as soon as the previous
+ * one answered, half keyset history pages and half debits, and the run reports throughput, latency, thread
+ * count and memory. Run it once per thread mode, each in its own JVM, and compare:
+ * <pre>
+ * mvn -f benchmarks/pom.xml package exec:exec -Djmh.main=com.example.ebankbackend.benchmarks.RestLoadTest \
+ *     -Djmh.args="--mode platform --clients 5000 --platform-threads 200"
+ * mvn -f benchmarks/pom.xml package exec:exec -Djmh.main=com.example.ebankbackend.benchmarks.RestLoadTest \
+ *     -Djmh.args="--mode virtual --clients 5000"
+ * </pre>
+ * The virtual mode needs a Java 21 runtime. Clients run in the same JVM on the non-blocking
+ * {@link HttpClient}, a handful of threads whatever the client count, so their footprint is the same in
+ * both modes. The database is an H2 TCP server unless {@code --url}, {@code --username} and
+ * {@code --password} point to a MySQL instance, which is where blocking on JDBC really shows. Add
+ * {@code -Djdk.tracePinnedThreads=short} to the virtual run to see which waits still pin a carrier thread.
+ * The virtual mode has not been run yet (no Java 21 runtime on the build machines), so there are no
+ * results to compare so far.
+ */
+public final class RestLoadTest {
+
+    private static final long BUCKET_MICROS = 100;
+    private static final int BUCKETS = 100_000;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    private final String baseUrl;
+    private final List<String> accountIds;
+    private volatile long measureFrom;
+    private volatile long deadline;
+
+    private RestLoadTest(String baseUrl, List<String> accountIds) {
+        this.baseUrl = baseUrl;
+        this.accountIds = accountIds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = "platform";
+        int clients = 5000;
+        int warmupSeconds = 10;
+        int seconds = 30;
+        int accounts = 1000;
+        int platformThreads = 200;
+        int poolSize = 10;
+        String url = null;
+        String username = "sa";
+        String password = "";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mode": mode = args[++i]; break;
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmupSeconds = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--accounts": accounts = Integer.parseInt(args[++i]); break;
+                case "--platform-threads": platformThreads = Integer.parseInt(args[++i]); break;
+                case "--pool-size": poolSize = Integer.parseInt(args[++i]); break;
+                case "--url": url = args[++i]; break;
+                case "--username": username = args[++i]; break;
+                case "--password": password = args[++i]; break;
+                default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        boolean virtual = "virtual".equals(mode);
+        if (virtual && !VirtualThreads.isSupported())
+            throw new IllegalStateException("--mode virtual needs a Java 21 runtime, this is Java " + Runtime.version());
+
+        Server server = url == null ? BenchmarkContexts.startTcpServer() : null;
+        ConfigurableApplicationContext context = BenchmarkContexts.startWeb(server != null ? BenchmarkContexts.tcpUrl(server) : url,
+                "spring.datasource.username=" + username,
+                "spring.datasource.password=" + password,
+                "ebank.threads.virtual.enabled=" + virtual,
+                "server.tomcat.threads.max=" + platformThreads,
+                "server.tomcat.max-connections=" + (clients + 1000),
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "spring.datasource.hikari.connection-timeout=60000");
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            RestLoadTest loadTest = new RestLoadTest(baseUrl, seed(context.getBean(BankAccountService.class), accounts));
+            loadTest.run(clients, warmupSeconds, seconds);
+            loadTest.report(mode, clients, seconds, poolSize);
+        } finally {
+            context.close();
+            if (server != null) server.stop();
+        }
+    }
+
+    private static List<String> seed(BankAccountService bankAccountService, int accounts) throws Exception {
+        List<String> accountIds = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            CustomerDTO customerDTO = new CustomerDTO();
+            customerDTO.setName("Customer" + i);
+            customerDTO.setEmail("customer" + i + "@gmail.com");
+            Long customerId = bankAccountService.saveCustomer(customerDTO).getId();
+            accountIds.add(bankAccountService.saveCurrentBankAccount(BigDecimal.valueOf(1_000_000_000), BigDecimal.ZERO, customerId).getId());
+        }
+        return accountIds;
+    }
+
+    private void run(int clients, int warmupSeconds, int seconds) throws InterruptedException {
+        long now = System.nanoTime();
+        measureFrom = now + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        deadline = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            next(done);
+        }
+        done.await();
+    }
+
+    private void next(CountDownLatch done) {
+        long start = System.nanoTime();
+        if (start >= deadline) {
+            done.countDown();
+            return;
+        }
+        httpClient.sendAsync(nextRequest(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (start >= measureFrom) record(start, response == null || response.statusCode() >= 400 || error != null);
+            next(done);
+        });
+    }
+
+    private HttpRequest nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String accountId = accountIds.get(random.nextInt(accountIds.size()));
+        if (random.nextBoolean()) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + accountId + "/cursorOperations?size=10"))
+                    .timeout(Duration.ofMinutes(2)).GET().build();
+        }
+        String body = "{\"accountId\":\"" + accountId + "\",\"amount\":0.01,\"description\":\"load\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/debit"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private void record(long start, boolean failed) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        latencies.incrementAndGet((int) Math.min(micros / BUCKET_MICROS, BUCKETS - 1));
+        completed.increment();
+        if (failed) errors.increment();
+    }
+
+    private void report(String mode, int clients, int seconds, int poolSize) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long total = completed.sum();
+        System.out.printf("mode=%s clients=%d seconds=%d hikari-pool=%d java=%s%n", mode, clients, seconds, poolSize, Runtime.version());
+        System.out.printf("throughput   %.1f req/s, %d errors%n", (double) total / seconds, errors.sum());
+        System.out.printf("latency ms   p50 %.1f  p99 %.1f  p99.9 %.1f%n", percentile(total, 0.50), percentile(total, 0.99), percentile(total, 0.999));
+        //virtual threads are not counted by the thread MXBean, only their carriers are
+        System.out.printf("threads      peak %d platform threads%n", ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        System.out.printf("memory       heap %d MB used after GC, %d MB committed; non-heap %d MB; %s%n",
+                memory.getHeapMemoryUsage().getUsed() >> 20, memory.getHeapMemoryUsage().getCommitted() >> 20,
+                memory.getNonHeapMemoryUsage().getUsed() >> 20, residentSetSize());
+    }
+
+    private double percentile(long total, double quantile) {
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latencies.get(i);
+            if (seen >= rank && seen > 0) return (i + 1) * BUCKET_MICROS / 1000.0;
+        }
+        return Double.NaN;
+    }
+
+    //peak resident set size, which includes every platform thread stack, Linux only
+    private static String residentSetSize() throws Exception {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) return "peak RSS n/a";
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmHWM:"))
+                .map(line -> "peak RSS " + (Long.parseLong(line.replaceAll("\\D", "")) >> 10) + " MB")
+                .findFirst().orElse("peak RSS n/a");
+    }
+}
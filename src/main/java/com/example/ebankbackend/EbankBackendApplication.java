@@ -4,17 +4,34 @@ import com.example.ebankbackend.dtos.BankAccountDTO;
 import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
 import com.example.ebankbackend.dtos.CustomerDTO;
 import com.example.ebankbackend.dtos.SavingBankAccountDTO;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
 import com.example.ebankbackend.exceptions.CustomerNotFoundException;
 import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.Money;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
 import java.util.stream.Stream;
 
 @SpringBootApplication
+@EnableRetry
+@EnableCaching
+@EnableScheduling
+@EnableAsync
 public class EbankBackendApplication {
 
     public static void main(String[] args) {
@@ -23,38 +40,61 @@ public class EbankBackendApplication {
     }
 
     @Bean
-    CommandLineRunner commandLineRunner(BankAccountService bankAccountService) {
+    @ConditionalOnProperty(name = "ebank.seed.enabled", matchIfMissing = true)
+    CommandLineRunner commandLineRunner(BankAccountService bankAccountService, TransactionTemplate transactionTemplate,
+                                        @Value("${ebank.balance.update-mode:conditional}") BalanceUpdateMode balanceUpdateMode) {
         return args -> {
-            Stream.of("Hassan", "Imane", "Mohamed").forEach(name -> {
-                CustomerDTO customer = new CustomerDTO();
-                customer.setName(name);
-                customer.setEmail(name + "@gmail.com");
-                bankAccountService.saveCustomer(customer);
-            });
-            bankAccountService.listCustomers().forEach(customer -> {
-                try {
-                    bankAccountService.saveCurrentBankAccount(Math.random() * 90000, 9000, customer.getId());
-                    bankAccountService.saveSavingBankAccount(Math.random() * 120000, 5.5, customer.getId());
-                } catch (CustomerNotFoundException e) {
-                    e.printStackTrace();
-                }
-            });
-            List<BankAccountDTO> bankAccounts = bankAccountService.getBankAccountList();
-            for (BankAccountDTO bankAccount : bankAccounts) {
-                for (int i = 0; i < 10; i++) {
-                    String accountId;
-                    if (bankAccount instanceof SavingBankAccountDTO) {
-                        accountId = ((SavingBankAccountDTO) bankAccount).getId();
-                    } else {
-                        accountId = ((CurrentBankAccountDTO) bankAccount).getId();
+            //customers and accounts committed in one transaction, flushed in JDBC batches, before any operation:
+            //in ledger mode the shards load the accounts from the database with connections of their own
+            List<BankAccountDTO> bankAccounts = transactionTemplate.execute(status -> {
+                Stream.of("Hassan", "Imane", "Mohamed").forEach(name -> {
+                    CustomerDTO customer = new CustomerDTO();
+                    customer.setName(name);
+                    customer.setEmail(name + "@gmail.com");
+                    bankAccountService.saveCustomer(customer);
+                });
+                bankAccountService.listCustomers().forEach(customer -> {
+                    try {
+                        bankAccountService.saveCurrentBankAccount(randomAmount(0, 90000), BigDecimal.valueOf(9000), customer.getId());
+                        bankAccountService.saveSavingBankAccount(randomAmount(0, 120000), 5.5, customer.getId());
+                    } catch (CustomerNotFoundException e) {
+                        throw new IllegalStateException("Seed failed", e);
                     }
+                });
+                return bankAccountService.getBankAccountList();
+            });
+            //the ledger answers operations without a database transaction, one around them would only hold a connection
+            if (balanceUpdateMode == BalanceUpdateMode.LEDGER) {
+                seedOperations(bankAccountService, bankAccounts);
+            } else {
+                transactionTemplate.executeWithoutResult(status -> seedOperations(bankAccountService, bankAccounts));
+            }
+        };
+    }
 
-                    bankAccountService.credit(accountId, 10000 + Math.random() * 120000, "Credit");
-                    bankAccountService.debit(accountId, 1000 + Math.random() * 9000, "Debit");
+    private static void seedOperations(BankAccountService bankAccountService, List<BankAccountDTO> bankAccounts) {
+        for (BankAccountDTO bankAccount : bankAccounts) {
+            for (int i = 0; i < 10; i++) {
+                String accountId;
+                if (bankAccount instanceof SavingBankAccountDTO) {
+                    accountId = ((SavingBankAccountDTO) bankAccount).getId();
+                } else {
+                    accountId = ((CurrentBankAccountDTO) bankAccount).getId();
+                }
 
+                try {
+                    bankAccountService.credit(accountId, randomAmount(10000, 120000), "Credit");
+                    bankAccountService.debit(accountId, randomAmount(1000, 9000), "Debit");
+                } catch (BankAccountNotFoundException | BalanceNotSufficientException e) {
+                    throw new IllegalStateException("Seed failed", e);
                 }
+
             }
-        };
+        }
+    }
+
+    private static BigDecimal randomAmount(double from, double range) {
+        return BigDecimal.valueOf(from + Math.random() * range).setScale(Money.SCALE, RoundingMode.HALF_EVEN);
     }
 
 //    @Bean
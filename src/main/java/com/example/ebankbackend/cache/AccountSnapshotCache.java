@@ -0,0 +1,89 @@
+package com.example.ebankbackend.cache;
+
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.support.TransactionCallbacks;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Read-through cache of {@link BankAccountDTO} snapshots keyed by account id, on top of the
+ * {@value #CACHE_NAME} cache of Spring's {@link CacheManager} (Caffeine, see spring.cache.* properties).
+ * <p>
+ * Writers evict after commit. A reader that loaded a snapshot while a write was committing must not
+ * put it back after that eviction, so every eviction bumps the generation of the key's stripe and a
+ * reader only caches what it loaded if the generation did not move in the meantime.
+ */
+@Component
+public class AccountSnapshotCache {
+
+    public static final String CACHE_NAME = "accounts";
+    private static final int STRIPES = 1024;
+
+    private final Cache cache;
+    private final long[] generations = new long[STRIPES];
+    private final Object[] locks = new Object[STRIPES];
+
+    public AccountSnapshotCache(CacheManager cacheManager) {
+        this.cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) throw new IllegalStateException("No cache named " + CACHE_NAME + ", check spring.cache.cache-names");
+        for (int i = 0; i < STRIPES; i++) locks[i] = new Object();
+    }
+
+    public <X extends Exception> BankAccountDTO get(UUID accountId, SnapshotLoader<X> loader) throws X {
+        BankAccountDTO snapshot = cache.get(accountId, BankAccountDTO.class);
+        if (snapshot != null) return snapshot;
+        int stripe = stripe(accountId);
+        long generation;
+        synchronized (locks[stripe]) {
+            generation = generations[stripe];
+        }
+        snapshot = loader.load(accountId);
+        synchronized (locks[stripe]) {
+            if (generations[stripe] == generation) cache.putIfAbsent(accountId, snapshot);
+        }
+        return snapshot;
+    }
+
+    public void evictAfterCommit(Collection<UUID> accountIds) {
+        TransactionCallbacks.afterCommit(() -> accountIds.forEach(this::evict));
+    }
+
+    public void evictAfterCommit(UUID accountId) {
+        TransactionCallbacks.afterCommit(() -> evict(accountId));
+    }
+
+    //for changes that reach unknown accounts, e.g. a customer rename shows in all their snapshots
+    public void clearAfterCommit() {
+        TransactionCallbacks.afterCommit(this::clear);
+    }
+
+    private void evict(UUID accountId) {
+        int stripe = stripe(accountId);
+        synchronized (locks[stripe]) {
+            generations[stripe]++;
+            cache.evict(accountId);
+        }
+    }
+
+    private void clear() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                generations[stripe]++;
+            }
+        }
+        cache.clear();
+    }
+
+    private static int stripe(UUID accountId) {
+        return (accountId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    @FunctionalInterface
+    public interface SnapshotLoader<X extends Exception> {
+        BankAccountDTO load(UUID accountId) throws X;
+    }
+}
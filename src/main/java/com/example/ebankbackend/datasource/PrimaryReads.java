@@ -0,0 +1,32 @@
+package com.example.ebankbackend.datasource;
+
+/**
+ * Runs reads on the primary outside of read-only transactions, for what is read once and then served to every
+ * client: a shared cache filled from a replica would keep its lag for everyone, read-your-writes cookie or
+ * not. A read-only transaction holds its connection from its start, possibly a replica's: what is read in one
+ * should not be shared. Without replicas, this changes nothing.
+ */
+public final class PrimaryReads {
+
+    private PrimaryReads() {
+    }
+
+    public static <T, X extends Exception> T read(Read<T, X> read) throws X {
+        ReplicaRouting.enterPrimaryRead();
+        try {
+            return read.read();
+        } finally {
+            ReplicaRouting.exitPrimaryRead();
+        }
+    }
+
+    //the connection of the current transaction may be a replica's
+    public static boolean inReadOnlyTransaction() {
+        return ReplicaRouting.isReadOnly();
+    }
+
+    @FunctionalInterface
+    public interface Read<T, X extends Exception> {
+        T read() throws X;
+    }
+}
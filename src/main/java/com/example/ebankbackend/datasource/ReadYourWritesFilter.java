@@ -0,0 +1,83 @@
+package com.example.ebankbackend.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Read-your-writes across requests: once a request commits a write (a debit, credit, transfer...), the
+ * response carries the {@value #COOKIE} cookie and the reads of the requests sending it back go to the
+ * primary until {@code ebank.datasource.read-your-writes-window} has elapsed, long enough for the replicas
+ * to catch up. Later reads of the writing request itself go to the primary too.
+ * <p>
+ * The cookie is set when the transaction commits, before the response is written. Streamed exports read
+ * on another thread after the request returns, so they always go to a replica.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "ebank-primary-until";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        ReplicaRouting.bind(new RequestReadYourWrites(primaryUntil(request), response));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.unbind();
+        }
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return 0;
+        for (Cookie cookie : cookies) {
+            if (!COOKIE.equals(cookie.getName())) continue;
+            try {
+                return Long.parseLong(cookie.getValue());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private class RequestReadYourWrites implements ReplicaRouting.ReadYourWrites {
+
+        private long primaryUntil;
+        private final HttpServletResponse response;
+
+        RequestReadYourWrites(long primaryUntil, HttpServletResponse response) {
+            this.primaryUntil = primaryUntil;
+            this.response = response;
+        }
+
+        //the deadline is checked against the server clock, whatever Max-Age the client honours
+        @Override
+        public boolean isPrimaryRequired() {
+            return System.currentTimeMillis() < primaryUntil;
+        }
+
+        @Override
+        public void committedWrite() {
+            primaryUntil = System.currentTimeMillis() + window.toMillis();
+            if (response.isCommitted()) return;
+            Cookie cookie = new Cookie(COOKIE, Long.toString(primaryUntil));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            response.addCookie(cookie);
+        }
+    }
+}
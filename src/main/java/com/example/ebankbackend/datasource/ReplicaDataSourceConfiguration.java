@@ -0,0 +1,87 @@
+package com.example.ebankbackend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in as soon as {@code ebank.datasource.replicas[0].url} is set: {@code @Transactional(readOnly = true)}
+ * service methods read from the replica pools, everything else uses the primary
+ * ({@code spring.datasource.*}), see {@link ReplicaRoutingDataSource} and {@link ReadYourWritesFilter}.
+ * Replica pools take the {@code spring.datasource.hikari.*} settings of the primary, their health shows
+ * under /actuator/health (db component) and their pools under hikaricp.connections{pool=replica-N}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ebank.datasource.replicas[0].url")
+public class ReplicaDataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    ReplicaPools replicaPools(Environment environment) {
+        Binder binder = Binder.get(environment);
+        Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+        for (int i = 0; environment.containsProperty("ebank.datasource.replicas[" + i + "].url"); i++) {
+            String prefix = "ebank.datasource.replicas[" + i + "].";
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(environment.getProperty(prefix + "url"))
+                    .username(environment.getProperty(prefix + "username"))
+                    .password(environment.getProperty(prefix + "password"))
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName("replica-" + i);
+            pool.setReadOnly(true);
+            pools.put(pool.getPoolName(), pool);
+        }
+        return new ReplicaPools(pools);
+    }
+
+    //hikaricp.connections{pool=replica-N}, Spring Boot only binds the pools that are beans themselves
+    @Bean
+    MeterBinder replicaPoolMetrics(ReplicaPools replicaPools) {
+        return registry -> replicaPools.getPools().values().forEach(pool -> pool.setMetricRegistry(registry));
+    }
+
+    @Bean
+    @Primary
+    ReplicaRoutingDataSource dataSource(HikariDataSource primaryDataSource, ReplicaPools replicaPools) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaPools);
+    }
+
+    //Spring Boot backs off its own JpaTransactionManager for this one
+    @Bean
+    PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        RoutingJpaTransactionManager transactionManager = new RoutingJpaTransactionManager();
+        customizers.ifAvailable(c -> c.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    ReadYourWritesFilter readYourWritesFilter(@Value("${ebank.datasource.read-your-writes-window:5s}") Duration window) {
+        return new ReadYourWritesFilter(window);
+    }
+}
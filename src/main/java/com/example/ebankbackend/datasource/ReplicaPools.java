@@ -0,0 +1,59 @@
+package com.example.ebankbackend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The replica connection pools by pool name, and whether each one is up: checked on a fixed delay
+ * ({@code ebank.datasource.health-check-interval}) and marked down right away when a connection fails.
+ */
+@Slf4j
+public class ReplicaPools implements DisposableBean {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final Map<String, HikariDataSource> pools;
+    private final Map<String, Boolean> up = new ConcurrentHashMap<>();
+
+    public ReplicaPools(Map<String, HikariDataSource> pools) {
+        this.pools = Collections.unmodifiableMap(pools);
+        pools.keySet().forEach(name -> up.put(name, true));
+    }
+
+    public Map<String, HikariDataSource> getPools() {
+        return pools;
+    }
+
+    public boolean isUp(String pool) {
+        return up.getOrDefault(pool, false);
+    }
+
+    public void markDown(String pool, Exception cause) {
+        if (Boolean.TRUE.equals(up.put(pool, false))) log.warn("replica {} is down, its reads go elsewhere", pool, cause);
+    }
+
+    @Scheduled(fixedDelayString = "${ebank.datasource.health-check-interval:PT5S}")
+    public void check() {
+        pools.forEach((name, pool) -> {
+            try (Connection connection = pool.getConnection()) {
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) throw new SQLException("Connection is not valid");
+                if (!Boolean.TRUE.equals(up.put(name, true))) log.info("replica {} is back up", name);
+            } catch (SQLException e) {
+                markDown(name, e);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        pools.values().forEach(HikariDataSource::close);
+    }
+}
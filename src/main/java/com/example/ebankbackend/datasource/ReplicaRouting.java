@@ -0,0 +1,71 @@
+package com.example.ebankbackend.datasource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * What the current thread's transactions ask of the {@link ReplicaRoutingDataSource}: the read-only flag of
+ * every transaction begun on the thread, innermost last, whether the current request has to read its
+ * own writes, and whether the thread is inside a {@link PrimaryReads} block.
+ */
+final class ReplicaRouting {
+
+    private static final ThreadLocal<Deque<Boolean>> READ_ONLY = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<ReadYourWrites> READ_YOUR_WRITES = new ThreadLocal<>();
+    private static final ThreadLocal<int[]> PRIMARY_READS = ThreadLocal.withInitial(() -> new int[1]);
+
+    private ReplicaRouting() {
+    }
+
+    static void begin(boolean readOnly) {
+        READ_ONLY.get().push(readOnly);
+    }
+
+    static void end() {
+        Deque<Boolean> transactions = READ_ONLY.get();
+        transactions.poll();
+        if (transactions.isEmpty()) READ_ONLY.remove();
+    }
+
+    //no transaction, or not a read-only one: the primary
+    static boolean isReadOnly() {
+        Boolean readOnly = READ_ONLY.get().peek();
+        return readOnly != null && readOnly;
+    }
+
+    static void bind(ReadYourWrites readYourWrites) {
+        READ_YOUR_WRITES.set(readYourWrites);
+    }
+
+    static void unbind() {
+        READ_YOUR_WRITES.remove();
+    }
+
+    static void enterPrimaryRead() {
+        PRIMARY_READS.get()[0]++;
+    }
+
+    static void exitPrimaryRead() {
+        if (--PRIMARY_READS.get()[0] == 0) PRIMARY_READS.remove();
+    }
+
+    static boolean isPrimaryRequired() {
+        if (PRIMARY_READS.get()[0] > 0) return true;
+        ReadYourWrites readYourWrites = READ_YOUR_WRITES.get();
+        return readYourWrites != null && readYourWrites.isPrimaryRequired();
+    }
+
+    static void committedWrite() {
+        ReadYourWrites readYourWrites = READ_YOUR_WRITES.get();
+        if (readYourWrites != null) readYourWrites.committedWrite();
+    }
+
+    /**
+     * Read-your-writes state of one request, see {@link ReadYourWritesFilter}.
+     */
+    interface ReadYourWrites {
+        boolean isPrimaryRequired();
+
+        void committedWrite();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.ebankbackend.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a healthy replica, round robin, and everything else to the primary:
+ * writes, transactions that are not read-only, work outside any transaction and the reads of a request
+ * that must see its own writes. With no healthy replica, reads go to the primary as well.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<String> replicaKeys;
+    private final ReplicaPools replicaPools;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaPools replicaPools) {
+        this.primary = primary;
+        this.replicaKeys = List.copyOf(replicaPools.getPools().keySet());
+        this.replicaPools = replicaPools;
+        Map<Object, Object> targets = new HashMap<>(replicaPools.getPools());
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReplicaRouting.isReadOnly() || ReplicaRouting.isPrimaryRequired()) return PRIMARY;
+        int size = replicaKeys.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            String key = replicaKeys.get((start + i) % size);
+            if (replicaPools.isUp(key)) return key;
+        }
+        return PRIMARY;
+    }
+
+    //a replica that fails between two health checks costs one failed attempt, not the request
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) return primary.getConnection();
+        try {
+            return getResolvedDataSources().get(key).getConnection();
+        } catch (SQLException e) {
+            replicaPools.markDown((String) key, e);
+            return primary.getConnection();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ebankbackend.datasource;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * Publishes the read-only flag of a transaction before Hibernate takes its connection: Spring only exposes
+ * it through TransactionSynchronizationManager after doBegin, once the connection has been chosen.
+ */
+public class RoutingJpaTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ReplicaRouting.begin(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            ReplicaRouting.end();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        if (!status.isReadOnly()) ReplicaRouting.committedWrite();
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            ReplicaRouting.end();
+        }
+    }
+}
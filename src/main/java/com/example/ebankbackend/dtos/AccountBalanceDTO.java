@@ -0,0 +1,13 @@
+package com.example.ebankbackend.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+@Data
+public class AccountBalanceDTO {
+    private String accountId;
+    private Date at;
+    private BigDecimal balance;
+}
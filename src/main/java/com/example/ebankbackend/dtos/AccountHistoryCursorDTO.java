@@ -0,0 +1,18 @@
+package com.example.ebankbackend.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class AccountHistoryCursorDTO {
+    private String accountId;
+    private BigDecimal balance;
+    private int pageSize;
+    //opaque, pass it back as ?cursor= to get the next page; null on the last page
+    private String nextCursor;
+    //only filled when the caller asks for it, counting is O(history) on every call
+    private Long totalElements;
+    private List<AccountOperationDTO> accountOperationDTOS;
+}
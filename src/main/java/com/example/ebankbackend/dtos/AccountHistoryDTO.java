@@ -2,12 +2,13 @@ package com.example.ebankbackend.dtos;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Data
 public class AccountHistoryDTO {
     private String accountId;
-    private double balance;
+    private BigDecimal balance;
     private int currentPage;
     private int totalPages;
     private int pageSize;
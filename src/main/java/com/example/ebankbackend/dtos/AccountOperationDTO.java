@@ -3,13 +3,15 @@ package com.example.ebankbackend.dtos;
 
 import com.example.ebankbackend.enums.OperationType;
 import lombok.Data;
+import java.math.BigDecimal;
 import java.util.Date;
 
 @Data
 public class AccountOperationDTO {
     private Long id;
     private Date operationDate;
-    private double amount;
+    private BigDecimal amount;
+    private BigDecimal balanceAfter;
     private OperationType type;
     private String description;
 }
@@ -0,0 +1,18 @@
+package com.example.ebankbackend.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+@Data
+public class AccountStatementDTO {
+    private String accountId;
+    //operations dated in [from, to)
+    private Date from;
+    private Date to;
+    private BigDecimal openingBalance;
+    private BigDecimal closingBalance;
+    private List<AccountOperationDTO> accountOperationDTOS;
+}
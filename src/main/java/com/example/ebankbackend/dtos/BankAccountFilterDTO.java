@@ -0,0 +1,17 @@
+package com.example.ebankbackend.dtos;
+
+import com.example.ebankbackend.enums.AccountStatus;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+//every field is optional, a null field does not filter
+@Data
+public class BankAccountFilterDTO {
+    //CurrentAccount or SavingAccount, same values as BankAccountDTO.type
+    private String type;
+    private AccountStatus status;
+    private Long customerId;
+    private BigDecimal minBalance;
+    private BigDecimal maxBalance;
+}
@@ -0,0 +1,17 @@
+package com.example.ebankbackend.dtos;
+
+import com.example.ebankbackend.enums.OperationType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor @AllArgsConstructor
+public class BatchOperationDTO {
+    private String accountId;
+    private OperationType type;
+    private BigDecimal amount;
+    private String description;
+}
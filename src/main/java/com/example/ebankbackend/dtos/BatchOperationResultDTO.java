@@ -0,0 +1,15 @@
+package com.example.ebankbackend.dtos;
+
+import com.example.ebankbackend.enums.BatchOperationStatus;
+import lombok.Data;
+
+@Data
+public class BatchOperationResultDTO {
+    //position of the item in the request
+    private int index;
+    private String accountId;
+    private BatchOperationStatus status;
+    //simple name of the exception that rejected the item, e.g. BalanceNotSufficientException
+    private String error;
+    private String message;
+}
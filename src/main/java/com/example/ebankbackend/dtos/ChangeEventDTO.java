@@ -0,0 +1,19 @@
+package com.example.ebankbackend.dtos;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class ChangeEventDTO {
+    //position in the change feed, resume after the last one seen
+    private long offset;
+    //stable across redeliveries, for consumers to drop duplicates
+    private long eventId;
+    private String type;
+    private String accountId;
+    private Date occurredAt;
+    @JsonRawValue
+    private String payload;
+}
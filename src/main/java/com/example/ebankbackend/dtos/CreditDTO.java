@@ -2,11 +2,13 @@ package com.example.ebankbackend.dtos;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 public class CreditDTO {
 
         private String accountId;
-        private double amount;
+        private BigDecimal amount;
         private String description;
 
 }
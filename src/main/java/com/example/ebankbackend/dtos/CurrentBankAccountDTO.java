@@ -4,14 +4,15 @@ package com.example.ebankbackend.dtos;
 import com.example.ebankbackend.enums.AccountStatus;
 import lombok.Data;
 
+import java.math.BigDecimal;
 import java.util.Date;
 
 @Data
 public class CurrentBankAccountDTO extends BankAccountDTO{
     private String id;
-    private double balance;
+    private BigDecimal balance;
     private Date creationDat;
     private AccountStatus status;
     private CustomerDTO customerDTO;
-    private double overDraft;
+    private BigDecimal overDraft;
 }
@@ -1,8 +1,11 @@
 package com.example.ebankbackend.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor @AllArgsConstructor
 public class CustomerDTO {
 
         private Long id;
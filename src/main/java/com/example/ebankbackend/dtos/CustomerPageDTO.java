@@ -0,0 +1,17 @@
+package com.example.ebankbackend.dtos;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CustomerPageDTO {
+    private int pageSize;
+    //offset pages only
+    private Integer currentPage;
+    private Integer totalPages;
+    private Long totalElements;
+    //keyset pages only, null on the last page
+    private String nextCursor;
+    private List<CustomerDTO> customerDTOS;
+}
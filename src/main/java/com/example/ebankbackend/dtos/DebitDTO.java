@@ -2,9 +2,11 @@ package com.example.ebankbackend.dtos;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 public class DebitDTO {
     private String accountId;
-    private double amount;
+    private BigDecimal amount;
     private String description;
 }
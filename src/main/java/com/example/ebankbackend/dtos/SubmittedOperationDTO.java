@@ -0,0 +1,21 @@
+package com.example.ebankbackend.dtos;
+
+import com.example.ebankbackend.enums.SubmittedOperationStatus;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class SubmittedOperationDTO {
+    private String operationId;
+    //debit, credit or transfer
+    private String operation;
+    //the account whose queue orders the operation, the source of a transfer
+    private String accountId;
+    private SubmittedOperationStatus status;
+    //simple name of the exception that rejected the operation, e.g. BalanceNotSufficientException
+    private String error;
+    private String message;
+    private Date submittedAt;
+    private Date completedAt;
+}
@@ -2,10 +2,12 @@ package com.example.ebankbackend.dtos;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 public class TransfertRequestDTO {
     private String accountSource;
     private String accountDestination;
-    private double amount;
+    private BigDecimal amount;
     private String description;
 }
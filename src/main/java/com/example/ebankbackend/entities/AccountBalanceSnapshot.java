@@ -0,0 +1,31 @@
+package com.example.ebankbackend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_balance_snapshot_account_as_of", columnNames = {"bank_account_id", "asOf"}))
+@Data
+@NoArgsConstructor @AllArgsConstructor
+public class AccountBalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_balance_snapshot_seq")
+    @GenericGenerator(name = "account_balance_snapshot_seq", strategy = "com.example.ebankbackend.generators.PooledSequenceIdGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "account_balance_snapshot_seq"))
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private BankAccount bankAccount;
+
+    //the midnight closing the day: the balance counts every operation dated before it
+    private Date asOf;
+    //minor units (cents)
+    private long balance;
+}
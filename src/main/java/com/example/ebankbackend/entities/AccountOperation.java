@@ -4,23 +4,32 @@ package com.example.ebankbackend.entities;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import com.example.ebankbackend.enums.*;
 import javax.persistence.*;
 import java.util.Date;
 @Entity
+@Table(indexes = @Index(name = "idx_operation_account_date_id", columnList = "bank_account_id, operationDate, id"))
 @Data
 @NoArgsConstructor @AllArgsConstructor
 public class AccountOperation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_operation_seq")
+    @GenericGenerator(name = "account_operation_seq", strategy = "com.example.ebankbackend.generators.PooledSequenceIdGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "account_operation_seq"))
     private Long id;
     private Date operationDate;
-    private double amount;
+    //minor units (cents), like balanceAfter
+    private long amount;
+    //balance of the account right after this operation, so a balance at any date is one indexed lookup
+    private long balanceAfter;
 
     @Enumerated(EnumType.STRING)
     private OperationType type;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private BankAccount bankAccount;
 
     private String description;
@@ -5,12 +5,15 @@ import com.example.ebankbackend.enums.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import javax.persistence.*;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 @Entity
+@Table(indexes = @Index(name = "idx_bank_account_external_ref", columnList = "externalRef", unique = true))
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn( name = "TYPE", length =4)
 @Data
@@ -18,16 +21,35 @@ import java.util.List;
 public abstract class BankAccount {
 
     @Id
-    private String id;
-    private double balance;
+    @Column(length = 16)
+    private UUID id;
+    //minor units (cents), see Money
+    private long balance;
     private Date creationDat;
 
     @Enumerated(EnumType.STRING)
     private AccountStatus status;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Customer customer;
 
-    @OneToMany(mappedBy="bankAccount" , fetch = FetchType.EAGER)
+    //reference of the account in the system it was imported from, null for accounts opened here
+    @Column(length = 64, updatable = false)
+    private String externalRef;
+
+    @Version
+    private Long version;
+
+    @OneToMany(mappedBy="bankAccount" , fetch = FetchType.LAZY)
+    @ToString.Exclude
     private List<AccountOperation> accountOperations;
+
+    public boolean canDebit(long amount) {
+        return balance + overdraftLimit() >= amount;
+    }
+
+    //how far below zero the balance may go, none unless the account type allows it
+    protected long overdraftLimit() {
+        return 0;
+    }
 }
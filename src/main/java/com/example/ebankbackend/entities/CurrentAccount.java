@@ -12,5 +12,11 @@ import javax.persistence.Entity;
 @Data
 @NoArgsConstructor @AllArgsConstructor
 public class CurrentAccount extends BankAccount{
-    private double overDraft;
+    //minor units (cents)
+    private long overDraft;
+
+    @Override
+    protected long overdraftLimit() {
+        return overDraft;
+    }
 }
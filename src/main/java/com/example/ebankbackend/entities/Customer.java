@@ -4,19 +4,31 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_customer_name", columnList = "name"),
+        @Index(name = "idx_customer_external_ref", columnList = "externalRef", unique = true)})
 @Data
 @NoArgsConstructor @AllArgsConstructor
 public class Customer {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @GenericGenerator(name = "customer_seq", strategy = "com.example.ebankbackend.generators.PooledSequenceIdGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "customer_seq"))
     private Long id;
     private String name;
     private String email;
+    //reference of the customer in the system it was imported from, null for customers created here;
+    //not updatable, an update from a CustomerDTO (which has no such field) keeps it
+    @Column(length = 64, updatable = false)
+    private String externalRef;
 
     @OneToMany(mappedBy = "customer")
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)//Jackson annotation
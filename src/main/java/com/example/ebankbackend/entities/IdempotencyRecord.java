@@ -0,0 +1,27 @@
+package com.example.ebankbackend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(indexes = @Index(name = "idx_idempotency_expires_at", columnList = "expiresAt"))
+@Data
+@NoArgsConstructor @AllArgsConstructor
+public class IdempotencyRecord {
+    @Id
+    @Column(length = 100)
+    private String idempotencyKey;
+    private String operation;
+    //SHA-256 of the request body, a key reused for another request is refused
+    @Column(length = 64)
+    private String requestHash;
+    //JSON of the response sent the first time, replayed as is
+    @Lob
+    private String response;
+    private Date createdAt;
+    private Date expiresAt;
+}
@@ -0,0 +1,24 @@
+package com.example.ebankbackend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Date;
+
+//how far an import file got, committed with each chunk of rows so that a rerun resumes after it
+@Entity
+@Data
+@NoArgsConstructor @AllArgsConstructor
+public class ImportCheckpoint {
+    //kind of rows and import id, e.g. operations:core-migration-2023
+    @Id
+    private String source;
+    //last data line of the file (the header not counted) imported or rejected
+    private long lastLine;
+    private long imported;
+    private long rejected;
+    private Date updatedAt;
+}
@@ -0,0 +1,18 @@
+package com.example.ebankbackend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+//the last ledger journal entry of a shard that is in the database, written in the same transaction as the entry
+@Entity
+@Data
+@NoArgsConstructor @AllArgsConstructor
+public class LedgerCheckpoint {
+    @Id
+    private Integer shard;
+    private long sequence;
+}
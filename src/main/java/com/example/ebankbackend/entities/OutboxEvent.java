@@ -0,0 +1,38 @@
+package com.example.ebankbackend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_outbox_feed_offset", columnList = "feedOffset", unique = true),
+        @Index(name = "idx_outbox_account_feed_offset", columnList = "accountId, feedOffset")})
+@Data
+@NoArgsConstructor @AllArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @GenericGenerator(name = "outbox_event_seq", strategy = "com.example.ebankbackend.generators.PooledSequenceIdGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "outbox_event_seq"))
+    private Long id;
+    //position in the change feed, given by the relay once the event is committed; null until then
+    private Long feedOffset;
+    private String type;
+    @Column(length = 36)
+    private String accountId;
+    private Date occurredAt;
+    private Date publishedAt;
+    //JSON of the event, served as is by the change feed
+    @Lob
+    private String payload;
+    //two relays offering the same events: the second fails instead of publishing them again
+    @Version
+    private Long version;
+}
@@ -0,0 +1,5 @@
+package com.example.ebankbackend.enums;
+
+public enum SubmittedOperationStatus {
+    PENDING,APPLIED,REJECTED
+}
@@ -0,0 +1,11 @@
+package com.example.ebankbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class IdempotencyConflictException extends Exception {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.ebankbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class SubmissionQueueFullException extends Exception {
+    public SubmissionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.ebankbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class SubmittedOperationNotFoundException extends Exception {
+    public SubmittedOperationNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.ebankbackend.generators;
+
+import java.util.UUID;
+
+/**
+ * Source of bank account primary keys. Ids are stored as BINARY(16) and exposed as
+ * their usual 36 character string form in the DTOs.
+ */
+public interface AccountIdGenerator {
+    UUID nextId();
+}
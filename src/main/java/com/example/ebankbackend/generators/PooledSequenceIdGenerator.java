@@ -0,0 +1,30 @@
+package com.example.ebankbackend.generators;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence (or sequence table when the dialect has no sequences, as on MySQL) backed id generator
+ * that hands out ids from an in-memory pool. Unlike IDENTITY it lets Hibernate batch inserts.
+ * The pool size is read from the {@value #ALLOCATION_SIZE_SETTING} Hibernate setting,
+ * e.g. spring.jpa.properties.ebank.id.allocation-size=50
+ */
+public class PooledSequenceIdGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_SETTING = "ebank.id.allocation-size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object allocationSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSettings().getOrDefault(ALLOCATION_SIZE_SETTING, DEFAULT_ALLOCATION_SIZE);
+        params.setProperty(INCREMENT_PARAM, allocationSize.toString());
+        params.putIfAbsent(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
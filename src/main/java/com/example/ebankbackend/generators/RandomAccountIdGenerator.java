@@ -0,0 +1,18 @@
+package com.example.ebankbackend.generators;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * The historical random (version 4) ids, kept for environments that rely on ids being unguessable.
+ */
+@Component
+@ConditionalOnProperty(name = "ebank.account-id.generator", havingValue = "random")
+public class RandomAccountIdGenerator implements AccountIdGenerator {
+    @Override
+    public UUID nextId() {
+        return UUID.randomUUID();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.ebankbackend.generators;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUID version 7 ids: a 48 bit unix millisecond timestamp, a 12 bit counter and 62 random bits.
+ * Ids are strictly increasing within this JVM, so new accounts are appended at the end of the
+ * clustered index instead of landing on random pages. Generation is a single CAS and a
+ * ThreadLocalRandom draw: no SecureRandom and no lock.
+ */
+@Component
+@ConditionalOnProperty(name = "ebank.account-id.generator", havingValue = "time-ordered", matchIfMissing = true)
+public class TimeOrderedAccountIdGenerator implements AccountIdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    private final Clock clock;
+    //timestamp << COUNTER_BITS | counter of the last id handed out
+    private final AtomicLong lastTimestampAndCounter = new AtomicLong();
+
+    public TimeOrderedAccountIdGenerator() {
+        this(Clock.systemUTC());
+    }
+
+    TimeOrderedAccountIdGenerator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public UUID nextId() {
+        long now = clock.millis() << COUNTER_BITS;
+        long timestampAndCounter;
+        long last;
+        do {
+            last = lastTimestampAndCounter.get();
+            //same millisecond (or clock going backwards): bump the counter, which borrows from the next millisecond on overflow
+            timestampAndCounter = Math.max(now, last + 1);
+        } while (!lastTimestampAndCounter.compareAndSet(last, timestampAndCounter));
+
+        long timestamp = timestampAndCounter >>> COUNTER_BITS;
+        long counter = timestampAndCounter & ((1L << COUNTER_BITS) - 1);
+        long mostSigBits = (timestamp << 16) | 0x7000L | counter;
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
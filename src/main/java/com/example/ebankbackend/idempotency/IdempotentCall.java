@@ -0,0 +1,9 @@
+package com.example.ebankbackend.idempotency;
+
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+
+@FunctionalInterface
+public interface IdempotentCall<T> {
+    T call() throws BankAccountNotFoundException, BalanceNotSufficientException;
+}
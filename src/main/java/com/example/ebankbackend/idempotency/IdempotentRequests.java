@@ -0,0 +1,266 @@
+package com.example.ebankbackend.idempotency;
+
+import com.example.ebankbackend.entities.IdempotencyRecord;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.IdempotencyConflictException;
+import com.example.ebankbackend.repositories.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a write request at most once per Idempotency-Key and replays its stored response afterwards.
+ * <p>
+ * The first request with a key commits its {@link IdempotencyRecord} in the same transaction as the
+ * write, the key being the primary key. Later requests get the stored response back without touching
+ * any account. A duplicate arriving while the first one runs on this instance waits on that key's
+ * in-flight future, nothing else is locked. One arriving on another instance runs as well, fails on the
+ * primary key, rolls back entirely and replays. Recent records stay in the {@value #CACHE_NAME} cache so
+ * the replays of a retry storm do not reach the database. Failed requests leave no record and can be retried.
+ * In optimistic mode a version conflict only shows when that transaction flushes, the whole of it is then
+ * retried, up to {@code ebank.balance.max-attempts} times.
+ * <p>
+ * In ledger mode the write is not a database transaction: the engine answers once its journal is fsynced and
+ * writes behind. The key is then reserved first, committed in a transaction of its own, the call runs without
+ * holding a connection and the response is stored afterwards. A duplicate of a reserved key gets a 409 until
+ * the response is stored; a call that failed with an unexpected error, or a crash in between, leaves the key
+ * reserved until it expires, as the operation may have been applied.
+ */
+@Component
+@Slf4j
+public class IdempotentRequests {
+
+    public static final String CACHE_NAME = "idempotency";
+    private static final ThreadLocal<String> CURRENT_KEY = new ThreadLocal<>();
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache hotWindow;
+    private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${ebank.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${ebank.idempotency.in-flight-wait:10s}")
+    private Duration inFlightWait;
+
+    @Value("${ebank.balance.update-mode:conditional}")
+    private BalanceUpdateMode balanceUpdateMode;
+
+    @Value("${ebank.balance.max-attempts:5}")
+    private int maxAttempts;
+
+    public IdempotentRequests(IdempotencyRecordRepository idempotencyRecordRepository, TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper, CacheManager cacheManager) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.hotWindow = cacheManager.getCache(CACHE_NAME);
+        if (hotWindow == null) throw new IllegalStateException("No cache named " + CACHE_NAME + ", check spring.cache.cache-names");
+    }
+
+    //without a key the call simply runs, as before
+    public <T> T execute(String idempotencyKey, String operation, Object request, Class<T> responseType, IdempotentCall<T> call)
+            throws BankAccountNotFoundException, BalanceNotSufficientException, IdempotencyConflictException {
+        if (idempotencyKey == null) return call.call();
+        String requestHash = hash(operation, request);
+        IdempotencyRecord record = hotWindow.get(idempotencyKey, IdempotencyRecord.class);
+        if (record != null) return replay(record, operation, requestHash, responseType);
+
+        CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(idempotencyKey, mine);
+        if (running != null) return replay(await(running), operation, requestHash, responseType);
+        try {
+            record = idempotencyRecordRepository.findById(idempotencyKey).orElse(null);
+            if (record == null || record.getExpiresAt().before(new Date())) {
+                record = runOnce(idempotencyKey, operation, requestHash, record, call);
+            }
+            if (record.getResponse() != null) hotWindow.put(idempotencyKey, record);
+            mine.complete(record);
+        } catch (BankAccountNotFoundException | BalanceNotSufficientException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, mine);
+        }
+        return replay(record, operation, requestHash, responseType);
+    }
+
+    //the key of the call running on this thread, null outside of one; the ledger journals it with its entries
+    public static String currentKey() {
+        return CURRENT_KEY.get();
+    }
+
+    @Scheduled(fixedDelayString = "${ebank.idempotency.sweep-interval:PT5M}")
+    public void sweepExpired() {
+        int deleted = idempotencyRecordRepository.deleteExpired(new Date());
+        if (deleted > 0) log.info("swept {} expired idempotency keys", deleted);
+    }
+
+    private <T> IdempotencyRecord runOnce(String idempotencyKey, String operation, String requestHash, IdempotencyRecord expired,
+                                          IdempotentCall<T> call) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        if (balanceUpdateMode == BalanceUpdateMode.LEDGER) return runReserved(idempotencyKey, operation, requestHash, expired, call);
+        //optimistic mode: the call joins our transaction, its @Version conflict shows at our flush or commit, past
+        //the retries of the service; the whole transaction is retried so the operation and its record commit together
+        int attempts = balanceUpdateMode == BalanceUpdateMode.OPTIMISTIC ? Math.max(1, maxAttempts) : 1;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return runInTransaction(idempotencyKey, operation, requestHash, expired, call);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (attempt >= attempts) throw e;
+                backOff();
+            }
+        }
+    }
+
+    private <T> IdempotencyRecord runInTransaction(String idempotencyKey, String operation, String requestHash, IdempotencyRecord expired,
+                                                   IdempotentCall<T> call) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        try {
+            return transactionTemplate.execute(status -> {
+                if (expired != null) idempotencyRecordRepository.delete(expired);
+                T result;
+                CURRENT_KEY.set(idempotencyKey);
+                try {
+                    result = call.call();
+                } catch (BankAccountNotFoundException | BalanceNotSufficientException e) {
+                    throw new CallFailedException(e);
+                } finally {
+                    CURRENT_KEY.remove();
+                }
+                return idempotencyRecordRepository.saveAndFlush(newRecord(idempotencyKey, operation, requestHash, toJson(result)));
+            });
+        } catch (CallFailedException e) {
+            if (e.getCause() instanceof BankAccountNotFoundException) throw (BankAccountNotFoundException) e.getCause();
+            throw (BalanceNotSufficientException) e.getCause();
+        } catch (DataIntegrityViolationException e) {
+            //another instance committed the same key first, our transaction is rolled back
+            return idempotencyRecordRepository.findById(idempotencyKey).orElseThrow(() -> e);
+        }
+    }
+
+    //same random 5-50ms backoff as the service's own retries
+    private static void backOff() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(5, 51));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying an optimistic lock conflict", e);
+        }
+    }
+
+    //ledger mode: reserve the key, run the call outside of any transaction, then store its response
+    private <T> IdempotencyRecord runReserved(String idempotencyKey, String operation, String requestHash, IdempotencyRecord expired,
+                                              IdempotentCall<T> call) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        IdempotencyRecord reservation;
+        try {
+            reservation = transactionTemplate.execute(status -> {
+                if (expired != null) idempotencyRecordRepository.delete(expired);
+                return idempotencyRecordRepository.saveAndFlush(newRecord(idempotencyKey, operation, requestHash, null));
+            });
+        } catch (DataIntegrityViolationException e) {
+            //another instance reserved the same key first
+            return idempotencyRecordRepository.findById(idempotencyKey).orElseThrow(() -> e);
+        }
+        T result;
+        CURRENT_KEY.set(idempotencyKey);
+        try {
+            result = call.call();
+        } catch (BankAccountNotFoundException | BalanceNotSufficientException e) {
+            //refused by the engine, nothing was applied: the key can be used again
+            idempotencyRecordRepository.deleteById(idempotencyKey);
+            throw e;
+        } finally {
+            CURRENT_KEY.remove();
+        }
+        reservation.setResponse(toJson(result));
+        return idempotencyRecordRepository.save(reservation);
+    }
+
+    private IdempotencyRecord newRecord(String idempotencyKey, String operation, String requestHash, String response) {
+        Date now = new Date();
+        return new IdempotencyRecord(idempotencyKey, operation, requestHash, response, now, new Date(now.getTime() + ttl.toMillis()));
+    }
+
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running)
+            throws BankAccountNotFoundException, BalanceNotSufficientException, IdempotencyConflictException {
+        try {
+            return running.get(inFlightWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the request with this Idempotency-Key");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BankAccountNotFoundException) throw (BankAccountNotFoundException) cause;
+            if (cause instanceof BalanceNotSufficientException) throw (BalanceNotSufficientException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private <T> T replay(IdempotencyRecord record, String operation, String requestHash, Class<T> responseType) throws IdempotencyConflictException {
+        if (!record.getOperation().equals(operation) || !record.getRequestHash().equals(requestHash))
+            throw new IdempotencyConflictException("Idempotency-Key already used for another request");
+        //reserved in ledger mode, the response is not stored yet
+        if (record.getResponse() == null)
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        try {
+            return objectMapper.readValue(record.getResponse(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(toJson(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //carries the checked exception of the call out of the transaction callback, rolling it back
+    private static class CallFailedException extends RuntimeException {
+        CallFailedException(Exception cause) {
+            super(cause);
+        }
+    }
+}
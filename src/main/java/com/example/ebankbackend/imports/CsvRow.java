@@ -0,0 +1,88 @@
+package com.example.ebankbackend.imports;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One line of an import file, fields looked up by the column names of its header. Fields are separated by
+ * commas and may be double-quoted, with {@code ""} for a quote inside; a record does not span lines.
+ */
+final class CsvRow {
+
+    private final Map<String, Integer> columns;
+    private final List<String> values;
+    private final long line;
+
+    private CsvRow(Map<String, Integer> columns, List<String> values, long line) {
+        this.columns = columns;
+        this.values = values;
+        this.line = line;
+    }
+
+    static Map<String, Integer> header(String line, List<String> required) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = split(line);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String column : required) {
+            if (!columns.containsKey(column.toLowerCase(Locale.ROOT)))
+                throw new IllegalArgumentException("Missing column " + column + " in header " + line);
+        }
+        return columns;
+    }
+
+    static CsvRow of(Map<String, Integer> columns, String line, long lineNumber) {
+        return new CsvRow(columns, split(line), lineNumber);
+    }
+
+    long line() {
+        return line;
+    }
+
+    //null when the column is empty
+    String get(String column) {
+        Integer index = columns.get(column.toLowerCase(Locale.ROOT));
+        if (index == null || index >= values.size()) return null;
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    String required(String column) {
+        String value = get(column);
+        if (value == null) throw new IllegalArgumentException(column + " is required");
+        return value;
+    }
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.ebankbackend.imports;
+
+import lombok.Data;
+
+@Data
+public class ImportReport {
+    private String source;
+    //data lines read by this run, those of a previous run before its checkpoint not counted
+    private long lines;
+    private long imported;
+    private long rejected;
+    //checkpoint this run resumed after, 0 for a first run
+    private long resumedAfterLine;
+    private long elapsedMillis;
+
+    public double rowsPerSecond() {
+        return elapsedMillis == 0 ? lines : lines * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d lines in %.1fs (%.0f rows/s), %d imported, %d rejected%s", source, lines,
+                elapsedMillis / 1000.0, rowsPerSecond(), imported, rejected,
+                resumedAfterLine > 0 ? ", resumed after line " + resumedAfterLine : "");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ebankbackend.imports;
+
+import com.example.ebankbackend.EbankBackendApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports the files of a legacy core with {@link StatementImporter}, customers first, then accounts, then
+ * operations, any of them optional. Run it with the application stopped, and again with the same import id
+ * and files after a failure: every file resumes after its last committed chunk. A new migration takes a new
+ * import id.
+ * <pre>
+ * java -cp ebank-backend.jar -Dloader.main=com.example.ebankbackend.imports.StatementImport org.springframework.boot.loader.PropertiesLauncher \
+ *     --import-id=core-migration-2023 --customers=customers.csv --accounts=accounts.csv --operations=operations.csv \
+ *     --spring.datasource.url=... --spring.datasource.username=... --spring.datasource.password=...
+ * </pre>
+ * The schema is left as it is, whatever {@code spring.jpa.hibernate.ddl-auto} says.
+ */
+public class StatementImport {
+
+    public static void main(String[] args) throws IOException {
+        String importId = null;
+        Path customers = null;
+        Path accounts = null;
+        Path operations = null;
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--import-id=")) importId = arg.substring("--import-id=".length());
+            else if (arg.startsWith("--customers=")) customers = Path.of(arg.substring("--customers=".length()));
+            else if (arg.startsWith("--accounts=")) accounts = Path.of(arg.substring("--accounts=".length()));
+            else if (arg.startsWith("--operations=")) operations = Path.of(arg.substring("--operations=".length()));
+            else springArgs.add(arg);
+        }
+        if (importId == null) throw new IllegalArgumentException("--import-id is required");
+        //command line arguments win over application.properties
+        springArgs.add("--spring.jpa.hibernate.ddl-auto=none");
+        springArgs.add("--ebank.balance.update-mode=conditional");
+        springArgs.add("--ebank.seed.enabled=false");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EbankBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(springArgs.toArray(new String[0]))) {
+            StatementImporter importer = context.getBean(StatementImporter.class);
+            if (customers != null) System.out.println(importer.importCustomers(importId, customers));
+            if (accounts != null) System.out.println(importer.importAccounts(importId, accounts));
+            if (operations != null) System.out.println(importer.importOperations(importId, operations));
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.ebankbackend.imports;
+
+import com.example.ebankbackend.cache.AccountSnapshotCache;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.entities.ImportCheckpoint;
+import com.example.ebankbackend.entities.SavingAccount;
+import com.example.ebankbackend.enums.AccountStatus;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.generators.AccountIdGenerator;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.AccountRefView;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.CustomerRepository;
+import com.example.ebankbackend.repositories.ImportCheckpointRepository;
+import com.example.ebankbackend.search.CustomerSearchIndex;
+import com.example.ebankbackend.support.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of customers, accounts and operations from a legacy core, one CSV file per kind with a header
+ * line, imported in that order:
+ * <pre>
+ * customers   ref,name,email
+ * accounts    ref,customerRef,type,balance,openedAt,overdraft,interestRate,status
+ * operations  accountRef,date,type,amount,description
+ * </pre>
+ * {@code type} is CURRENT or SAVING for an account, DEBIT or CREDIT for an operation; amounts are decimal,
+ * dates ISO-8601 ({@code 2023-04-01} or {@code 2023-04-01T10:15:30Z}). The balance of an account is the
+ * one before its imported operations, which must come in the order they happened for each account: every
+ * operation gets the balance it leaves, and the balance of its account moves with it.
+ * <p>
+ * The file is read as a stream, in chunks of {@code ebank.import.chunk-size} lines parsed and checked in
+ * parallel by {@code ebank.import.threads} threads, a bounded number of chunks ahead of the writer. The
+ * writer applies them in file order, each in one transaction that inserts its rows in JDBC batches and
+ * saves the {@link ImportCheckpoint} of the file under the import id given by the caller, which names one
+ * migration: a rerun with the same id resumes after the last committed chunk, whatever the file is called,
+ * and files of two migrations never share a checkpoint, even with the same name. Memory
+ * does not depend on the file size. Rejected lines do not stop the import: they go to
+ * {@code <file>.rejected} with the reason, and a customer or an account already imported is rejected
+ * rather than duplicated.
+ * <p>
+ * Imported accounts get time-ordered ids from the {@link AccountIdGenerator} like any other, appended at the
+ * end of the primary key index, and keep their legacy reference in {@code BankAccount.externalRef}, as
+ * customers do in {@code Customer.externalRef}: operations find their account with one lookup per chunk.
+ * Imported operations are history, not changes: they write no outbox event. They move balances with direct
+ * UPDATEs, so they are refused in ledger mode, where the {@link com.example.ebankbackend.ledger.LedgerEngine}
+ * owns the balances it loaded: {@link StatementImport} runs them in conditional mode with the application stopped.
+ */
+@Component
+@Slf4j
+public class StatementImporter {
+
+    private static final String CUSTOMERS = "customers";
+    private static final String ACCOUNTS = "accounts";
+    private static final String OPERATIONS = "operations";
+    private static final int MAX_REF_LENGTH = 64;
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final CustomerRepository customerRepository;
+    private final BankAccountRepository bankAccountRepository;
+    private final AccountOperationRepository accountOperationRepository;
+    private final ImportCheckpointRepository importCheckpointRepository;
+    private final CustomerSearchIndex customerSearchIndex;
+    private final AccountSnapshotCache accountSnapshotCache;
+    private final AccountIdGenerator accountIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${ebank.import.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${ebank.import.threads:4}")
+    private int threads;
+
+    @Value("${ebank.balance.update-mode:conditional}")
+    private BalanceUpdateMode balanceUpdateMode;
+
+    public StatementImporter(CustomerRepository customerRepository, BankAccountRepository bankAccountRepository,
+                             AccountOperationRepository accountOperationRepository, ImportCheckpointRepository importCheckpointRepository,
+                             CustomerSearchIndex customerSearchIndex, AccountSnapshotCache accountSnapshotCache,
+                             AccountIdGenerator accountIdGenerator, TransactionTemplate transactionTemplate) {
+        this.customerRepository = customerRepository;
+        this.bankAccountRepository = bankAccountRepository;
+        this.accountOperationRepository = accountOperationRepository;
+        this.importCheckpointRepository = importCheckpointRepository;
+        this.customerSearchIndex = customerSearchIndex;
+        this.accountSnapshotCache = accountSnapshotCache;
+        this.accountIdGenerator = accountIdGenerator;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public ImportReport importCustomers(String importId, Path file) throws IOException {
+        return run(CUSTOMERS, importId, file, List.of("ref", "name"), StatementImporter::parseCustomer, this::writeCustomers);
+    }
+
+    public ImportReport importAccounts(String importId, Path file) throws IOException {
+        return run(ACCOUNTS, importId, file, List.of("ref", "customerRef", "type", "balance"), StatementImporter::parseAccount, this::writeAccounts);
+    }
+
+    public ImportReport importOperations(String importId, Path file) throws IOException {
+        if (balanceUpdateMode == BalanceUpdateMode.LEDGER)
+            throw new IllegalStateException("Operations cannot be imported in ledger mode, stop the application and run StatementImport");
+        return run(OPERATIONS, importId, file, List.of("accountRef", "date", "type", "amount"), StatementImporter::parseOperation, this::writeOperations);
+    }
+
+    private <R> ImportReport run(String kind, String importId, Path file, List<String> columns, RowParser<R> parser,
+                                 ChunkWriter<R> writer) throws IOException {
+        if (importId == null || importId.isBlank()) throw new IllegalArgumentException("An import id is required");
+        String source = kind + ":" + ref(importId);
+        ImportCheckpoint checkpoint = transactionTemplate.execute(status -> importCheckpointRepository.findById(source)
+                .orElse(new ImportCheckpoint(source, 0, 0, 0, null)));
+        ImportReport report = new ImportReport();
+        report.setSource(source);
+        report.setResumedAfterLine(checkpoint.getLastLine());
+        long start = System.nanoTime();
+
+        AtomicInteger validatorThreads = new AtomicInteger();
+        ExecutorService validators = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "import-validator-" + validatorThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Path rejectsFile = file.resolveSibling(file.getFileName() + ".rejected");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) return report;
+            Map<String, Integer> header = CsvRow.header(headerLine, columns);
+            Deque<Future<ParsedChunk<R>>> inFlight = new ArrayDeque<>();
+            List<String> lines = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (++lineNumber <= checkpoint.getLastLine()) continue;
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    inFlight.add(parse(validators, header, lines, lineNumber, parser));
+                    lines = new ArrayList<>(chunkSize);
+                    //at most two chunks per validator read ahead of the writer
+                    if (inFlight.size() >= 2 * threads) write(await(inFlight.poll()), writer, checkpoint, report, rejects, start);
+                }
+            }
+            if (!lines.isEmpty()) inFlight.add(parse(validators, header, lines, lineNumber, parser));
+            while (!inFlight.isEmpty()) write(await(inFlight.poll()), writer, checkpoint, report, rejects, start);
+        } finally {
+            validators.shutdownNow();
+            report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        }
+        log.info("import done, {}", report);
+        return report;
+    }
+
+    private static <R> Future<ParsedChunk<R>> parse(ExecutorService validators, Map<String, Integer> header, List<String> lines,
+                                                    long lastLine, RowParser<R> parser) {
+        return validators.submit(() -> {
+            ParsedChunk<R> chunk = new ParsedChunk<>(lastLine, lines.size());
+            long lineNumber = lastLine - lines.size();
+            for (String line : lines) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                try {
+                    chunk.rows.add(parser.parse(CsvRow.of(header, line, lineNumber)));
+                } catch (RuntimeException e) {
+                    chunk.rejections.add(new Rejection(lineNumber, e.getMessage()));
+                }
+            }
+            return chunk;
+        });
+    }
+
+    private static <R> ParsedChunk<R> await(Future<ParsedChunk<R>> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <R> void write(ParsedChunk<R> chunk, ChunkWriter<R> writer, ImportCheckpoint checkpoint, ImportReport report,
+                           BufferedWriter rejects, long start) throws IOException {
+        List<Rejection> rejections = new ArrayList<>(chunk.rejections);
+        int imported = transactionTemplate.execute(status -> {
+            int written = writer.write(chunk.rows, rejections);
+            importCheckpointRepository.save(new ImportCheckpoint(checkpoint.getSource(), chunk.lastLine,
+                    checkpoint.getImported() + written, checkpoint.getRejected() + rejections.size(), new Date()));
+            return written;
+        });
+        checkpoint.setLastLine(chunk.lastLine);
+        checkpoint.setImported(checkpoint.getImported() + imported);
+        checkpoint.setRejected(checkpoint.getRejected() + rejections.size());
+
+        for (Rejection rejection : rejections) {
+            rejects.write(rejection.line + ",\"" + String.valueOf(rejection.reason).replace("\"", "\"\"") + "\"\n");
+        }
+        rejects.flush();
+        report.setLines(report.getLines() + chunk.lines);
+        report.setImported(report.getImported() + imported);
+        report.setRejected(report.getRejected() + rejections.size());
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("import of {} at line {}: {} imported, {} rejected, {} rows/s", report.getSource(), chunk.lastLine,
+                report.getImported(), report.getRejected(), Math.round(report.rowsPerSecond()));
+    }
+
+    private static CustomerRow parseCustomer(CsvRow row) {
+        String email = text(row.get("email"));
+        if (email != null && !email.contains("@")) throw new IllegalArgumentException("Invalid email " + email);
+        return new CustomerRow(row.line(), ref(row.required("ref")), text(row.required("name")), email);
+    }
+
+    private int writeCustomers(List<CustomerRow> rows, List<Rejection> rejections) {
+        Set<String> known = customerRepository.findByExternalRefIn(rows.stream().map(row -> row.ref).collect(Collectors.toSet()))
+                .stream().map(Customer::getExternalRef).collect(Collectors.toCollection(HashSet::new));
+        List<Customer> customers = new ArrayList<>(rows.size());
+        for (CustomerRow row : rows) {
+            if (!known.add(row.ref)) {
+                rejections.add(new Rejection(row.line, "Customer " + row.ref + " already imported"));
+                continue;
+            }
+            Customer customer = new Customer();
+            customer.setName(row.name);
+            customer.setEmail(row.email);
+            customer.setExternalRef(row.ref);
+            customers.add(customer);
+        }
+        customerRepository.saveAll(customers);
+        customers.forEach(customerSearchIndex::indexAfterCommit);
+        return customers.size();
+    }
+
+    private static AccountRow parseAccount(CsvRow row) {
+        String type = row.required("type").toUpperCase(Locale.ROOT);
+        if (!type.equals("CURRENT") && !type.equals("SAVING"))
+            throw new IllegalArgumentException("Unknown account type " + type);
+        String status = row.get("status");
+        String openedAt = row.get("openedAt");
+        String overdraft = row.get("overdraft");
+        String interestRate = row.get("interestRate");
+        return new AccountRow(row.line(), ref(row.required("ref")), ref(row.required("customerRef")), type.equals("CURRENT"),
+                Money.toMinorUnits(new BigDecimal(row.required("balance"))),
+                openedAt == null ? new Date() : date(openedAt),
+                overdraft == null ? 0 : Money.toMinorUnits(new BigDecimal(overdraft)),
+                interestRate == null ? 0 : Double.parseDouble(interestRate),
+                status == null ? null : AccountStatus.valueOf(status.toUpperCase(Locale.ROOT)));
+    }
+
+    private int writeAccounts(List<AccountRow> rows, List<Rejection> rejections) {
+        Map<String, Customer> customers = customerRepository.findByExternalRefIn(rows.stream().map(row -> row.customerRef).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Customer::getExternalRef, customer -> customer));
+        Set<String> known = bankAccountRepository.findByExternalRefs(rows.stream().map(row -> row.ref).collect(Collectors.toSet()))
+                .stream().map(AccountRefView::getExternalRef).collect(Collectors.toCollection(HashSet::new));
+        List<BankAccount> accounts = new ArrayList<>(rows.size());
+        for (AccountRow row : rows) {
+            Customer customer = customers.get(row.customerRef);
+            if (customer == null) {
+                rejections.add(new Rejection(row.line, "Unknown customer " + row.customerRef));
+                continue;
+            }
+            if (!known.add(row.ref)) {
+                rejections.add(new Rejection(row.line, "Account " + row.ref + " already imported"));
+                continue;
+            }
+            BankAccount account;
+            if (row.current) {
+                CurrentAccount currentAccount = new CurrentAccount();
+                currentAccount.setOverDraft(row.overdraft);
+                account = currentAccount;
+            } else {
+                SavingAccount savingAccount = new SavingAccount();
+                savingAccount.setInterestRate(row.interestRate);
+                account = savingAccount;
+            }
+            account.setId(accountIdGenerator.nextId());
+            account.setExternalRef(row.ref);
+            account.setBalance(row.balance);
+            account.setCreationDat(row.openedAt);
+            account.setStatus(row.status);
+            account.setCustomer(customer);
+            accounts.add(account);
+        }
+        bankAccountRepository.saveAll(accounts);
+        return accounts.size();
+    }
+
+    private static OperationRow parseOperation(CsvRow row) {
+        String accountRef = ref(row.required("accountRef"));
+        long amount = Money.toMinorUnits(new BigDecimal(row.required("amount")));
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
+        return new OperationRow(row.line(), accountRef, date(row.required("date")),
+                OperationType.valueOf(row.required("type").toUpperCase(Locale.ROOT)), amount, text(row.get("description")));
+    }
+
+    //in file order within the chunk, each operation leaves the balance of the one before plus or minus its amount
+    private int writeOperations(List<OperationRow> rows, List<Rejection> rejections) {
+        Map<String, UUID> accountIds = new HashMap<>();
+        Map<UUID, Long> balances = new HashMap<>();
+        bankAccountRepository.findByExternalRefs(rows.stream().map(row -> row.accountRef).collect(Collectors.toSet()))
+                .forEach(view -> {
+                    accountIds.put(view.getExternalRef(), view.getAccountId());
+                    balances.put(view.getAccountId(), view.getBalance());
+                });
+        Map<UUID, Long> deltas = new TreeMap<>();
+        List<AccountOperation> operations = new ArrayList<>(rows.size());
+        for (OperationRow row : rows) {
+            UUID accountId = accountIds.get(row.accountRef);
+            if (accountId == null) {
+                rejections.add(new Rejection(row.line, "Unknown account " + row.accountRef));
+                continue;
+            }
+            long delta = row.type == OperationType.CREDIT ? row.amount : -row.amount;
+            long balanceAfter = Math.addExact(balances.get(accountId), delta);
+            balances.put(accountId, balanceAfter);
+            deltas.merge(accountId, delta, Math::addExact);
+
+            AccountOperation operation = new AccountOperation();
+            operation.setType(row.type);
+            operation.setAmount(row.amount);
+            operation.setBalanceAfter(balanceAfter);
+            operation.setOperationDate(row.date);
+            operation.setDescription(row.description);
+            operation.setBankAccount(bankAccountRepository.getReferenceById(accountId));
+            operations.add(operation);
+        }
+        deltas.forEach(bankAccountRepository::credit);
+        accountOperationRepository.saveAll(operations);
+        accountSnapshotCache.evictAfterCommit(deltas.keySet());
+        return operations.size();
+    }
+
+    private static String ref(String ref) {
+        if (ref.length() > MAX_REF_LENGTH) throw new IllegalArgumentException("Reference longer than " + MAX_REF_LENGTH + " characters");
+        return ref;
+    }
+
+    private static String text(String text) {
+        if (text != null && text.length() > MAX_TEXT_LENGTH) throw new IllegalArgumentException("Text longer than " + MAX_TEXT_LENGTH + " characters");
+        return text;
+    }
+
+    private static Date date(String date) {
+        try {
+            return date.length() == 10 ? Date.from(LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toInstant()) : Date.from(Instant.parse(date));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date " + date);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowParser<R> {
+        R parse(CsvRow row);
+    }
+
+    //runs in the transaction of the chunk, adds the rows it refuses to the rejections
+    @FunctionalInterface
+    private interface ChunkWriter<R> {
+        int write(List<R> rows, List<Rejection> rejections);
+    }
+
+    private static final class ParsedChunk<R> {
+        final long lastLine;
+        final int lines;
+        final List<R> rows;
+        final List<Rejection> rejections = new ArrayList<>();
+
+        ParsedChunk(long lastLine, int lines) {
+            this.lastLine = lastLine;
+            this.lines = lines;
+            this.rows = new ArrayList<>(lines);
+        }
+    }
+
+    private static final class Rejection {
+        final long line;
+        final String reason;
+
+        Rejection(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+    }
+
+    private static final class CustomerRow {
+        final long line;
+        final String ref;
+        final String name;
+        final String email;
+
+        CustomerRow(long line, String ref, String name, String email) {
+            this.line = line;
+            this.ref = ref;
+            this.name = name;
+            this.email = email;
+        }
+    }
+
+    private static final class AccountRow {
+        final long line;
+        final String ref;
+        final String customerRef;
+        final boolean current;
+        final long balance;
+        final Date openedAt;
+        final long overdraft;
+        final double interestRate;
+        final AccountStatus status;
+
+        AccountRow(long line, String ref, String customerRef, boolean current, long balance, Date openedAt, long overdraft,
+                   double interestRate, AccountStatus status) {
+            this.line = line;
+            this.ref = ref;
+            this.customerRef = customerRef;
+            this.current = current;
+            this.balance = balance;
+            this.openedAt = openedAt;
+            this.overdraft = overdraft;
+            this.interestRate = interestRate;
+            this.status = status;
+        }
+    }
+
+    private static final class OperationRow {
+        final long line;
+        final String accountRef;
+        final Date date;
+        final OperationType type;
+        final long amount;
+        final String description;
+
+        OperationRow(long line, String accountRef, Date date, OperationType type, long amount, String description) {
+            this.line = line;
+            this.accountRef = accountRef;
+            this.date = date;
+            this.type = type;
+            this.amount = amount;
+            this.description = description;
+        }
+    }
+}
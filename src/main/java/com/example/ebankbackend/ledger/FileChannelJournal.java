@@ -0,0 +1,93 @@
+package com.example.ebankbackend.ledger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * A {@link LedgerJournal} in a single file: appends are encoded into a buffer, written and fsynced
+ * together by {@link #force()}, once per group of entries. The file only shrinks through
+ * {@link #truncate(long)}, when every entry in it is in the database.
+ */
+public class FileChannelJournal implements LedgerJournal {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long lastSequence;
+
+    public FileChannelJournal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void append(LedgerEntry entry) throws IOException {
+        if (buffer.remaining() < LedgerEntryCodec.MAX_RECORD_SIZE) write();
+        LedgerEntryCodec.encode(entry, buffer);
+        lastSequence = entry.getSequence();
+    }
+
+    @Override
+    public void force() throws IOException {
+        write();
+        channel.force(false);
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, channel.size());
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public long replay(long afterSequence, Consumer<LedgerEntry> consumer) throws IOException {
+        long last = afterSequence;
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+        while (position < size) {
+            chunk.clear();
+            channel.read(chunk, position);
+            chunk.flip();
+            int consumed = 0;
+            LedgerEntry entry;
+            while ((entry = LedgerEntryCodec.decode(chunk)) != null) {
+                consumed = chunk.position();
+                if (entry.getSequence() > afterSequence) consumer.accept(entry);
+                last = Math.max(last, entry.getSequence());
+            }
+            //a record cut by the end of the chunk is read again with the next one
+            if (consumed == 0 || position + chunk.limit() >= size) {
+                position += consumed;
+                break;
+            }
+            position += consumed;
+        }
+        if (position < size) channel.truncate(position);
+        lastSequence = last;
+        return last;
+    }
+
+    @Override
+    public void truncate(long sequence) throws IOException {
+        if (sequence < lastSequence) throw new IllegalStateException("Entries after " + sequence + " are not in the database yet");
+        force();
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ebankbackend.ledger;
+
+/**
+ * The in-memory balance of an account, owned by the thread of its shard.
+ */
+public class LedgerAccount {
+
+    private long balance;
+    private final long overdraftLimit;
+    //the last entry that moved the balance and the shard writing it behind, a transfer's source shard for its destination
+    private LedgerShard lastWriter;
+    private long lastSequence;
+
+    public LedgerAccount(long balance, long overdraftLimit) {
+        this.balance = balance;
+        this.overdraftLimit = overdraftLimit;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    void movedBy(LedgerShard writer, long sequence) {
+        this.lastWriter = writer;
+        this.lastSequence = sequence;
+    }
+
+    //the database has every change of the balance, the account can be dropped from memory and loaded again
+    boolean isPersisted() {
+        return lastWriter == null || lastWriter.persistedSequence() >= lastSequence;
+    }
+
+    //same policy as BankAccount.canDebit
+    boolean canDebit(long amount) {
+        return balance + overdraftLimit >= amount;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.idempotency.IdempotentRequests;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A debit, credit or transfer waiting in the queue of its shard. A transfer between two shards sits in
+ * both queues: each shard stops there until the other one arrives too, then the shard of the source
+ * applies both legs while the other waits.
+ */
+class LedgerCommand {
+
+    final LedgerEntry.Kind kind;
+    final UUID accountId;
+    final UUID counterpartyId;
+    final long amount;
+    final String description;
+    final String idempotencyKey;
+    final CompletableFuture<LedgerEntry> result = new CompletableFuture<>();
+
+    //cross-shard transfers only: the shards of the source, which applies the transfer, and of the destination
+    LedgerShard owner;
+    LedgerShard counterpartyShard;
+    final CountDownLatch arrived = new CountDownLatch(2);
+    final CountDownLatch applied = new CountDownLatch(1);
+
+    LedgerCommand(LedgerEntry.Kind kind, UUID accountId, UUID counterpartyId, long amount, String description) {
+        this.kind = kind;
+        this.accountId = accountId;
+        this.counterpartyId = counterpartyId;
+        this.amount = amount;
+        this.description = description;
+        this.idempotencyKey = IdempotentRequests.currentKey();
+    }
+
+    boolean isCrossShard() {
+        return owner != null;
+    }
+}
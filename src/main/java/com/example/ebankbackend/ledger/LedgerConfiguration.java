@@ -0,0 +1,62 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.cache.AccountSnapshotCache;
+import com.example.ebankbackend.outbox.OperationOutbox;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.LedgerCheckpointRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in ({@code ebank.balance.update-mode=ledger}): debits, credits, transfers and batches of
+ * BankAccountService go through the {@link LedgerEngine}, one journal per shard under
+ * {@code ebank.ledger.journal-dir}: a directory of memory-mapped segments ({@code ebank.ledger.journal=mapped}),
+ * which {@link LedgerReplay} reads back, or a single file ({@code file}).
+ */
+@Configuration
+@ConditionalOnProperty(name = "ebank.balance.update-mode", havingValue = "ledger")
+public class LedgerConfiguration {
+
+    @Bean
+    LedgerPersister ledgerPersister(BankAccountRepository bankAccountRepository, AccountOperationRepository accountOperationRepository,
+                                    LedgerCheckpointRepository ledgerCheckpointRepository, AccountSnapshotCache accountSnapshotCache,
+                                    OperationOutbox operationOutbox, TransactionTemplate transactionTemplate) {
+        return new LedgerPersister(bankAccountRepository, accountOperationRepository, ledgerCheckpointRepository,
+                accountSnapshotCache, operationOutbox, transactionTemplate);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    LedgerEngine ledgerEngine(LedgerPersister ledgerPersister,
+                              @Value("${ebank.ledger.journal:mapped}") String journal,
+                              @Value("${ebank.ledger.journal-dir:ledger}") Path journalDir,
+                              @Value("${ebank.ledger.segment-size:64MB}") DataSize segmentSize,
+                              @Value("${ebank.ledger.archive-segments:false}") boolean archiveSegments,
+                              @Value("${ebank.ledger.shards:4}") int shardCount,
+                              @Value("${ebank.ledger.queue-capacity:10000}") int queueCapacity,
+                              @Value("${ebank.ledger.max-group-size:512}") int maxGroupSize,
+                              @Value("${ebank.ledger.persist-batch-size:1000}") int persistBatchSize,
+                              @Value("${ebank.ledger.unpersisted-capacity:100000}") int unpersistedCapacity,
+                              @Value("${ebank.ledger.max-accounts:100000}") int maxAccounts) throws IOException {
+        Files.createDirectories(journalDir);
+        List<LedgerShard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            LedgerJournal shardJournal = "file".equals(journal)
+                    ? new FileChannelJournal(journalDir.resolve("shard-" + i + ".journal"))
+                    : new MappedSegmentJournal(journalDir.resolve("shard-" + i), Math.toIntExact(segmentSize.toBytes()), archiveSegments);
+            shards.add(new LedgerShard(i, shardJournal, ledgerPersister,
+                    queueCapacity, maxGroupSize, persistBatchSize, unpersistedCapacity, maxAccounts));
+        }
+        return new LedgerEngine(shards);
+    }
+}
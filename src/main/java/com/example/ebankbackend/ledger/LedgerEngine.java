@@ -0,0 +1,117 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Balances held in memory by single-writer shards, partitioned by account id, in front of the database
+ * ({@code ebank.balance.update-mode=ledger}, see {@link LedgerConfiguration}). An operation returns once
+ * it is applied and its journal entry fsynced; the database follows a moment later, written behind in
+ * groups, and a restart first writes what the journal holds beyond the database checkpoint of each shard.
+ * <p>
+ * The engine owns the balances it has loaded: nothing else may move them, and only one instance of the
+ * application may run it against a database.
+ */
+@Slf4j
+public class LedgerEngine {
+
+    private final List<LedgerShard> shards;
+    //cross-shard transfers enter both queues in the same relative order everywhere, so two shards never wait for each other in a cycle
+    private final Object crossShardLock = new Object();
+
+    LedgerEngine(List<LedgerShard> shards) {
+        this.shards = List.copyOf(shards);
+    }
+
+    public void start() throws IOException {
+        for (LedgerShard shard : shards) {
+            shard.recover();
+        }
+        shards.forEach(LedgerShard::start);
+        log.info("ledger started with {} shards", shards.size());
+    }
+
+    public void stop() throws IOException, InterruptedException {
+        for (LedgerShard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    //the balance after the debit, minor units
+    public long debit(UUID accountId, long amount, String description) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        return await(submit(new LedgerCommand(LedgerEntry.Kind.DEBIT, accountId, null, amount, description))).getBalanceAfter();
+    }
+
+    public long credit(UUID accountId, long amount, String description) throws BankAccountNotFoundException {
+        try {
+            return await(submit(new LedgerCommand(LedgerEntry.Kind.CREDIT, accountId, null, amount, description))).getBalanceAfter();
+        } catch (BalanceNotSufficientException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void transfer(UUID sourceId, UUID destinationId, long amount) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        await(submit(new LedgerCommand(LedgerEntry.Kind.TRANSFER, sourceId, destinationId, amount, null)));
+    }
+
+    /**
+     * Queues a debit or credit without waiting for it, for callers that submit many at once: the shards
+     * then group them into fewer fsyncs. The future fails with the exception the synchronous call throws.
+     */
+    public CompletableFuture<LedgerEntry> submit(LedgerEntry.Kind kind, UUID accountId, long amount, String description) {
+        if (kind == LedgerEntry.Kind.TRANSFER) throw new IllegalArgumentException("Use transfer for transfers");
+        return submit(new LedgerCommand(kind, accountId, null, amount, description));
+    }
+
+    private CompletableFuture<LedgerEntry> submit(LedgerCommand command) {
+        LedgerShard shard = shardOf(command.accountId);
+        try {
+            if (command.kind == LedgerEntry.Kind.TRANSFER) {
+                LedgerShard counterpartyShard = shardOf(command.counterpartyId);
+                if (counterpartyShard != shard) {
+                    command.owner = shard;
+                    command.counterpartyShard = counterpartyShard;
+                    synchronized (crossShardLock) {
+                        shard.enqueue(command);
+                        counterpartyShard.enqueue(command);
+                    }
+                    return command.result;
+                }
+            }
+            shard.enqueue(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.result.completeExceptionally(new IllegalStateException("Interrupted before the operation was queued", e));
+        }
+        return command.result;
+    }
+
+    LedgerShard shardOf(UUID accountId) {
+        return shards.get(Math.floorMod(accountId.hashCode(), shards.size()));
+    }
+
+    /**
+     * Waits for a queued operation, throwing what it failed with.
+     */
+    public static LedgerEntry await(CompletableFuture<LedgerEntry> result) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the operation was applied, it may still complete", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BankAccountNotFoundException) throw (BankAccountNotFoundException) cause;
+            if (cause instanceof BalanceNotSufficientException) throw (BalanceNotSufficientException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
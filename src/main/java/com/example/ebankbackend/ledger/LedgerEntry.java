@@ -0,0 +1,34 @@
+package com.example.ebankbackend.ledger;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * One applied operation of a ledger shard, as written to its journal and then to the database. A transfer
+ * is a single entry carrying both legs, so it is journaled, recovered and persisted atomically.
+ * Amounts and balances are minor units (cents).
+ */
+@Data
+@AllArgsConstructor
+public class LedgerEntry {
+
+    public enum Kind {
+        DEBIT, CREDIT, TRANSFER
+    }
+
+    private long sequence;
+    private Kind kind;
+    private long timestamp;
+    //the debited account of a transfer
+    private UUID accountId;
+    private long amount;
+    private long balanceAfter;
+    //the credited account of a transfer, null otherwise
+    private UUID counterpartyId;
+    private long counterpartyBalanceAfter;
+    private String description;
+    //Idempotency-Key header of the request that made the operation, if any
+    private String idempotencyKey;
+}
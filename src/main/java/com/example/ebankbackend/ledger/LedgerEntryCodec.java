@@ -0,0 +1,112 @@
+package com.example.ebankbackend.ledger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary journal record of a {@link LedgerEntry}: {@code int length, int crc32c, payload}. A record whose
+ * length or checksum does not match was torn by a crash while being written, and ends the journal.
+ * <p>
+ * Payload, big-endian: sequence (8), kind (1), timestamp millis (8), account id (16), amount (8),
+ * balance after (8), has counterparty (1), counterparty id (16), counterparty balance after (8), then the
+ * description and the idempotency key as a length (2, -1 for null) and UTF-8 bytes. About 90 bytes for a
+ * debit with a short description.
+ */
+public final class LedgerEntryCodec {
+
+    static final int HEADER_SIZE = 8;
+    private static final int FIXED_PAYLOAD_SIZE = 8 + 1 + 8 + 16 + 8 + 8 + 1 + 16 + 8 + 2 + 2;
+    private static final int MAX_DESCRIPTION_BYTES = 4096;
+    private static final int MAX_IDEMPOTENCY_KEY_BYTES = 400;
+    private static final int MAX_PAYLOAD_SIZE = FIXED_PAYLOAD_SIZE + MAX_DESCRIPTION_BYTES + MAX_IDEMPOTENCY_KEY_BYTES;
+    public static final int MAX_RECORD_SIZE = HEADER_SIZE + MAX_PAYLOAD_SIZE;
+
+    private static final LedgerEntry.Kind[] KINDS = LedgerEntry.Kind.values();
+
+    private LedgerEntryCodec() {
+    }
+
+    //descriptions longer than MAX_DESCRIPTION_BYTES are cut, the column is a VARCHAR(255) anyway; keys are at most 100 characters
+    public static void encode(LedgerEntry entry, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(entry.getSequence());
+        buffer.put((byte) entry.getKind().ordinal());
+        buffer.putLong(entry.getTimestamp());
+        putUuid(buffer, entry.getAccountId());
+        buffer.putLong(entry.getAmount());
+        buffer.putLong(entry.getBalanceAfter());
+        buffer.put((byte) (entry.getCounterpartyId() == null ? 0 : 1));
+        putUuid(buffer, entry.getCounterpartyId() == null ? new UUID(0, 0) : entry.getCounterpartyId());
+        buffer.putLong(entry.getCounterpartyBalanceAfter());
+        putString(buffer, entry.getDescription(), MAX_DESCRIPTION_BYTES);
+        putString(buffer, entry.getIdempotencyKey(), MAX_IDEMPOTENCY_KEY_BYTES);
+        int end = buffer.position();
+        int length = end - start - HEADER_SIZE;
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, checksum(buffer, start + HEADER_SIZE, length));
+    }
+
+    /**
+     * @return the entry at the position of the buffer, which is moved past it, or null at the end of the
+     * journal (a zero length, a torn record or not enough bytes left), the position is then left unchanged
+     */
+    public static LedgerEntry decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) return null;
+        int length = buffer.getInt(start);
+        if (length < FIXED_PAYLOAD_SIZE || length > MAX_PAYLOAD_SIZE
+                || buffer.remaining() < HEADER_SIZE + length) return null;
+        if (buffer.getInt(start + 4) != checksum(buffer, start + HEADER_SIZE, length)) return null;
+        buffer.position(start + HEADER_SIZE);
+        long sequence = buffer.getLong();
+        LedgerEntry.Kind kind = KINDS[buffer.get()];
+        long timestamp = buffer.getLong();
+        UUID accountId = getUuid(buffer);
+        long amount = buffer.getLong();
+        long balanceAfter = buffer.getLong();
+        boolean hasCounterparty = buffer.get() == 1;
+        UUID counterpartyId = getUuid(buffer);
+        long counterpartyBalanceAfter = buffer.getLong();
+        String description = getString(buffer);
+        String idempotencyKey = getString(buffer);
+        return new LedgerEntry(sequence, kind, timestamp, accountId, amount, balanceAfter,
+                hasCounterparty ? counterpartyId : null, counterpartyBalanceAfter, description, idempotencyKey);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(offset + length).position(offset));
+        return (int) crc.getValue();
+    }
+
+    private static void putString(ByteBuffer buffer, String value, int maxBytes) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, maxBytes);
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
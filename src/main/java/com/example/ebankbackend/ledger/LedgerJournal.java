@@ -0,0 +1,30 @@
+package com.example.ebankbackend.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Durable append-only log of the entries of one ledger shard, written by the shard thread only.
+ * Entries are durable once {@link #force()} returns, not before.
+ */
+public interface LedgerJournal extends Closeable {
+
+    void append(LedgerEntry entry) throws IOException;
+
+    void force() throws IOException;
+
+    /**
+     * Reads the journal from the start, passing on the entries after {@code afterSequence}, and drops a
+     * torn record at its end.
+     *
+     * @return the sequence of the last entry in the journal, {@code afterSequence} if there is none after it
+     */
+    long replay(long afterSequence, Consumer<LedgerEntry> consumer) throws IOException;
+
+    /**
+     * Lets the journal drop the entries up to {@code sequence}, all of them in the database already. It may
+     * keep some, replay skips them.
+     */
+    void truncate(long sequence) throws IOException;
+}
@@ -0,0 +1,127 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.cache.AccountSnapshotCache;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.LedgerCheckpoint;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.outbox.OperationOutbox;
+import com.example.ebankbackend.repositories.AccountBalanceView;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.BankAccountView;
+import com.example.ebankbackend.repositories.LedgerCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The database side of the ledger: loads the balance of an account the first time a shard touches it,
+ * and writes applied entries behind the shards, a group of entries per transaction.
+ */
+@Slf4j
+public class LedgerPersister {
+
+    private final BankAccountRepository bankAccountRepository;
+    private final AccountOperationRepository accountOperationRepository;
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+    private final AccountSnapshotCache accountSnapshotCache;
+    private final OperationOutbox operationOutbox;
+    private final TransactionTemplate transactionTemplate;
+
+    public LedgerPersister(BankAccountRepository bankAccountRepository, AccountOperationRepository accountOperationRepository,
+                           LedgerCheckpointRepository ledgerCheckpointRepository, AccountSnapshotCache accountSnapshotCache,
+                           OperationOutbox operationOutbox, TransactionTemplate transactionTemplate) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.accountOperationRepository = accountOperationRepository;
+        this.ledgerCheckpointRepository = ledgerCheckpointRepository;
+        this.accountSnapshotCache = accountSnapshotCache;
+        this.operationOutbox = operationOutbox;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    //null when there is no such account. Reads run in a read-write transaction, which keeps them on the primary
+    public LedgerAccount load(UUID accountId) {
+        BankAccountView view = transactionTemplate.execute(status -> bankAccountRepository.findViewById(accountId).orElse(null));
+        if (view == null) return null;
+        return new LedgerAccount(view.getBalance(), view.getOverDraft() == null ? 0 : view.getOverDraft());
+    }
+
+    public long checkpoint(int shard) {
+        return transactionTemplate.execute(status -> ledgerCheckpointRepository.findById(shard).map(LedgerCheckpoint::getSequence).orElse(0L));
+    }
+
+    /**
+     * One transaction: the operation rows, one relative balance update per account, so the write-behind of
+     * two shards touching the same account (a transfer) commute, and the checkpoint of the shard.
+     * Entries of accounts that no longer exist are skipped.
+     */
+    public void persist(int shard, List<LedgerEntry> entries) {
+        Set<UUID> touched = transactionTemplate.execute(status -> {
+            Set<UUID> accountIds = new HashSet<>();
+            for (LedgerEntry entry : entries) {
+                accountIds.add(entry.getAccountId());
+                if (entry.getCounterpartyId() != null) accountIds.add(entry.getCounterpartyId());
+            }
+            Set<UUID> known = bankAccountRepository.findBalances(accountIds).stream()
+                    .map(AccountBalanceView::getAccountId)
+                    .collect(Collectors.toSet());
+
+            //rows are locked in the same order by every shard
+            Map<UUID, Long> deltas = new TreeMap<>();
+            List<AccountOperation> operations = new ArrayList<>(entries.size());
+            int skipped = 0;
+            for (LedgerEntry entry : entries) {
+                if (!known.contains(entry.getAccountId()) || entry.getCounterpartyId() != null && !known.contains(entry.getCounterpartyId())) {
+                    skipped++;
+                    continue;
+                }
+                switch (entry.getKind()) {
+                    case DEBIT:
+                        operations.add(operation(entry.getAccountId(), OperationType.DEBIT, entry, entry.getBalanceAfter(), entry.getDescription()));
+                        deltas.merge(entry.getAccountId(), -entry.getAmount(), Math::addExact);
+                        break;
+                    case CREDIT:
+                        operations.add(operation(entry.getAccountId(), OperationType.CREDIT, entry, entry.getBalanceAfter(), entry.getDescription()));
+                        deltas.merge(entry.getAccountId(), entry.getAmount(), Math::addExact);
+                        break;
+                    case TRANSFER:
+                        operations.add(operation(entry.getAccountId(), OperationType.DEBIT, entry, entry.getBalanceAfter(),
+                                "Transfer to" + entry.getCounterpartyId()));
+                        operations.add(operation(entry.getCounterpartyId(), OperationType.CREDIT, entry, entry.getCounterpartyBalanceAfter(),
+                                "Transfer from" + entry.getAccountId()));
+                        deltas.merge(entry.getAccountId(), -entry.getAmount(), Math::addExact);
+                        deltas.merge(entry.getCounterpartyId(), entry.getAmount(), Math::addExact);
+                        break;
+                }
+            }
+            if (skipped > 0) log.warn("ledger shard {}: skipped {} journal entries of unknown accounts", shard, skipped);
+            deltas.forEach(bankAccountRepository::credit);
+            accountOperationRepository.saveAll(operations);
+            operationOutbox.record(operations);
+            ledgerCheckpointRepository.save(new LedgerCheckpoint(shard, entries.get(entries.size() - 1).getSequence()));
+            accountSnapshotCache.evictAfterCommit(deltas.keySet());
+            return deltas.keySet();
+        });
+        log.debug("ledger shard {}: persisted {} entries of {} accounts", shard, entries.size(), touched.size());
+    }
+
+    private AccountOperation operation(UUID accountId, OperationType type, LedgerEntry entry, long balanceAfter, String description) {
+        AccountOperation accountOperation = new AccountOperation();
+        accountOperation.setType(type);
+        accountOperation.setDescription(description);
+        accountOperation.setOperationDate(new Date(entry.getTimestamp()));
+        accountOperation.setAmount(entry.getAmount());
+        accountOperation.setBalanceAfter(balanceAfter);
+        accountOperation.setBankAccount(bankAccountRepository.getReferenceById(accountId));
+        return accountOperation;
+    }
+}
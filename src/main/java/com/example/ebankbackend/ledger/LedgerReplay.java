@@ -0,0 +1,107 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.EbankBackendApplication;
+import com.example.ebankbackend.cache.AccountSnapshotCache;
+import com.example.ebankbackend.outbox.OperationOutbox;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.LedgerCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds the account operations and balances the database is missing from the mapped journals of the
+ * ledger, archived segments included ({@code ebank.ledger.archive-segments=true}): for every shard, the
+ * entries after its checkpoint, in order. After restoring a database backup, this brings it up to the last
+ * fsynced operation. Run it with the application stopped:
+ * <pre>
+ * java -cp ebank-backend.jar -Dloader.main=com.example.ebankbackend.ledger.LedgerReplay org.springframework.boot.loader.PropertiesLauncher \
+ *     --journal-dir=ledger [--dry-run] --spring.datasource.url=... --spring.datasource.username=... --spring.datasource.password=...
+ * </pre>
+ * The schema is left as it is, whatever {@code spring.jpa.hibernate.ddl-auto} says.
+ */
+@Slf4j
+public class LedgerReplay {
+
+    private static final Pattern SHARD_DIRECTORY = Pattern.compile("shard-(\\d+)");
+
+    private final LedgerPersister persister;
+    private final int batchSize;
+
+    public LedgerReplay(LedgerPersister persister, int batchSize) {
+        this.persister = persister;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path journalDir = Path.of("ledger");
+        boolean dryRun = false;
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--journal-dir=")) journalDir = Path.of(arg.substring("--journal-dir=".length()));
+            else if (arg.equals("--dry-run")) dryRun = true;
+            else springArgs.add(arg);
+        }
+        //command line arguments win over application.properties
+        springArgs.add("--spring.jpa.hibernate.ddl-auto=none");
+        springArgs.add("--ebank.balance.update-mode=conditional");
+        springArgs.add("--ebank.seed.enabled=false");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EbankBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(springArgs.toArray(new String[0]))) {
+            LedgerPersister persister = new LedgerPersister(context.getBean(BankAccountRepository.class),
+                    context.getBean(AccountOperationRepository.class), context.getBean(LedgerCheckpointRepository.class),
+                    context.getBean(AccountSnapshotCache.class), context.getBean(OperationOutbox.class),
+                    context.getBean(TransactionTemplate.class));
+            int replayed = new LedgerReplay(persister, 1000).replay(journalDir, dryRun);
+            System.out.printf("%s %d journal entries from %s%n", dryRun ? "would replay" : "replayed", replayed, journalDir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * @return the number of entries written, or that would be written on a dry run
+     */
+    public int replay(Path journalDir, boolean dryRun) throws IOException {
+        int total = 0;
+        for (Path shardDirectory : shardDirectories(journalDir)) {
+            Matcher matcher = SHARD_DIRECTORY.matcher(shardDirectory.getFileName().toString());
+            if (!matcher.matches()) continue;
+            int shard = Integer.parseInt(matcher.group(1));
+            long checkpoint = persister.checkpoint(shard);
+            List<LedgerEntry> batch = new ArrayList<>(batchSize);
+            int[] count = {0};
+            long last = MappedSegmentJournal.read(shardDirectory, checkpoint, entry -> {
+                count[0]++;
+                if (dryRun) return;
+                batch.add(entry);
+                if (batch.size() >= batchSize) {
+                    persister.persist(shard, batch);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) persister.persist(shard, batch);
+            log.info("shard {}: {} entries after checkpoint {}, up to sequence {}", shard, count[0], checkpoint, last);
+            total += count[0];
+        }
+        return total;
+    }
+
+    private static List<Path> shardDirectories(Path journalDir) throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+    }
+}
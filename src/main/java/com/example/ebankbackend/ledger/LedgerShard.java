@@ -0,0 +1,327 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The accounts of one partition of the id space and the only thread that touches them: commands are
+ * applied in queue order without locks, journaled, and answered once a whole group of them has been
+ * fsynced. A second thread writes the answered entries behind to the database. At most
+ * {@code maxAccounts} accounts are kept beyond those whose last change is not persisted yet, the least
+ * recently used are dropped and loaded again when touched.
+ */
+@Slf4j
+class LedgerShard {
+
+    private static final long POLL_MILLIS = 50;
+    private static final long PERSIST_RETRY_MILLIS = 1000;
+
+    final int index;
+    private final LedgerJournal journal;
+    private final LedgerPersister persister;
+    private final int maxGroupSize;
+    private final int persistBatchSize;
+    private final int maxAccounts;
+    private final BlockingQueue<LedgerCommand> commands;
+    private final BlockingQueue<LedgerEntry> unpersisted;
+    //access order, least recently used first
+    private final Map<UUID, LedgerAccount> accounts = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<LedgerCommand> group = new ArrayList<>();
+    private final List<LedgerEntry> groupEntries = new ArrayList<>();
+    private final AtomicLong persistedSequence = new AtomicLong();
+    private long sequence;
+    private long truncatedSequence;
+    private volatile boolean running;
+    private volatile boolean failed;
+    private Thread writer;
+    private Thread persisterThread;
+
+    LedgerShard(int index, LedgerJournal journal, LedgerPersister persister, int queueCapacity, int maxGroupSize,
+                int persistBatchSize, int unpersistedCapacity, int maxAccounts) {
+        this.index = index;
+        this.journal = journal;
+        this.persister = persister;
+        this.maxGroupSize = maxGroupSize;
+        this.persistBatchSize = persistBatchSize;
+        this.maxAccounts = maxAccounts;
+        this.commands = new ArrayBlockingQueue<>(queueCapacity);
+        this.unpersisted = new LinkedBlockingQueue<>(unpersistedCapacity);
+    }
+
+    /**
+     * Writes the journal entries the database is missing, those after the checkpoint of the shard, then
+     * empties the journal.
+     */
+    void recover() throws IOException {
+        long checkpoint = persister.checkpoint(index);
+        List<LedgerEntry> batch = new ArrayList<>();
+        int[] recovered = {0};
+        long last = journal.replay(checkpoint, entry -> {
+            batch.add(entry);
+            recovered[0]++;
+            if (batch.size() >= persistBatchSize) {
+                persister.persist(index, batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) persister.persist(index, batch);
+        journal.truncate(last);
+        sequence = last;
+        truncatedSequence = last;
+        persistedSequence.set(last);
+        if (recovered[0] > 0) log.info("ledger shard {}: recovered {} journal entries after sequence {}", index, recovered[0], checkpoint);
+    }
+
+    void start() {
+        running = true;
+        writer = new Thread(this::write, "ledger-shard-" + index);
+        persisterThread = new Thread(this::persist, "ledger-persist-" + index);
+        writer.start();
+        persisterThread.start();
+    }
+
+    //drains the queue and the entries it answered; a journal left empty lets the shard count change
+    void stop() throws InterruptedException, IOException {
+        running = false;
+        writer.join();
+        persisterThread.join();
+        if (!failed && persistedSequence.get() == sequence) journal.truncate(sequence);
+        journal.close();
+    }
+
+    //once stopped, or from the thread of the shard
+    int loadedAccounts() {
+        return accounts.size();
+    }
+
+    long persistedSequence() {
+        return persistedSequence.get();
+    }
+
+    void enqueue(LedgerCommand command) throws InterruptedException {
+        if (!running) throw new IllegalStateException("Ledger is stopped");
+        commands.put(command);
+    }
+
+    LedgerAccount account(UUID accountId) throws BankAccountNotFoundException {
+        LedgerAccount account = accounts.get(accountId);
+        if (account == null) {
+            account = persister.load(accountId);
+            if (account == null) throw new BankAccountNotFoundException("BankAccount not found");
+            accounts.put(accountId, account);
+        }
+        return account;
+    }
+
+    private void write() {
+        List<LedgerCommand> batch = new ArrayList<>(maxGroupSize);
+        while (running || !commands.isEmpty()) {
+            try {
+                LedgerCommand first = commands.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    compactJournal();
+                    evictAccounts();
+                    continue;
+                }
+                batch.add(first);
+                commands.drainTo(batch, maxGroupSize - 1);
+                for (LedgerCommand command : batch) {
+                    if (command.isCrossShard()) {
+                        commitGroup();
+                        rendezvous(command);
+                    } else {
+                        apply(command);
+                    }
+                }
+                commitGroup();
+                evictAccounts();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                //the memory of the shard may be ahead of its journal now, only a restart recovers it
+                log.error("ledger shard {} failed, its operations are rejected until a restart", index, e);
+                failed = true;
+                group.forEach(command -> command.result.completeExceptionally(e));
+                group.clear();
+                groupEntries.clear();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void apply(LedgerCommand command) throws IOException {
+        if (failed) {
+            command.result.completeExceptionally(new IllegalStateException("Ledger shard " + index + " failed"));
+            return;
+        }
+        try {
+            LedgerAccount account = account(command.accountId);
+            LedgerEntry entry;
+            switch (command.kind) {
+                case DEBIT:
+                    if (!account.canDebit(command.amount)) throw new BalanceNotSufficientException("Balance not sufficient");
+                    entry = entry(command, Math.subtractExact(account.getBalance(), command.amount), 0);
+                    account.setBalance(entry.getBalanceAfter());
+                    account.movedBy(this, entry.getSequence());
+                    break;
+                case CREDIT:
+                    entry = entry(command, Math.addExact(account.getBalance(), command.amount), 0);
+                    account.setBalance(entry.getBalanceAfter());
+                    account.movedBy(this, entry.getSequence());
+                    break;
+                default:
+                    entry = transfer(command, account, account(command.counterpartyId));
+            }
+            journal.append(entry);
+            group.add(command);
+            groupEntries.add(entry);
+        } catch (BankAccountNotFoundException | BalanceNotSufficientException | ArithmeticException e) {
+            command.result.completeExceptionally(e);
+        }
+    }
+
+    //the destination may belong to another shard, whose thread waits in rendezvous meanwhile.
+    //Debit first, then credit, so a transfer to the same account leaves it unchanged
+    private LedgerEntry transfer(LedgerCommand command, LedgerAccount source, LedgerAccount destination) throws BalanceNotSufficientException {
+        if (!source.canDebit(command.amount)) throw new BalanceNotSufficientException("Balance not sufficient");
+        long previousSourceBalance = source.getBalance();
+        long sourceBalance = Math.subtractExact(previousSourceBalance, command.amount);
+        source.setBalance(sourceBalance);
+        try {
+            long destinationBalance = Math.addExact(destination.getBalance(), command.amount);
+            destination.setBalance(destinationBalance);
+            LedgerEntry entry = entry(command, sourceBalance, destinationBalance);
+            source.movedBy(this, entry.getSequence());
+            destination.movedBy(this, entry.getSequence());
+            return entry;
+        } catch (ArithmeticException e) {
+            source.setBalance(previousSourceBalance);
+            throw e;
+        }
+    }
+
+    private LedgerEntry entry(LedgerCommand command, long balanceAfter, long counterpartyBalanceAfter) {
+        return new LedgerEntry(++sequence, command.kind, System.currentTimeMillis(), command.accountId, command.amount,
+                balanceAfter, command.counterpartyId, counterpartyBalanceAfter, command.description, command.idempotencyKey);
+    }
+
+    //one fsync for the whole group, then the callers get their answers. A database that cannot keep up
+    //fills the unpersisted queue, which then holds the shard back
+    private void commitGroup() throws IOException, InterruptedException {
+        if (group.isEmpty()) return;
+        journal.force();
+        for (LedgerEntry entry : groupEntries) {
+            unpersisted.put(entry);
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result.complete(groupEntries.get(i));
+        }
+        group.clear();
+        groupEntries.clear();
+    }
+
+    //both shards committed what they applied before, so the transfer never depends on an entry that is not durable
+    private void rendezvous(LedgerCommand command) throws IOException, InterruptedException {
+        command.arrived.countDown();
+        if (command.owner != this) {
+            awaitUninterruptibly(command.applied);
+            return;
+        }
+        awaitUninterruptibly(command.arrived);
+        try {
+            LedgerShard other = command.counterpartyShard;
+            if (failed || other.failed) throw new IllegalStateException("Ledger shard failed");
+            LedgerEntry entry;
+            try {
+                entry = transfer(command, account(command.accountId), other.account(command.counterpartyId));
+            } catch (BankAccountNotFoundException | BalanceNotSufficientException | ArithmeticException e) {
+                command.result.completeExceptionally(e);
+                return;
+            }
+            journal.append(entry);
+            group.add(command);
+            groupEntries.add(entry);
+            commitGroup();
+        } catch (RuntimeException e) {
+            command.result.completeExceptionally(e);
+        } finally {
+            command.applied.countDown();
+        }
+    }
+
+    private void persist() {
+        List<LedgerEntry> batch = new ArrayList<>(persistBatchSize);
+        while (running || writer.isAlive() || !unpersisted.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    LedgerEntry first = unpersisted.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    unpersisted.drainTo(batch, persistBatchSize - 1);
+                }
+                persister.persist(index, batch);
+                persistedSequence.set(batch.get(batch.size() - 1).getSequence());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                //the entries stay journaled: retried here, or recovered at the next start
+                log.error("ledger shard {}: could not persist {} entries, retrying", index, batch.size(), e);
+                if (!running) return;
+                try {
+                    Thread.sleep(PERSIST_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    //while idle, a journal whose entries are all in the database starts over
+    private void compactJournal() throws IOException {
+        if (failed || truncatedSequence == sequence || persistedSequence.get() != sequence) return;
+        journal.truncate(sequence);
+        truncatedSequence = sequence;
+    }
+
+    //least recently used first, skipping accounts the database is still behind on
+    private void evictAccounts() {
+        if (accounts.size() <= maxAccounts) return;
+        Iterator<LedgerAccount> iterator = accounts.values().iterator();
+        while (accounts.size() > maxAccounts && iterator.hasNext()) {
+            if (iterator.next().isPersisted()) iterator.remove();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.ebankbackend.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link LedgerJournal} in a directory of fixed-size segment files, each named after the sequence of its
+ * first entry and written through a {@link MappedByteBuffer}: an append is a copy into memory, and
+ * {@link #force()} flushes the range appended since the last one, once per group of entries.
+ * <p>
+ * A segment that has no room for another record is forced and closed, and the next one starts. Closed
+ * segments whose entries are all in the database are deleted, or moved to {@value #ARCHIVE} when the
+ * journal archives them for {@link LedgerReplay}.
+ */
+@Slf4j
+public class MappedSegmentJournal implements LedgerJournal {
+
+    static final String ARCHIVE = "archive";
+    private static final String SUFFIX = ".segment";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean archive;
+    //closed segments and the sequence of their last entry
+    private final Map<Path, Long> closedSegments = new TreeMap<>();
+    private Segment active;
+
+    public MappedSegmentJournal(Path directory, int segmentSize, boolean archive) throws IOException {
+        if (segmentSize < 2 * LedgerEntryCodec.MAX_RECORD_SIZE) throw new IllegalArgumentException("Segments of " + segmentSize + " bytes are too small");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.archive = archive;
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public void append(LedgerEntry entry) throws IOException {
+        if (active == null) {
+            active = Segment.create(directory.resolve(segmentName(entry.getSequence())), segmentSize);
+        } else if (active.buffer.remaining() < LedgerEntryCodec.MAX_RECORD_SIZE) {
+            roll(entry.getSequence());
+        }
+        LedgerEntryCodec.encode(entry, active.buffer);
+        active.lastSequence = entry.getSequence();
+    }
+
+    private void roll(long nextSequence) throws IOException {
+        active.buffer.force();
+        active.close();
+        closedSegments.put(active.path, active.lastSequence);
+        active = Segment.create(directory.resolve(segmentName(nextSequence)), segmentSize);
+        log.debug("journal {} rolled to segment {}", directory, active.path.getFileName());
+    }
+
+    @Override
+    public void force() throws IOException {
+        if (active == null) return;
+        int position = active.buffer.position();
+        if (position > active.forced) {
+            active.buffer.force(active.forced, position - active.forced);
+            active.forced = position;
+        }
+    }
+
+    @Override
+    public long replay(long afterSequence, Consumer<LedgerEntry> consumer) throws IOException {
+        List<Path> segments = segments(directory);
+        long last = afterSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = Segment.open(segments.get(i));
+            last = Math.max(last, segment.read(afterSequence, consumer));
+            if (i < segments.size() - 1) {
+                closedSegments.put(segment.path, segment.lastSequence);
+                segment.close();
+            } else {
+                segment.clearTornTail();
+                active = segment;
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public void truncate(long sequence) throws IOException {
+        List<Path> persisted = closedSegments.entrySet().stream()
+                .filter(segment -> segment.getValue() <= sequence)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        for (Path segment : persisted) {
+            if (archive) {
+                Path archived = Files.createDirectories(directory.resolve(ARCHIVE)).resolve(segment.getFileName());
+                Files.move(segment, archived, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.delete(segment);
+            }
+            closedSegments.remove(segment);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (active == null) return;
+        try {
+            force();
+        } finally {
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Reads the entries after {@code afterSequence} of the archived then live segments of a journal
+     * directory, without opening it for writing.
+     *
+     * @return the sequence of the last entry read, {@code afterSequence} if there is none after it
+     */
+    public static long read(Path directory, long afterSequence, Consumer<LedgerEntry> consumer) throws IOException {
+        List<Path> segments = new ArrayList<>(segments(directory.resolve(ARCHIVE)));
+        segments.addAll(segments(directory));
+        long last = afterSequence;
+        for (Path path : segments) {
+            Segment segment = Segment.openReadOnly(path);
+            try {
+                last = Math.max(last, segment.read(afterSequence, consumer));
+            } finally {
+                segment.close();
+            }
+        }
+        return last;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    //zero-padded, so that names sort like sequences
+    private static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SUFFIX);
+    }
+
+    private static final class Segment {
+
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int forced;
+        long lastSequence;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        static Segment open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+
+        static Segment openReadOnly(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+
+        //leaves the buffer after the last valid record, where the next one goes
+        long read(long afterSequence, Consumer<LedgerEntry> consumer) {
+            buffer.position(0);
+            LedgerEntry entry;
+            while ((entry = LedgerEntryCodec.decode(buffer)) != null) {
+                if (entry.getSequence() > afterSequence) consumer.accept(entry);
+                lastSequence = entry.getSequence();
+            }
+            forced = buffer.position();
+            return lastSequence;
+        }
+
+        //the bytes of a record torn by a crash must not be read as part of the records written over them
+        void clearTornTail() {
+            int end = Math.min(buffer.capacity(), buffer.position() + LedgerEntryCodec.MAX_RECORD_SIZE);
+            for (int i = buffer.position(); i < end; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force(buffer.position(), end - buffer.position());
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
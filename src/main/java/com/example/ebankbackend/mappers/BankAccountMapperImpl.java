@@ -1,20 +1,34 @@
 package com.example.ebankbackend.mappers;
 
 import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.dtos.BankAccountDTO;
 import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
 import com.example.ebankbackend.dtos.CustomerDTO;
 import com.example.ebankbackend.dtos.SavingBankAccountDTO;
 import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
 import com.example.ebankbackend.entities.CurrentAccount;
 import com.example.ebankbackend.entities.Customer;
 import com.example.ebankbackend.entities.SavingAccount;
-import org.springframework.beans.BeanUtils;
+import com.example.ebankbackend.repositories.BankAccountView;
+import com.example.ebankbackend.support.Money;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 //MapStruct : frameWork do mapping between classes.
+//mapped by hand field by field: BeanUtils.copyProperties looked up property descriptors reflectively on every call
 @Service
 public class BankAccountMapperImpl {
+    private static final String SAVING_ACCOUNT_TYPE = SavingAccount.class.getSimpleName();
+    private static final String CURRENT_ACCOUNT_TYPE = CurrentAccount.class.getSimpleName();
+
     public CustomerDTO fromCustomer(Customer customer){
+        if(customer==null) return null;
         CustomerDTO customerDto = new CustomerDTO();
         customerDto.setId(customer.getId());
         customerDto.setName(customer.getName());
@@ -23,44 +37,123 @@ public class BankAccountMapperImpl {
     }
 
     public Customer fromCustomerDto(CustomerDTO customerDto){
+        if(customerDto==null) return null;
         Customer customer = new Customer();
-        BeanUtils.copyProperties(customerDto,customer);
-
+        customer.setId(customerDto.getId());
+        customer.setName(customerDto.getName());
+        customer.setEmail(customerDto.getEmail());
         return customer;
     }
+
     public SavingBankAccountDTO fromSavingBankAccount(SavingAccount savingAccount){
-        SavingBankAccountDTO savingBankAccountDTO = new SavingBankAccountDTO();
-        BeanUtils.copyProperties(savingAccount,savingBankAccountDTO);
-        savingBankAccountDTO.setCustomerDTO((fromCustomer(savingAccount.getCustomer())));
-        savingBankAccountDTO.setType(savingAccount.getClass().getSimpleName());
-        return savingBankAccountDTO;
+        return fromSavingBankAccount(savingAccount, fromCustomer(savingAccount.getCustomer()));
     }
 
     public SavingAccount fromSavingBankAccountDTO(SavingBankAccountDTO savingBankAccountDTO){
         SavingAccount savingAccount = new SavingAccount();
-        BeanUtils.copyProperties(savingBankAccountDTO,savingAccount);
+        if(savingBankAccountDTO.getId()!=null)
+            savingAccount.setId(UUID.fromString(savingBankAccountDTO.getId()));
+        savingAccount.setBalance(Money.toMinorUnits(savingBankAccountDTO.getBalance()));
+        savingAccount.setCreationDat(savingBankAccountDTO.getCreationDat());
+        savingAccount.setStatus(savingBankAccountDTO.getStatus());
+        savingAccount.setInterestRate(savingBankAccountDTO.getInterestRate());
         savingAccount.setCustomer(fromCustomerDto(savingBankAccountDTO.getCustomerDTO()));
         return savingAccount;
     }
 
     public CurrentBankAccountDTO fromCurrentBankAccount( CurrentAccount currentAccount){
-        CurrentBankAccountDTO currentBankAccountDTO = new CurrentBankAccountDTO();
-        BeanUtils.copyProperties(currentAccount,currentBankAccountDTO);
-        currentBankAccountDTO.setCustomerDTO(fromCustomer(currentAccount.getCustomer()));
-        currentBankAccountDTO.setType(currentAccount.getClass().getSimpleName());
-        return currentBankAccountDTO;
+        return fromCurrentBankAccount(currentAccount, fromCustomer(currentAccount.getCustomer()));
     }
 
     public CurrentAccount fromCurrentBankAccountDTO(CurrentBankAccountDTO currentBankAccountDTO){
         CurrentAccount currentAccount = new CurrentAccount();
-        BeanUtils.copyProperties(currentBankAccountDTO,currentAccount);
+        if(currentBankAccountDTO.getId()!=null)
+            currentAccount.setId(UUID.fromString(currentBankAccountDTO.getId()));
+        currentAccount.setBalance(Money.toMinorUnits(currentBankAccountDTO.getBalance()));
+        currentAccount.setCreationDat(currentBankAccountDTO.getCreationDat());
+        currentAccount.setStatus(currentBankAccountDTO.getStatus());
+        currentAccount.setOverDraft(Money.toMinorUnits(currentBankAccountDTO.getOverDraft()));
         currentAccount.setCustomer(fromCustomerDto(currentBankAccountDTO.getCustomerDTO()));
         return currentAccount;
     }
 
+    /**
+     * Maps a list of accounts; accounts of the same customer share one CustomerDTO.
+     */
+    public List<BankAccountDTO> fromBankAccounts(List<? extends BankAccount> bankAccounts){
+        List<BankAccountDTO> bankAccountDTOS = new ArrayList<>(bankAccounts.size());
+        Map<Long, CustomerDTO> customerDTOS = new HashMap<>();
+        for (BankAccount bankAccount : bankAccounts) {
+            Customer customer = bankAccount.getCustomer();
+            CustomerDTO customerDTO = customer == null ? null
+                    : customerDTOS.computeIfAbsent(customer.getId(), id -> fromCustomer(customer));
+            if(bankAccount instanceof SavingAccount){
+                bankAccountDTOS.add(fromSavingBankAccount((SavingAccount) bankAccount, customerDTO));
+            }else{
+                bankAccountDTOS.add(fromCurrentBankAccount((CurrentAccount) bankAccount, customerDTO));
+            }
+        }
+        return bankAccountDTOS;
+    }
+
+    public BankAccountDTO fromBankAccountView(BankAccountView bankAccountView){
+        //left join: an account without a customer has no customer columns either
+        CustomerDTO customerDTO = bankAccountView.getCustomerId() == null ? null
+                : new CustomerDTO(bankAccountView.getCustomerId(), bankAccountView.getCustomerName(), bankAccountView.getCustomerEmail());
+        if(bankAccountView.getType() == SavingAccount.class){
+            SavingBankAccountDTO savingBankAccountDTO = new SavingBankAccountDTO();
+            savingBankAccountDTO.setId(bankAccountView.getId().toString());
+            savingBankAccountDTO.setBalance(Money.fromMinorUnits(bankAccountView.getBalance()));
+            savingBankAccountDTO.setCreationDat(bankAccountView.getCreationDat());
+            savingBankAccountDTO.setStatus(bankAccountView.getStatus());
+            savingBankAccountDTO.setCustomerDTO(customerDTO);
+            savingBankAccountDTO.setInterestRate(bankAccountView.getInterestRate());
+            savingBankAccountDTO.setType(SAVING_ACCOUNT_TYPE);
+            return savingBankAccountDTO;
+        }
+        CurrentBankAccountDTO currentBankAccountDTO = new CurrentBankAccountDTO();
+        currentBankAccountDTO.setId(bankAccountView.getId().toString());
+        currentBankAccountDTO.setBalance(Money.fromMinorUnits(bankAccountView.getBalance()));
+        currentBankAccountDTO.setCreationDat(bankAccountView.getCreationDat());
+        currentBankAccountDTO.setStatus(bankAccountView.getStatus());
+        currentBankAccountDTO.setCustomerDTO(customerDTO);
+        currentBankAccountDTO.setOverDraft(Money.fromMinorUnits(bankAccountView.getOverDraft()));
+        currentBankAccountDTO.setType(CURRENT_ACCOUNT_TYPE);
+        return currentBankAccountDTO;
+    }
+
     public AccountOperationDTO fromAccountOperation(AccountOperation accountOperation){
-        AccountOperationDTO AccountOperationDTO = new AccountOperationDTO();
-        BeanUtils.copyProperties(accountOperation,AccountOperationDTO);
-        return AccountOperationDTO;
+        AccountOperationDTO accountOperationDTO = new AccountOperationDTO();
+        accountOperationDTO.setId(accountOperation.getId());
+        accountOperationDTO.setOperationDate(accountOperation.getOperationDate());
+        accountOperationDTO.setAmount(Money.fromMinorUnits(accountOperation.getAmount()));
+        accountOperationDTO.setBalanceAfter(Money.fromMinorUnits(accountOperation.getBalanceAfter()));
+        accountOperationDTO.setType(accountOperation.getType());
+        accountOperationDTO.setDescription(accountOperation.getDescription());
+        return accountOperationDTO;
+    }
+
+    private SavingBankAccountDTO fromSavingBankAccount(SavingAccount savingAccount, CustomerDTO customerDTO){
+        SavingBankAccountDTO savingBankAccountDTO = new SavingBankAccountDTO();
+        savingBankAccountDTO.setId(savingAccount.getId().toString());
+        savingBankAccountDTO.setBalance(Money.fromMinorUnits(savingAccount.getBalance()));
+        savingBankAccountDTO.setCreationDat(savingAccount.getCreationDat());
+        savingBankAccountDTO.setStatus(savingAccount.getStatus());
+        savingBankAccountDTO.setInterestRate(savingAccount.getInterestRate());
+        savingBankAccountDTO.setCustomerDTO(customerDTO);
+        savingBankAccountDTO.setType(SAVING_ACCOUNT_TYPE);
+        return savingBankAccountDTO;
+    }
+
+    private CurrentBankAccountDTO fromCurrentBankAccount(CurrentAccount currentAccount, CustomerDTO customerDTO){
+        CurrentBankAccountDTO currentBankAccountDTO = new CurrentBankAccountDTO();
+        currentBankAccountDTO.setId(currentAccount.getId().toString());
+        currentBankAccountDTO.setBalance(Money.fromMinorUnits(currentAccount.getBalance()));
+        currentBankAccountDTO.setCreationDat(currentAccount.getCreationDat());
+        currentBankAccountDTO.setStatus(currentAccount.getStatus());
+        currentBankAccountDTO.setOverDraft(Money.fromMinorUnits(currentAccount.getOverDraft()));
+        currentBankAccountDTO.setCustomerDTO(customerDTO);
+        currentBankAccountDTO.setType(CURRENT_ACCOUNT_TYPE);
+        return currentBankAccountDTO;
     }
 }
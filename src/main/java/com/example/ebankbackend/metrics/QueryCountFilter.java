@@ -0,0 +1,55 @@
+package com.example.ebankbackend.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Records the number of SQL statements of each request into {@value #METER_NAME}, tagged like
+ * http.server.requests by method and uri template. Streamed exports write on another thread after
+ * the request returns, so only the statements of their initial dispatch are counted.
+ */
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String METER_NAME = "ebank.request.queries";
+
+    private final QueryCounter queryCounter;
+    private final MeterRegistry meterRegistry;
+
+    public QueryCountFilter(QueryCounter queryCounter, MeterRegistry meterRegistry) {
+        this.queryCounter = queryCounter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        queryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int queries = queryCounter.stop();
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder(METER_NAME)
+                    .description("SQL statements per HTTP request")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                    .register(meterRegistry)
+                    .record(queries);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ebankbackend.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, between {@link #start()} and
+ * {@link #stop()}. Hibernate's own statistics are global to the session factory, this gives the count
+ * for one request.
+ */
+@Component
+public class QueryCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) count[0]++;
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    public void start() {
+        COUNT.set(new int[1]);
+    }
+
+    //number of statements since start(), -1 if counting was not started on this thread
+    public int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? -1 : count[0];
+    }
+}
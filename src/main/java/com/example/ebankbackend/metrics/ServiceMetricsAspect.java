@@ -0,0 +1,50 @@
+package com.example.ebankbackend.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every {@code BankAccountService} call into {@value #METER_NAME}, tagged by operation (method name)
+ * and outcome ({@code success} or the simple name of the exception thrown).
+ * <p>
+ * Ordered before the transaction and retry advice, so the recorded latency is what the caller waited
+ * for: commit and retries included.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+
+    public static final String METER_NAME = "ebank.service";
+    static final String SUCCESS = "success";
+
+    private final MeterRegistry meterRegistry;
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.example.ebankbackend.services.BankAccountService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = SUCCESS;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METER_NAME)
+                    .description("BankAccountService calls")
+                    .tag("operation", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
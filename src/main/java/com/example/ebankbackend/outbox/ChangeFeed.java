@@ -0,0 +1,178 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+import com.example.ebankbackend.entities.OutboxEvent;
+import com.example.ebankbackend.repositories.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The relayed outbox events in feed offset order, which is dense and only grows: a consumer that read up to
+ * an offset resumes after it and gets exactly the events it has not seen. Subscribers get the events they
+ * have not seen on one notification thread: first their own catch-up read, then, every time the feed
+ * advances, their share of the new events, read once for all of them.
+ */
+@Component
+@Slf4j
+public class ChangeFeed implements DisposableBean {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private static final int PAGE_SIZE = 1000;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastOffset;
+    //notification thread only: every event up to this offset went to the subscriptions
+    private long dispatched;
+
+    public ChangeFeed(OutboxEventRepository outboxEventRepository, TransactionTemplate transactionTemplate) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Reads run in a read-write transaction, which keeps them on the primary: a lagging replica would
+     * answer past the end of what it has and the consumer would skip the events it lacks.
+     *
+     * @param accountId only the events of this account, all of them when null
+     */
+    public List<ChangeEventDTO> read(long after, String accountId, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        List<OutboxEvent> events = transactionTemplate.execute(status -> accountId == null
+                ? outboxEventRepository.findByFeedOffsetGreaterThanOrderByFeedOffset(after, page)
+                : outboxEventRepository.findByAccountIdAndFeedOffsetGreaterThanOrderByFeedOffset(accountId, after, page));
+        return events.stream().map(ChangeFeed::toChangeEvent).collect(Collectors.toList());
+    }
+
+    /**
+     * Hands the listener the events after the given offset, of one account or all of them when accountId is null,
+     * in pages in offset order, on the notification thread, until the returned action is run. Empty pages are not
+     * handed over.
+     */
+    public Runnable subscribe(long after, String accountId, Consumer<List<ChangeEventDTO>> listener) {
+        Subscription subscription = new Subscription(after, accountId, listener);
+        execute(() -> catchUp(subscription));
+        return subscription::cancel;
+    }
+
+    //from the relay of any instance: the offsets are in the shared outbox table
+    void advancedTo(long offset) {
+        if (offset <= lastOffset) return;
+        lastOffset = offset;
+        execute(this::dispatch);
+    }
+
+    //once the application is stopping, there is nobody left to notify
+    private void execute(Runnable task) {
+        try {
+            notifier.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("change feed stopped, notification dropped");
+        }
+    }
+
+    //its own reads up to the end of the feed, then it joins the others
+    private void catchUp(Subscription subscription) {
+        List<ChangeEventDTO> events;
+        do {
+            if (subscription.cancelled) return;
+            events = read(subscription.position, subscription.accountId, PAGE_SIZE);
+            subscription.deliver(events);
+        } while (events.size() == PAGE_SIZE);
+        //what the read saw includes everything dispatched so far
+        subscription.position = Math.max(subscription.position, dispatched);
+        subscriptions.add(subscription);
+        if (subscription.cancelled) subscriptions.remove(subscription);
+    }
+
+    //one read of the new events, whatever the number of subscriptions
+    private void dispatch() {
+        long target = lastOffset;
+        if (subscriptions.isEmpty()) {
+            dispatched = Math.max(dispatched, target);
+            return;
+        }
+        while (dispatched < target) {
+            List<ChangeEventDTO> events = read(dispatched, null, PAGE_SIZE);
+            if (events.isEmpty()) {
+                dispatched = target;
+                return;
+            }
+            dispatched = events.get(events.size() - 1).getOffset();
+            subscriptions.forEach(subscription -> subscription.deliver(events));
+        }
+    }
+
+    static ChangeEventDTO toChangeEvent(OutboxEvent event) {
+        ChangeEventDTO changeEventDTO = new ChangeEventDTO();
+        changeEventDTO.setOffset(event.getFeedOffset());
+        changeEventDTO.setEventId(event.getId());
+        changeEventDTO.setType(event.getType());
+        changeEventDTO.setAccountId(event.getAccountId());
+        changeEventDTO.setOccurredAt(event.getOccurredAt());
+        changeEventDTO.setPayload(event.getPayload());
+        return changeEventDTO;
+    }
+
+    //destroyed after the relay that feeds it and before the database it reads: a read in progress finishes
+    @Override
+    public void destroy() throws InterruptedException {
+        notifier.shutdown();
+        if (!notifier.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) notifier.shutdownNow();
+    }
+
+    private final class Subscription {
+
+        private final String accountId;
+        private final Consumer<List<ChangeEventDTO>> listener;
+        //notification thread only: the last offset handed over, or skipped as another account's
+        private long position;
+        private volatile boolean cancelled;
+
+        Subscription(long after, String accountId, Consumer<List<ChangeEventDTO>> listener) {
+            this.position = after;
+            this.accountId = accountId;
+            this.listener = listener;
+        }
+
+        void deliver(List<ChangeEventDTO> events) {
+            if (cancelled || events.isEmpty()) return;
+            long from = position;
+            List<ChangeEventDTO> unseen = events.stream()
+                    .filter(event -> event.getOffset() > from)
+                    .filter(event -> accountId == null || accountId.equals(event.getAccountId()))
+                    .collect(Collectors.toList());
+            position = Math.max(position, events.get(events.size() - 1).getOffset());
+            if (unseen.isEmpty()) return;
+            try {
+                listener.accept(unseen);
+            } catch (RuntimeException e) {
+                log.warn("change feed listener failed", e);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+    }
+}
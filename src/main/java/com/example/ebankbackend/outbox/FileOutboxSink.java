@@ -0,0 +1,46 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends events to a file, one JSON object per line, and forces the file once per batch before the relay
+ * commits it.
+ */
+public class FileOutboxSink implements OutboxSink, Closeable {
+
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+
+    public FileOutboxSink(Path file, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEventDTO> events) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (ChangeEventDTO event : events) {
+            lines.append(objectMapper.writeValueAsString(event)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) channel.write(buffer);
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
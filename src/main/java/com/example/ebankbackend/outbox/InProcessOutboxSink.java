@@ -0,0 +1,24 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+
+/**
+ * Publishes every event as a Spring application event. Listeners that must only see committed events
+ * use {@code @TransactionalEventListener}, a plain {@code @EventListener} runs before the relay commits.
+ */
+public class InProcessOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public InProcessOutboxSink(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void publish(List<ChangeEventDTO> events) {
+        events.forEach(applicationEventPublisher::publishEvent);
+    }
+}
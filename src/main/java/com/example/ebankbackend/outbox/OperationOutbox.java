@@ -0,0 +1,61 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.OutboxEvent;
+import com.example.ebankbackend.mappers.BankAccountMapperImpl;
+import com.example.ebankbackend.repositories.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Transactional outbox of account operations: one {@link OutboxEvent} per operation, written by the
+ * transaction that writes the operation, so there is an event for every committed operation and for no
+ * rolled back one. {@link OutboxRelay} publishes them afterwards.
+ */
+@Component
+public class OperationOutbox {
+
+    public static final String OPERATION_RECORDED = "OperationRecorded";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final BankAccountMapperImpl dtoMapper;
+    private final ObjectMapper objectMapper;
+
+    public OperationOutbox(OutboxEventRepository outboxEventRepository, BankAccountMapperImpl dtoMapper, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.dtoMapper = dtoMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    //the operations must have been saved already, the events carry their ids
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<AccountOperation> operations) {
+        if (operations.isEmpty()) return;
+        List<OutboxEvent> events = new ArrayList<>(operations.size());
+        for (AccountOperation operation : operations) {
+            OutboxEvent event = new OutboxEvent();
+            event.setType(OPERATION_RECORDED);
+            event.setAccountId(operation.getBankAccount().getId().toString());
+            event.setOccurredAt(operation.getOperationDate());
+            event.setPayload(toJson(operation));
+            events.add(event);
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    private String toJson(AccountOperation operation) {
+        try {
+            return objectMapper.writeValueAsString(dtoMapper.fromAccountOperation(operation));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ebankbackend.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The {@link OutboxSink} of {@code ebank.outbox.sink}: {@code in-process} (application events, the default),
+ * {@code file} (JSON lines in {@code ebank.outbox.file}) or {@code queue} (in-memory broker stand-in).
+ */
+@Configuration
+public class OutboxConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "ebank.outbox.sink", havingValue = "in-process", matchIfMissing = true)
+    OutboxSink inProcessOutboxSink(ApplicationEventPublisher applicationEventPublisher) {
+        return new InProcessOutboxSink(applicationEventPublisher);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "ebank.outbox.sink", havingValue = "file")
+    OutboxSink fileOutboxSink(@Value("${ebank.outbox.file:outbox/events.ndjson}") Path file, ObjectMapper objectMapper) throws IOException {
+        return new FileOutboxSink(file, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ebank.outbox.sink", havingValue = "queue")
+    QueueOutboxSink queueOutboxSink(@Value("${ebank.outbox.queue-capacity:10000}") int capacity) {
+        return new QueueOutboxSink(capacity);
+    }
+}
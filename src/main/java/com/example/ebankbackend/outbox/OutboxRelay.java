@@ -0,0 +1,123 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.entities.OutboxEvent;
+import com.example.ebankbackend.repositories.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes committed outbox events in batches of {@code ebank.outbox.batch-size}. Each batch, in one
+ * transaction: the next feed offsets are given to the oldest unpublished events, the batch goes to the
+ * {@link OutboxSink}, and the transaction commits. Offsets are given at relay time rather than at insert time
+ * because operations commit out of id order; the feed never gets an event behind an offset already served.
+ * <p>
+ * Every instance runs a relay. Two taking the same events conflict on their version, the loser gives up
+ * until its next run.
+ * <p>
+ * At shutdown the relay stops before the {@link ChangeFeed} and the database it depends on: a run in progress
+ * finishes, later ones do nothing.
+ */
+@Component
+@Slf4j
+public class OutboxRelay implements DisposableBean {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxSink outboxSink;
+    private final ChangeFeed changeFeed;
+    private final Object runLock = new Object();
+    private boolean stopped;
+
+    @Value("${ebank.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${ebank.outbox.retention:7d}")
+    private Duration retention;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, TransactionTemplate transactionTemplate,
+                       OutboxSink outboxSink, ChangeFeed changeFeed) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxSink = outboxSink;
+        this.changeFeed = changeFeed;
+    }
+
+    @Scheduled(fixedDelayString = "${ebank.outbox.relay-interval:PT0.5S}")
+    public void relay() {
+        synchronized (runLock) {
+            if (stopped) return;
+            try {
+                int published;
+                do {
+                    published = relayBatch();
+                } while (published == batchSize);
+            } catch (ObjectOptimisticLockingFailureException | DataIntegrityViolationException e) {
+                log.debug("outbox events taken by another relay", e);
+            } catch (RuntimeException e) {
+                log.warn("outbox relay failed, retrying at its next run", e);
+            }
+            Long lastOffset = transactionTemplate.execute(status -> outboxEventRepository.findLastFeedOffset());
+            if (lastOffset != null) changeFeed.advancedTo(lastOffset);
+        }
+    }
+
+    private int relayBatch() {
+        return transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepository.findUnpublished(PageRequest.of(0, batchSize));
+            if (events.isEmpty()) return 0;
+            Long lastOffset = outboxEventRepository.findLastFeedOffset();
+            long offset = lastOffset == null ? 0 : lastOffset;
+            Date now = new Date();
+            for (OutboxEvent event : events) {
+                event.setFeedOffset(++offset);
+                event.setPublishedAt(now);
+            }
+            //conflicts with another relay surface here, before anything is published
+            outboxEventRepository.saveAllAndFlush(events);
+            try {
+                outboxSink.publish(events.stream().map(ChangeFeed::toChangeEvent).collect(Collectors.toList()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.debug("relayed outbox events up to offset {}", offset);
+            return events.size();
+        });
+    }
+
+    //consumers further behind than the retention resume from the oldest event left. The newest event is
+    //never swept, whatever its age: the relay counts the next offsets from it
+    @Scheduled(fixedDelayString = "${ebank.outbox.sweep-interval:PT1H}")
+    public void sweepPublished() {
+        synchronized (runLock) {
+            if (stopped) return;
+            Integer deleted = transactionTemplate.execute(status -> {
+                Long lastOffset = outboxEventRepository.findLastFeedOffset();
+                if (lastOffset == null) return 0;
+                return outboxEventRepository.deletePublishedBefore(new Date(System.currentTimeMillis() - retention.toMillis()), lastOffset);
+            });
+            if (deleted != null && deleted > 0) log.info("swept {} published outbox events", deleted);
+        }
+    }
+
+    //waits for a run in progress; the events it leaves are relayed at the next start
+    @Override
+    public void destroy() {
+        synchronized (runLock) {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where {@link OutboxRelay} publishes events, chosen with {@code ebank.outbox.sink}. A batch is published
+ * inside the relay transaction, before it commits: a failing sink leaves the batch for the next run, and a
+ * commit failing after a publish has it published again. Delivery is at least once, consumers drop
+ * duplicates on {@link ChangeEventDTO#getEventId()}.
+ */
+public interface OutboxSink {
+    void publish(List<ChangeEventDTO> events) throws IOException;
+}
@@ -0,0 +1,41 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for a message broker, for development and tests: a bounded in-memory topic that in-process
+ * consumers poll. A batch that does not fit is refused as a whole, like a broker applying backpressure,
+ * and the relay retries it at its next run.
+ */
+public class QueueOutboxSink implements OutboxSink {
+
+    private final BlockingQueue<ChangeEventDTO> topic;
+
+    public QueueOutboxSink(int capacity) {
+        this.topic = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEventDTO> events) throws IOException {
+        if (topic.remainingCapacity() < events.size())
+            throw new IOException("Outbox topic full, " + topic.size() + " events not consumed yet");
+        topic.addAll(events);
+    }
+
+    //up to max events, waiting at most timeout for the first one
+    public List<ChangeEventDTO> poll(int max, long timeout, TimeUnit unit) throws InterruptedException {
+        List<ChangeEventDTO> events = new ArrayList<>();
+        ChangeEventDTO first = topic.poll(timeout, unit);
+        if (first == null) return events;
+        events.add(first);
+        topic.drainTo(events, max - 1);
+        return events;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.AccountBalanceSnapshot;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.TemporalType;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public interface AccountBalanceSnapshotRepository extends JpaRepository<AccountBalanceSnapshot,Long> {
+    //the newest snapshot taken at or before a date, through the (account, asOf) unique index
+    @Query("select s from AccountBalanceSnapshot s where s.bankAccount.id = :accountId and s.asOf <= :at order by s.asOf desc")
+    List<AccountBalanceSnapshot> findLatest(@Param("accountId") UUID accountId,
+                                            @Param("at") @Temporal(TemporalType.TIMESTAMP) Date at,
+                                            Pageable pageable);
+
+    @Query("select max(s.asOf) from AccountBalanceSnapshot s")
+    Date findLastAsOf();
+
+    @Modifying
+    @Query("delete from AccountBalanceSnapshot s where s.asOf = :asOf")
+    int deleteByAsOf(@Param("asOf") @Temporal(TemporalType.TIMESTAMP) Date asOf);
+}
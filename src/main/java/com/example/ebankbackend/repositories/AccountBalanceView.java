@@ -0,0 +1,13 @@
+package com.example.ebankbackend.repositories;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class AccountBalanceView {
+    private UUID accountId;
+    private long balance;
+}
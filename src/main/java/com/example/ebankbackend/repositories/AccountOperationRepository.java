@@ -4,11 +4,80 @@ import com.example.ebankbackend.entities.AccountOperation;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import javax.persistence.TemporalType;
+import java.util.Date;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.annotations.QueryHints.FETCH_SIZE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
 
 public interface AccountOperationRepository extends JpaRepository<AccountOperation,Long> {
-     List<AccountOperation> findByBankAccount_Id(String accountId);
+     List<AccountOperation> findByBankAccount_Id(UUID accountId);
+
+     Page<AccountOperation> findByBankAccount_Id(UUID accountId, Pageable pageable);//Page and Pageable of Spring Data
+
+     //keyset pagination, newest first: the pageable only carries the limit, no offset and no count query
+     @Query("select o from AccountOperation o where o.bankAccount.id = :accountId " +
+             "order by o.operationDate desc, o.id desc")
+     List<AccountOperation> findFirstHistoryPage(@Param("accountId") UUID accountId, Pageable pageable);
+
+     @Query("select o from AccountOperation o where o.bankAccount.id = :accountId " +
+             "and (o.operationDate < :operationDate or (o.operationDate = :operationDate and o.id < :id)) " +
+             "order by o.operationDate desc, o.id desc")
+     List<AccountOperation> findHistoryPageAfter(@Param("accountId") UUID accountId,
+                                                 @Param("operationDate") @Temporal(TemporalType.TIMESTAMP) Date operationDate,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+
+     long countByBankAccount_Id(UUID accountId);
+
+     //the caller must consume and close the stream inside a transaction; the fetch size keeps
+     //the driver from buffering the whole result (MySQL needs useCursorFetch=true for it)
+     @QueryHints({@QueryHint(name = FETCH_SIZE, value = "500"),
+             @QueryHint(name = READ_ONLY, value = "true")})
+     @Query("select o from AccountOperation o where o.bankAccount.id = :accountId " +
+             "order by o.operationDate asc, o.id asc")
+     Stream<AccountOperation> streamByBankAccountId(@Param("accountId") UUID accountId);
+
+     //newest operation in [from, to): its balanceAfter is the balance at 'to'
+     @Query("select o from AccountOperation o where o.bankAccount.id = :accountId " +
+             "and o.operationDate >= :from and o.operationDate < :to " +
+             "order by o.operationDate desc, o.id desc")
+     List<AccountOperation> findLatestBetween(@Param("accountId") UUID accountId,
+                                              @Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                              @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to,
+                                              Pageable pageable);
+
+     @Query("select o from AccountOperation o where o.bankAccount.id = :accountId and o.operationDate >= :from " +
+             "order by o.operationDate asc, o.id asc")
+     List<AccountOperation> findEarliestFrom(@Param("accountId") UUID accountId,
+                                             @Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                             Pageable pageable);
+
+     @Query("select o from AccountOperation o where o.bankAccount.id = :accountId " +
+             "and o.operationDate >= :from and o.operationDate < :to " +
+             "order by o.operationDate asc, o.id asc")
+     List<AccountOperation> findBetween(@Param("accountId") UUID accountId,
+                                        @Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                        @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to);
+
+     //balance after the last operation of each account that moved in [from, to), one row per account
+     @Query("select new com.example.ebankbackend.repositories.AccountBalanceView(o.bankAccount.id, o.balanceAfter) " +
+             "from AccountOperation o where o.operationDate >= :from and o.operationDate < :to " +
+             "and not exists (select n.id from AccountOperation n where n.bankAccount = o.bankAccount " +
+             "and n.operationDate < :to " +
+             "and (n.operationDate > o.operationDate or (n.operationDate = o.operationDate and n.id > o.id)))")
+     List<AccountBalanceView> findClosingBalances(@Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                                  @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to);
 
-     Page<AccountOperation> findByBankAccount_Id(String accountId, Pageable pageable);//Page and Pageable of Spring Data
+     @Query("select min(o.operationDate) from AccountOperation o")
+     Date findFirstOperationDate();
 }
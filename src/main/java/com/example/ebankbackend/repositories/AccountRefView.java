@@ -0,0 +1,14 @@
+package com.example.ebankbackend.repositories;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class AccountRefView {
+    private String externalRef;
+    private UUID accountId;
+    private long balance;
+}
@@ -1,7 +1,61 @@
 package com.example.ebankbackend.repositories;
 
 import com.example.ebankbackend.entities.BankAccount;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface BankAccountRepository extends JpaRepository<BankAccount,String> {
+import javax.persistence.LockModeType;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BankAccountRepository extends JpaRepository<BankAccount,UUID>, JpaSpecificationExecutor<BankAccount>, BankAccountRepositoryCustom {
+    //listings map the customer of every account, fetch it in the same select instead of one query per account
+    @Override
+    @EntityGraph(attributePaths = "customer")
+    List<BankAccount> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "customer")
+    Page<BankAccount> findAll(Specification<BankAccount> specification, Pageable pageable);
+
+    @Query("select new com.example.ebankbackend.repositories.BankAccountView(" +
+            "a.id, a.balance, a.creationDat, a.status, type(a), a.overDraft, a.interestRate, c.id, c.name, c.email) " +
+            "from BankAccount a left join a.customer c where a.id = :id")
+    Optional<BankAccountView> findViewById(@Param("id") UUID accountId);
+
+    //atomic balance updates: the row lock is held by the UPDATE itself, no read-modify-write.
+    //Same policy as BankAccount.canDebit: current accounts may go down to -overDraft, saving accounts
+    //have no overDraft column value (null in the single table) so they stop at zero
+    @Modifying
+    @Query("update BankAccount a set a.balance = a.balance - :amount, a.version = a.version + 1 " +
+            "where a.id = :id and a.balance + coalesce(a.overDraft, 0) >= :amount")
+    int debitIfSufficient(@Param("id") UUID accountId, @Param("amount") long amount);
+
+    @Modifying
+    @Query("update BankAccount a set a.balance = a.balance + :amount, a.version = a.version + 1 where a.id = :id")
+    int credit(@Param("id") UUID accountId, @Param("amount") long amount);
+
+    //balances right after a conditional update: our own UPDATE holds the row lock, so nobody moved them since
+    @Query("select new com.example.ebankbackend.repositories.AccountBalanceView(a.id, a.balance) from BankAccount a where a.id in :ids")
+    List<AccountBalanceView> findBalances(@Param("ids") Collection<UUID> accountIds);
+
+    //imported accounts by their legacy reference, see StatementImporter
+    @Query("select new com.example.ebankbackend.repositories.AccountRefView(a.externalRef, a.id, a.balance) from BankAccount a where a.externalRef in :refs")
+    List<AccountRefView> findByExternalRefs(@Param("refs") Collection<String> externalRefs);
+
+    //batches lock all their accounts up front, in id order so two batches never wait on each other in a cycle
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from BankAccount a where a.id in :ids order by a.id")
+    List<BankAccount> lockAllById(@Param("ids") Collection<UUID> accountIds);
 }
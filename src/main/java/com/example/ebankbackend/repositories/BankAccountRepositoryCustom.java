@@ -0,0 +1,12 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.BankAccount;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface BankAccountRepositoryCustom {
+    //like findAll(spec, pageable) without the count query, customers are fetched in the same select
+    List<BankAccount> findWithCustomer(Specification<BankAccount> specification, Sort sort, int limit);
+}
@@ -0,0 +1,34 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.BankAccount;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+public class BankAccountRepositoryCustomImpl implements BankAccountRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BankAccount> findWithCustomer(Specification<BankAccount> specification, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BankAccount> query = cb.createQuery(BankAccount.class);
+        Root<BankAccount> root = query.from(BankAccount.class);
+        root.fetch("customer", JoinType.LEFT);
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, cb);
+        if (predicate != null) query.where(predicate);
+        query.select(root).orderBy(toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.dtos.BankAccountFilterDTO;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.entities.SavingAccount;
+import com.example.ebankbackend.support.Money;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.UUID;
+
+public final class BankAccountSpecifications {
+
+    private BankAccountSpecifications() {
+    }
+
+    public static Specification<BankAccount> matching(BankAccountFilterDTO filter) {
+        Specification<BankAccount> specification = Specification.where(null);
+        if (filter == null) return specification;
+        if (filter.getType() != null) specification = specification.and(ofType(filter.getType()));
+        if (filter.getStatus() != null)
+            specification = specification.and((root, query, cb) -> cb.equal(root.get("status"), filter.getStatus()));
+        //compares the customer_id foreign key, no join
+        if (filter.getCustomerId() != null)
+            specification = specification.and((root, query, cb) -> cb.equal(root.get("customer").get("id"), filter.getCustomerId()));
+        if (filter.getMinBalance() != null)
+            specification = specification.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("balance"), Money.toMinorUnits(filter.getMinBalance())));
+        if (filter.getMaxBalance() != null)
+            specification = specification.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("balance"), Money.toMinorUnits(filter.getMaxBalance())));
+        return specification;
+    }
+
+    public static Specification<BankAccount> idAfter(UUID accountId) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), accountId);
+    }
+
+    //filters on the TYPE discriminator column
+    private static Specification<BankAccount> ofType(String type) {
+        Class<? extends BankAccount> accountClass;
+        if (CurrentAccount.class.getSimpleName().equalsIgnoreCase(type)) accountClass = CurrentAccount.class;
+        else if (SavingAccount.class.getSimpleName().equalsIgnoreCase(type)) accountClass = SavingAccount.class;
+        else return (root, query, cb) -> cb.disjunction();
+        return (root, query, cb) -> cb.equal(root.type(), accountClass);
+    }
+}
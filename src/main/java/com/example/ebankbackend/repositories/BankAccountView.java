@@ -0,0 +1,27 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.enums.AccountStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Read-only projection of a bank account row and its customer.
+ * Loaded with a single select, it never touches the account operations.
+ */
+@Data
+@AllArgsConstructor
+public class BankAccountView {
+    private UUID id;
+    private long balance;
+    private Date creationDat;
+    private AccountStatus status;
+    private Class<?> type;
+    private Long overDraft;
+    private Double interestRate;
+    private Long customerId;
+    private String customerName;
+    private String customerEmail;
+}
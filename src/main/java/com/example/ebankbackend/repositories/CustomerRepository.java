@@ -1,13 +1,29 @@
 package com.example.ebankbackend.repositories;
 
+import com.example.ebankbackend.dtos.CustomerDTO;
 import com.example.ebankbackend.entities.Customer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query("select c from Customer c where c.name like :kw")
     List<Customer> searchCustomer(@Param("kw") String keyword);
+
+    //keyset page: a List return type with a Pageable only applies the limit, no count query
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long customerId, Pageable pageable);
+
+    //short keywords have no trigram, they fall back to a prefix match that can use idx_customer_name
+    List<Customer> findByNameStartingWithOrderByNameAsc(String prefix, Pageable pageable);
+
+    List<Customer> findByExternalRefIn(Collection<String> externalRefs);
+
+    //unmanaged rows for loading the search index, nothing accumulates in the persistence context
+    @Query("select new com.example.ebankbackend.dtos.CustomerDTO(c.id, c.name, c.email) from Customer c " +
+            "where c.id > :after order by c.id")
+    List<CustomerDTO> findSearchEntriesAfter(@Param("after") Long customerId, Pageable pageable);
 }
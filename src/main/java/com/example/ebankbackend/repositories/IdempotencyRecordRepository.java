@@ -0,0 +1,23 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord,String> {
+    //not read-only, so the lookup goes to the primary: a lagging replica would let a retried request run twice
+    @Override
+    @Transactional
+    Optional<IdempotencyRecord> findById(String key);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+}
@@ -0,0 +1,7 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+}
@@ -0,0 +1,7 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint,Integer> {
+}
@@ -0,0 +1,28 @@
+package com.example.ebankbackend.repositories;
+
+import com.example.ebankbackend.entities.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent,Long> {
+    @Query("select e from OutboxEvent e where e.feedOffset is null order by e.id")
+    List<OutboxEvent> findUnpublished(Pageable pageable);
+
+    @Query("select max(e.feedOffset) from OutboxEvent e")
+    Long findLastFeedOffset();
+
+    List<OutboxEvent> findByFeedOffsetGreaterThanOrderByFeedOffset(long after, Pageable pageable);
+
+    List<OutboxEvent> findByAccountIdAndFeedOffsetGreaterThanOrderByFeedOffset(String accountId, long after, Pageable pageable);
+
+    //the event at lastOffset stays: the next offsets are counted from it
+    @Modifying
+    @Query("delete from OutboxEvent e where e.publishedAt < :before and e.feedOffset < :lastOffset")
+    int deletePublishedBefore(@Param("before") Date before, @Param("lastOffset") long lastOffset);
+}
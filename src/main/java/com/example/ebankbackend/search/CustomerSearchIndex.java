@@ -0,0 +1,302 @@
+package com.example.ebankbackend.search;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.repositories.CustomerRepository;
+import com.example.ebankbackend.support.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over customer names and emails, so that substring search does not
+ * scan the customer table the way {@code name like '%kw%'} does.
+ * <p>
+ * Every customer gets a document number; each trigram of its lower-cased name and email maps to
+ * the sorted list of documents containing it. A search intersects the lists of the keyword's
+ * trigrams, checks the survivors really contain the keyword and ranks them: name prefix, then
+ * word prefix in the name, then email prefix, then any other match.
+ * <p>
+ * Loaded from the database on startup and kept current after each committed save or delete
+ * through the service. Roughly 150 bytes per customer.
+ */
+@Component
+@Slf4j
+public class CustomerSearchIndex {
+
+    public static final int GRAM = 3;
+    private static final int LOAD_PAGE = 10_000;
+    private static final Comparator<Match> RANKING = Comparator.comparingInt((Match match) -> match.tier)
+            .thenComparingInt(match -> match.nameLength)
+            .thenComparingLong(match -> match.customerId);
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final Map<Long, Integer> documents = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private long[] customerIds = new long[1024];
+    private String[] names = new String[1024];
+    private String[] emails = new String[1024];
+    private int documentCount;
+    private int removedCount;
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        ensureLoaded();
+    }
+
+    /**
+     * Drops the index and reloads it from the database, for customers written behind the service's back.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexAfterCommit(Customer customer) {
+        Long customerId = customer.getId();
+        String name = customer.getName();
+        String email = customer.getEmail();
+        TransactionCallbacks.afterCommit(() -> put(customerId, name, email));
+    }
+
+    public void removeAfterCommit(Long customerId) {
+        TransactionCallbacks.afterCommit(() -> remove(customerId));
+    }
+
+    /**
+     * @return ids of at most {@code limit} customers whose name or email contains the keyword, best match first;
+     * empty for keywords shorter than {@link #GRAM}
+     */
+    public List<Long> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        if (query == null || query.length() < GRAM || limit <= 0) return List.of();
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            List<IntList> lists = new ArrayList<>();
+            for (long gram : grams(query)) {
+                IntList list = postings.get(gram);
+                if (list == null) return List.of();
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            int[] candidates = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = retain(candidates, count, lists.get(i));
+            }
+
+            String wordPrefix = " " + query;
+            PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            for (int i = 0; i < count; i++) {
+                int document = candidates[i];
+                if (removed.get(document)) continue;
+                int tier = tier(names[document], emails[document], query, wordPrefix);
+                if (tier < 0) continue;
+                best.offer(new Match(customerIds[document], tier, names[document] == null ? 0 : names[document].length()));
+                if (best.size() > limit) best.poll();
+            }
+            List<Match> matches = new ArrayList<>(best);
+            matches.sort(RANKING);
+            List<Long> customerIdsFound = new ArrayList<>(matches.size());
+            for (Match match : matches) customerIdsFound.add(match.customerId);
+            return customerIdsFound;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (!loaded) load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //caller holds the write lock, so saves committed meanwhile wait and are applied on top
+    private void load() {
+        long start = System.nanoTime();
+        clear();
+        long after = Long.MIN_VALUE;
+        List<CustomerDTO> page;
+        do {
+            page = customerRepository.findSearchEntriesAfter(after, PageRequest.of(0, LOAD_PAGE));
+            for (CustomerDTO customer : page) {
+                add(customer.getId(), customer.getName(), customer.getEmail());
+                after = customer.getId();
+            }
+        } while (page.size() == LOAD_PAGE);
+        loaded = true;
+        log.info("customer search index loaded {} customers in {} ms", documents.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void put(Long customerId, String name, String email) {
+        lock.writeLock().lock();
+        try {
+            //not loaded yet: the load will read the committed row
+            if (!loaded) return;
+            delete(customerId);
+            add(customerId, name, email);
+            if (removedCount > 1024 && removedCount > documentCount / 2) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long customerId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            delete(customerId);
+            if (removedCount > 1024 && removedCount > documentCount / 2) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(long customerId, String name, String email) {
+        if (documentCount == customerIds.length) {
+            int capacity = documentCount * 2;
+            customerIds = Arrays.copyOf(customerIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+        }
+        int document = documentCount++;
+        customerIds[document] = customerId;
+        names[document] = normalize(name);
+        emails[document] = normalize(email);
+        documents.put(customerId, document);
+        Set<Long> documentGrams = grams(names[document]);
+        documentGrams.addAll(grams(emails[document]));
+        //documents are numbered in insertion order, so every posting list stays sorted
+        for (long gram : documentGrams) {
+            postings.computeIfAbsent(gram, key -> new IntList()).add(document);
+        }
+    }
+
+    private void delete(Long customerId) {
+        Integer document = documents.remove(customerId);
+        if (document == null) return;
+        removed.set(document);
+        names[document] = null;
+        emails[document] = null;
+        removedCount++;
+    }
+
+    private void compact() {
+        long[] liveIds = new long[documentCount - removedCount];
+        String[] liveNames = new String[liveIds.length];
+        String[] liveEmails = new String[liveIds.length];
+        int live = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (removed.get(document)) continue;
+            liveIds[live] = customerIds[document];
+            liveNames[live] = names[document];
+            liveEmails[live] = emails[document];
+            live++;
+        }
+        clear();
+        for (int i = 0; i < live; i++) add(liveIds[i], liveNames[i], liveEmails[i]);
+        loaded = true;
+    }
+
+    private void clear() {
+        loaded = false;
+        postings.clear();
+        documents.clear();
+        removed.clear();
+        customerIds = new long[1024];
+        names = new String[1024];
+        emails = new String[1024];
+        documentCount = 0;
+        removedCount = 0;
+    }
+
+    //keeps the candidates also present in the list, both are sorted
+    private static int retain(int[] candidates, int count, IntList list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count && from < list.size; i++) {
+            int position = Arrays.binarySearch(list.values, from, list.size, candidates[i]);
+            if (position >= 0) {
+                candidates[kept++] = candidates[i];
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+        return kept;
+    }
+
+    private static int tier(String name, String email, String query, String wordPrefix) {
+        if (name != null && name.startsWith(query)) return 0;
+        if (name != null && name.contains(wordPrefix)) return 1;
+        if (email != null && email.startsWith(query)) return 2;
+        if ((name != null && name.contains(query)) || (email != null && email.contains(query))) return 3;
+        return -1;
+    }
+
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+        if (text == null) return grams;
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+
+    private static final class Match {
+        private final long customerId;
+        private final int tier;
+        private final int nameLength;
+
+        Match(long customerId, int tier, int nameLength) {
+            this.customerId = customerId;
+            this.tier = tier;
+            this.nameLength = nameLength;
+        }
+    }
+}
@@ -4,23 +4,38 @@ import com.example.ebankbackend.dtos.*;
 import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
 import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
 import com.example.ebankbackend.exceptions.CustomerNotFoundException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.exceptions.InvalidPageException;
 
+import java.math.BigDecimal;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BankAccountService {
 
 
     CustomerDTO saveCustomer(CustomerDTO customerDTO);
-    CurrentBankAccountDTO saveCurrentBankAccount(double initialBalance, double overDraft, Long customerId) throws CustomerNotFoundException;
-    SavingBankAccountDTO saveSavingBankAccount(double initialBalance, double interestRate, Long customerId) throws CustomerNotFoundException;
+    CurrentBankAccountDTO saveCurrentBankAccount(BigDecimal initialBalance, BigDecimal overDraft, Long customerId) throws CustomerNotFoundException;
+    SavingBankAccountDTO saveSavingBankAccount(BigDecimal initialBalance, double interestRate, Long customerId) throws CustomerNotFoundException;
     List<CustomerDTO> listCustomers();
     BankAccountDTO getBankAccount(String accountId) throws BankAccountNotFoundException;
-    void debit(String accountId, double amount, String description) throws BalanceNotSufficientException, BankAccountNotFoundException;
-    void credit(String accountId, double amount, String description) throws BankAccountNotFoundException;
-    void transfer(String accountIdSource, String accountIdDestination, double amount) throws BankAccountNotFoundException, BalanceNotSufficientException;
+    void debit(String accountId, BigDecimal amount, String description) throws BalanceNotSufficientException, BankAccountNotFoundException;
+    void credit(String accountId, BigDecimal amount, String description) throws BankAccountNotFoundException;
+    void transfer(String accountIdSource, String accountIdDestination, BigDecimal amount) throws BankAccountNotFoundException, BalanceNotSufficientException;
+
+    List<BatchOperationResultDTO> applyOperations(List<BatchOperationDTO> operations);
 
     List<BankAccountDTO> getBankAccountList();
 
+    BankAccountPageDTO getBankAccountPage(BankAccountFilterDTO filter, int page, int size) throws InvalidPageException;
+
+    BankAccountPageDTO getBankAccountPage(BankAccountFilterDTO filter, String cursor, int size) throws InvalidCursorException;
+
+    CustomerPageDTO getCustomerPage(int page, int size) throws InvalidPageException;
+
+    CustomerPageDTO getCustomerPage(String cursor, int size) throws InvalidCursorException;
+
     CustomerDTO getCustomer(Long customerId) throws CustomerNotFoundException;
 
     CustomerDTO updateCustomer(CustomerDTO customerDTO);
@@ -29,8 +44,16 @@ public interface BankAccountService {
 
     List<AccountOperationDTO> accountHistory(String accountId);
 
+    void streamAccountHistory(String accountId, Consumer<AccountOperationDTO> consumer) throws BankAccountNotFoundException;
+
     AccountHistoryDTO getAccountHistory(String accountId, int page, int size) throws BankAccountNotFoundException;
 
+    AccountHistoryCursorDTO getAccountHistory(String accountId, String cursor, int size, boolean withTotal) throws BankAccountNotFoundException, InvalidCursorException;
+
+    AccountBalanceDTO getBalanceAt(String accountId, Date at) throws BankAccountNotFoundException;
+
+    AccountStatementDTO getStatement(String accountId, Date from, Date to) throws BankAccountNotFoundException;
+
     List<CustomerDTO> searchCustomers(String keyword);
 
 }
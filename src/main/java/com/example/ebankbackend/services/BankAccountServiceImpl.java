@@ -1,32 +1,75 @@
 package com.example.ebankbackend.services;
 
+import com.example.ebankbackend.cache.AccountSnapshotCache;
+import com.example.ebankbackend.datasource.PrimaryReads;
 import com.example.ebankbackend.dtos.*;
 import com.example.ebankbackend.entities.*;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.enums.BatchOperationStatus;
 import com.example.ebankbackend.enums.OperationType;
 import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
 import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
 import com.example.ebankbackend.exceptions.CustomerNotFoundException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.exceptions.InvalidPageException;
+import com.example.ebankbackend.generators.AccountIdGenerator;
+import com.example.ebankbackend.ledger.LedgerEngine;
+import com.example.ebankbackend.ledger.LedgerEntry;
 import com.example.ebankbackend.mappers.BankAccountMapperImpl;
+import com.example.ebankbackend.outbox.OperationOutbox;
+import com.example.ebankbackend.repositories.AccountBalanceSnapshotRepository;
+import com.example.ebankbackend.repositories.AccountBalanceView;
 import com.example.ebankbackend.repositories.AccountOperationRepository;
 import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.BankAccountSpecifications;
+import com.example.ebankbackend.repositories.BankAccountView;
 import com.example.ebankbackend.repositories.CustomerRepository;
+import com.example.ebankbackend.search.CustomerSearchIndex;
+import com.example.ebankbackend.support.Money;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 @Slf4j
 public class BankAccountServiceImpl implements BankAccountService{
 
+    //pages, keyset or offset, are clamped to [1, MAX_PAGE_SIZE] rows
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private CustomerRepository customerRepository;
 
@@ -39,6 +82,40 @@ public class BankAccountServiceImpl implements BankAccountService{
     @Autowired
     private BankAccountMapperImpl dtoMapper;
 
+    @Autowired
+    private AccountIdGenerator accountIdGenerator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private AccountSnapshotCache accountSnapshotCache;
+
+    @Autowired
+    private AccountBalanceSnapshotRepository accountBalanceSnapshotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OperationOutbox operationOutbox;
+
+    //ebank.balance.update-mode=ledger only
+    @Autowired(required = false)
+    private LedgerEngine ledgerEngine;
+
+    @Value("${ebank.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Value("${ebank.search.max-results:20}")
+    private int searchMaxResults;
+
+    @Value("${ebank.balance.update-mode:conditional}")
+    private BalanceUpdateMode balanceUpdateMode;
+
     //we can do this or lombok annotation @Slf4j
     //Logger log = LoggerFactory.getLogger(this.getClass().getName());
 
@@ -47,11 +124,12 @@ public class BankAccountServiceImpl implements BankAccountService{
         log.info("saving new customer {}",customerDTO);
         Customer customer = dtoMapper.fromCustomerDto(customerDTO);
         Customer savedCustomer = customerRepository.save(customer);
+        customerSearchIndex.indexAfterCommit(savedCustomer);
         return dtoMapper.fromCustomer(savedCustomer);
     }
 
     @Override
-    public CurrentBankAccountDTO saveCurrentBankAccount(double initialBalance, double overDraft, Long customerId) throws CustomerNotFoundException {
+    public CurrentBankAccountDTO saveCurrentBankAccount(BigDecimal initialBalance, BigDecimal overDraft, Long customerId) throws CustomerNotFoundException {
         log.info("saving current account");
         Customer customer = customerRepository.findById(customerId).orElse(null);
         if(customer==null)
@@ -59,10 +137,10 @@ public class BankAccountServiceImpl implements BankAccountService{
 
         CurrentAccount currentAccount  =  new CurrentAccount();
 
-        currentAccount.setId(UUID.randomUUID().toString());
+        currentAccount.setId(accountIdGenerator.nextId());
         currentAccount.setCreationDat(new Date());
-        currentAccount.setBalance(initialBalance);
-        currentAccount.setOverDraft(overDraft);
+        currentAccount.setBalance(Money.toMinorUnits(initialBalance));
+        currentAccount.setOverDraft(Money.toMinorUnits(overDraft));
         currentAccount.setCustomer(customer);
         CurrentAccount savedBankAccount = bankAccountRepository.save(currentAccount);
 
@@ -70,7 +148,7 @@ public class BankAccountServiceImpl implements BankAccountService{
     }
 
     @Override
-    public SavingBankAccountDTO saveSavingBankAccount(double initialBalance, double interestRate, Long customerId) throws CustomerNotFoundException {
+    public SavingBankAccountDTO saveSavingBankAccount(BigDecimal initialBalance, double interestRate, Long customerId) throws CustomerNotFoundException {
         log.info("saving saving account");
         Customer customer = customerRepository.findById(customerId).orElse(null);
         if(customer==null)
@@ -78,9 +156,9 @@ public class BankAccountServiceImpl implements BankAccountService{
 
         SavingAccount savingAccount  =  new SavingAccount();
 
-        savingAccount.setId(UUID.randomUUID().toString());
+        savingAccount.setId(accountIdGenerator.nextId());
         savingAccount.setCreationDat(new Date());
-        savingAccount.setBalance(initialBalance);
+        savingAccount.setBalance(Money.toMinorUnits(initialBalance));
         savingAccount.setInterestRate(interestRate);
         savingAccount.setCustomer(customer);
         SavingAccount savedBankAccount = bankAccountRepository.save(savingAccount);
@@ -89,6 +167,7 @@ public class BankAccountServiceImpl implements BankAccountService{
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<CustomerDTO> listCustomers() {
         /*functional programming*/
         log.info("trying to get customers");
@@ -106,81 +185,408 @@ public class BankAccountServiceImpl implements BankAccountService{
       return customerDTOS;
     }
 
+    //no transaction of its own: a cache hit must not take a connection, a miss runs the repository's read-only one,
+    //on the primary: the snapshot it caches is served to every client, it must not lag behind the last commit.
+    //Within a read-only transaction, possibly on a replica, the snapshot is read but not cached
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BankAccountDTO getBankAccount(String accountId) throws BankAccountNotFoundException {
         log.info("trying to get bank account for account {}",accountId);
-        BankAccount bankAccount = bankAccountRepository.findById(accountId)
+        UUID id = toAccountId(accountId);
+        if (PrimaryReads.inReadOnlyTransaction()) return loadBankAccount(id);
+        return accountSnapshotCache.get(id, loaded -> PrimaryReads.read(() -> loadBankAccount(loaded)));
+    }
+
+    private BankAccountDTO loadBankAccount(UUID accountId) throws BankAccountNotFoundException {
+        BankAccountView bankAccountView = bankAccountRepository.findViewById(accountId)
                 .orElseThrow(()-> new BankAccountNotFoundException("BankAccount not found"));
-        if(bankAccount instanceof SavingAccount){
-            SavingAccount savingAccount = (SavingAccount)bankAccount;
-            return dtoMapper.fromSavingBankAccount(savingAccount);
-        } else {
-            CurrentAccount currentAccount = (CurrentAccount)bankAccount;
-            return dtoMapper.fromCurrentBankAccount(currentAccount);
-        }
+        return dtoMapper.fromBankAccountView(bankAccountView);
     }
 
+    //no transaction around the ledger: a caller waiting for its shard must not hold a connection the shard needs
     @Override
-    public void debit(String accountId, double amount, String description) throws BankAccountNotFoundException, BalanceNotSufficientException {
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Retryable(value = ObjectOptimisticLockingFailureException.class,
+            maxAttemptsExpression = "${ebank.balance.max-attempts:5}",
+            backoff = @Backoff(delay = 5, maxDelay = 50, random = true))
+    public void debit(String accountId, BigDecimal amount, String description) throws BankAccountNotFoundException, BalanceNotSufficientException {
         log.info("trying to debit account {}",accountId);
-        BankAccount bankAccount = bankAccountRepository.findById(accountId)
-                .orElseThrow(()-> new BankAccountNotFoundException("BankAccount not found"));
-        if(bankAccount.getBalance()<amount)
-            throw new BalanceNotSufficientException("Balance not sufficient");
-
-        AccountOperation accountOperation = new AccountOperation();
-        accountOperation.setType(OperationType.DEBIT);
-        accountOperation.setDescription(description);
-        accountOperation.setOperationDate(new Date());
-        accountOperation.setAmount(amount);
-        accountOperation.setBankAccount(bankAccount);
-        accountOperationRepository.save(accountOperation);
-        bankAccount.setBalance(bankAccount.getBalance()-amount);
-        bankAccountRepository.save(bankAccount);
+        UUID id = toAccountId(accountId);
+        long minorUnits = Money.toMinorUnits(amount);
+        if(balanceUpdateMode == BalanceUpdateMode.LEDGER){
+            ledgerEngine.debit(id, minorUnits, description);
+            return;
+        }
+        inTransaction(() -> {
+            accountSnapshotCache.evictAfterCommit(id);
+            if(balanceUpdateMode == BalanceUpdateMode.CONDITIONAL){
+                if(bankAccountRepository.debitIfSufficient(id, minorUnits) == 0){
+                    if(!bankAccountRepository.existsById(id))
+                        throw new BankAccountNotFoundException("BankAccount not found");
+                    throw new BalanceNotSufficientException("Balance not sufficient");
+                }
+                saveOperation(bankAccountRepository.getReferenceById(id), OperationType.DEBIT, minorUnits, currentBalance(id), description);
+                return;
+            }
+            BankAccount bankAccount = bankAccountRepository.findById(id)
+                    .orElseThrow(()-> new BankAccountNotFoundException("BankAccount not found"));
+            if(!bankAccount.canDebit(minorUnits))
+                throw new BalanceNotSufficientException("Balance not sufficient");
+
+            bankAccount.setBalance(Math.subtractExact(bankAccount.getBalance(), minorUnits));
+            saveOperation(bankAccount, OperationType.DEBIT, minorUnits, bankAccount.getBalance(), description);
+            bankAccountRepository.save(bankAccount);
+        });
     }
 
     @Override
-    public void credit(String accountId, double amount, String description) throws BankAccountNotFoundException {
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Retryable(value = ObjectOptimisticLockingFailureException.class,
+            maxAttemptsExpression = "${ebank.balance.max-attempts:5}",
+            backoff = @Backoff(delay = 5, maxDelay = 50, random = true))
+    public void credit(String accountId, BigDecimal amount, String description) throws BankAccountNotFoundException {
         log.info("trying to credit account {}",accountId);
-        BankAccount bankAccount = bankAccountRepository.findById(accountId)
-                .orElseThrow(()-> new BankAccountNotFoundException("BankAccount not found"));
+        UUID id = toAccountId(accountId);
+        long minorUnits = Money.toMinorUnits(amount);
+        if(balanceUpdateMode == BalanceUpdateMode.LEDGER){
+            ledgerEngine.credit(id, minorUnits, description);
+            return;
+        }
+        try {
+            inTransaction(() -> {
+                accountSnapshotCache.evictAfterCommit(id);
+                if(balanceUpdateMode == BalanceUpdateMode.CONDITIONAL){
+                    if(bankAccountRepository.credit(id, minorUnits) == 0)
+                        throw new BankAccountNotFoundException("BankAccount not found");
+                    saveOperation(bankAccountRepository.getReferenceById(id), OperationType.CREDIT, minorUnits, currentBalance(id), description);
+                    return;
+                }
+                BankAccount bankAccount = bankAccountRepository.findById(id)
+                        .orElseThrow(()-> new BankAccountNotFoundException("BankAccount not found"));
+
+                bankAccount.setBalance(Math.addExact(bankAccount.getBalance(), minorUnits));
+                saveOperation(bankAccount, OperationType.CREDIT, minorUnits, bankAccount.getBalance(), description);
+                bankAccountRepository.save(bankAccount);
+            });
+        } catch (BalanceNotSufficientException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //the checked exceptions of a balance update cross the TransactionTemplate wrapped, and roll it back
+    private void inTransaction(BalanceUpdate update) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    update.apply();
+                } catch (BankAccountNotFoundException | BalanceNotSufficientException e) {
+                    throw new BalanceUpdateFailedException(e);
+                }
+            });
+        } catch (BalanceUpdateFailedException e) {
+            if (e.getCause() instanceof BankAccountNotFoundException) throw (BankAccountNotFoundException) e.getCause();
+            throw (BalanceNotSufficientException) e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface BalanceUpdate {
+        void apply() throws BankAccountNotFoundException, BalanceNotSufficientException;
+    }
+
+    private static class BalanceUpdateFailedException extends RuntimeException {
+        BalanceUpdateFailedException(Exception cause) {
+            super(cause);
+        }
+    }
 
+    private static UUID toAccountId(String accountId) throws BankAccountNotFoundException {
+        try {
+            return UUID.fromString(accountId);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BankAccountNotFoundException("BankAccount not found");
+        }
+    }
+
+    //the order of the BINARY(16) column: unsigned, byte by byte
+    private static int compareAccountIds(UUID first, UUID second){
+        int result = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+    }
+
+    //with its outbox event, in the same transaction
+    private void saveOperation(BankAccount bankAccount, OperationType type, long amount, long balanceAfter, String description){
+        AccountOperation accountOperation = newOperation(bankAccount, type, amount, balanceAfter, description);
+        accountOperationRepository.save(accountOperation);
+        operationOutbox.record(List.of(accountOperation));
+    }
+
+    private void saveOperations(List<AccountOperation> accountOperations){
+        accountOperationRepository.saveAll(accountOperations);
+        operationOutbox.record(accountOperations);
+    }
+
+    private AccountOperation newOperation(BankAccount bankAccount, OperationType type, long amount, long balanceAfter, String description){
         AccountOperation accountOperation = new AccountOperation();
-        accountOperation.setType(OperationType.CREDIT);
+        accountOperation.setType(type);
         accountOperation.setDescription(description);
         accountOperation.setOperationDate(new Date());
         accountOperation.setAmount(amount);
+        accountOperation.setBalanceAfter(balanceAfter);
         accountOperation.setBankAccount(bankAccount);
-        accountOperationRepository.save(accountOperation);
-        bankAccount.setBalance(bankAccount.getBalance()+amount);
-        bankAccountRepository.save(bankAccount);
+        return accountOperation;
+    }
+
+    //conditional updates do not return the new balance, read it back under the row lock they took
+    private long currentBalance(UUID accountId){
+        return currentBalances(List.of(accountId)).get(accountId);
+    }
+
+    private Map<UUID, Long> currentBalances(Collection<UUID> accountIds){
+        return bankAccountRepository.findBalances(accountIds).stream()
+                .collect(Collectors.toMap(AccountBalanceView::getAccountId, AccountBalanceView::getBalance));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void transfer(String accountIdSource, String accountIdDestination, BigDecimal amount) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        log.info("trying to transfer from account {} to account {}",accountIdSource,accountIdDestination);
+        UUID sourceId = toAccountId(accountIdSource);
+        UUID destinationId = toAccountId(accountIdDestination);
+        long minorUnits = Money.toMinorUnits(amount);
+        if(balanceUpdateMode == BalanceUpdateMode.LEDGER){
+            ledgerEngine.transfer(sourceId, destinationId, minorUnits);
+            return;
+        }
+        inTransaction(() -> {
+            accountSnapshotCache.evictAfterCommit(List.of(sourceId, destinationId));
+            //one locking read of both accounts, in id order so that two opposite transfers between the same accounts
+            //wait on each other instead of deadlocking; the balances it returns give both balanceAfter without
+            //reading the rows again, and the two versioned updates go out as one JDBC batch at commit
+            Map<UUID, BankAccount> bankAccounts = new HashMap<>();
+            for (BankAccount bankAccount : bankAccountRepository.lockAllById(List.of(sourceId, destinationId)))
+                bankAccounts.put(bankAccount.getId(), bankAccount);
+            BankAccount source = bankAccounts.get(sourceId);
+            BankAccount destination = bankAccounts.get(destinationId);
+            applyToBalance(source, OperationType.DEBIT, minorUnits);
+            AccountOperation debit = newOperation(source, OperationType.DEBIT, minorUnits, source.getBalance(), "Transfer to"+accountIdDestination);
+            applyToBalance(destination, OperationType.CREDIT, minorUnits);
+            AccountOperation credit = newOperation(destination, OperationType.CREDIT, minorUnits, destination.getBalance(), "Transfer from"+accountIdSource);
+            saveOperations(List.of(debit, credit));
+        });
     }
 
+    //one transaction per chunk of accounts, so a big batch neither holds every row lock until the end nor
+    //loses what was already committed when a later chunk fails
     @Override
-    public void transfer(String accountIdSource, String accountIdDestination, double amount) throws BankAccountNotFoundException, BalanceNotSufficientException {
-        log.info("trying to transfer from account {}",accountIdSource+"to account {}",accountIdDestination);
-        debit(accountIdSource,amount,"Transfer to"+accountIdDestination);
-        credit(accountIdDestination,amount,"Transfer from"+accountIdSource);
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BatchOperationResultDTO> applyOperations(List<BatchOperationDTO> operations) {
+        log.info("trying to apply a batch of {} operations",operations.size());
+        BatchOperationResultDTO[] results = new BatchOperationResultDTO[operations.size()];
+        long[] amounts = new long[operations.size()];
+        //item positions grouped by account, request order within an account, accounts in lock order
+        Map<UUID, List<Integer>> itemsByAccount = new TreeMap<>(BankAccountServiceImpl::compareAccountIds);
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperationDTO operation = operations.get(i);
+            try {
+                if (operation.getType() == null)
+                    throw new IllegalArgumentException("Operation type is required");
+                amounts[i] = Money.toMinorUnits(operation.getAmount());
+                itemsByAccount.computeIfAbsent(toAccountId(operation.getAccountId()), id -> new ArrayList<>()).add(i);
+            } catch (BankAccountNotFoundException | IllegalArgumentException e) {
+                results[i] = batchResult(i, operation, e);
+            }
+        }
+
+        if (balanceUpdateMode == BalanceUpdateMode.LEDGER) {
+            applyThroughLedger(itemsByAccount, operations, amounts, results);
+            return Arrays.asList(results);
+        }
+
+        Map<UUID, List<Integer>> chunk = new LinkedHashMap<>();
+        int chunkItems = 0;
+        for (Map.Entry<UUID, List<Integer>> entry : itemsByAccount.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            chunkItems += entry.getValue().size();
+            if (chunkItems >= batchChunkSize) {
+                applyChunk(chunk, operations, amounts, results);
+                chunk = new LinkedHashMap<>();
+                chunkItems = 0;
+            }
+        }
+        if (!chunk.isEmpty()) applyChunk(chunk, operations, amounts, results);
+        return Arrays.asList(results);
+    }
+
+    private void applyChunk(Map<UUID, List<Integer>> chunk, List<BatchOperationDTO> operations, long[] amounts, BatchOperationResultDTO[] results) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                accountSnapshotCache.evictAfterCommit(chunk.keySet());
+                Map<UUID, BankAccount> bankAccounts = new HashMap<>();
+                for (BankAccount bankAccount : bankAccountRepository.lockAllById(chunk.keySet()))
+                    bankAccounts.put(bankAccount.getId(), bankAccount);
+
+                List<AccountOperation> accountOperations = new ArrayList<>();
+                chunk.forEach((accountId, items) -> {
+                    BankAccount bankAccount = bankAccounts.get(accountId);
+                    for (int index : items) {
+                        BatchOperationDTO operation = operations.get(index);
+                        try {
+                            applyToBalance(bankAccount, operation.getType(), amounts[index]);
+                            accountOperations.add(newOperation(bankAccount, operation.getType(), amounts[index],
+                                    bankAccount.getBalance(), operation.getDescription()));
+                            results[index] = batchResult(index, operation, null);
+                        } catch (BankAccountNotFoundException | BalanceNotSufficientException e) {
+                            results[index] = batchResult(index, operation, e);
+                        }
+                    }
+                });
+                //inserts and versioned balance updates go out as JDBC batches when the chunk commits
+                saveOperations(accountOperations);
+            });
+        } catch (RuntimeException e) {
+            log.error("batch chunk of {} accounts rolled back",chunk.size(),e);
+            chunk.values().forEach(items -> items.forEach(index -> results[index] = batchResult(index, operations.get(index), e)));
+        }
+    }
+
+    //every item is queued before waiting for the first one, so the shards journal them in few groups
+    private void applyThroughLedger(Map<UUID, List<Integer>> itemsByAccount, List<BatchOperationDTO> operations, long[] amounts, BatchOperationResultDTO[] results) {
+        Map<Integer, CompletableFuture<LedgerEntry>> submitted = new LinkedHashMap<>();
+        itemsByAccount.forEach((accountId, items) -> items.forEach(index -> submitted.put(index, ledgerEngine.submit(
+                operations.get(index).getType() == OperationType.CREDIT ? LedgerEntry.Kind.CREDIT : LedgerEntry.Kind.DEBIT,
+                accountId, amounts[index], operations.get(index).getDescription()))));
+        submitted.forEach((index, result) -> {
+            try {
+                LedgerEngine.await(result);
+                results[index] = batchResult(index, operations.get(index), null);
+            } catch (BankAccountNotFoundException | BalanceNotSufficientException | RuntimeException e) {
+                results[index] = batchResult(index, operations.get(index), e);
+            }
+        });
+    }
+
+    private static void applyToBalance(BankAccount bankAccount, OperationType type, long amount) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        if (bankAccount == null)
+            throw new BankAccountNotFoundException("BankAccount not found");
+        if (type == OperationType.CREDIT) {
+            bankAccount.setBalance(Math.addExact(bankAccount.getBalance(), amount));
+            return;
+        }
+        if (!bankAccount.canDebit(amount))
+            throw new BalanceNotSufficientException("Balance not sufficient");
+        bankAccount.setBalance(Math.subtractExact(bankAccount.getBalance(), amount));
+    }
+
+    private static BatchOperationResultDTO batchResult(int index, BatchOperationDTO operation, Exception error) {
+        BatchOperationResultDTO result = new BatchOperationResultDTO();
+        result.setIndex(index);
+        result.setAccountId(operation.getAccountId());
+        if (error == null) {
+            result.setStatus(BatchOperationStatus.APPLIED);
+        } else {
+            result.setStatus(BatchOperationStatus.REJECTED);
+            result.setError(error.getClass().getSimpleName());
+            result.setMessage(error.getMessage());
+        }
+        return result;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<BankAccountDTO> getBankAccountList() {
         log.info("trying to get bank accounts list");
         List<BankAccount> bankAccounts = bankAccountRepository.findAll();
-        List<BankAccountDTO> bankAccountDTOS= bankAccounts.stream().map(bankAccount -> {
-            if(bankAccount instanceof SavingAccount ){
-                SavingAccount savingAccount = (SavingAccount)bankAccount;
-                return dtoMapper.fromSavingBankAccount(savingAccount);
-            }else{
-                CurrentAccount currentAccount = (CurrentAccount)bankAccount;
-                return dtoMapper.fromCurrentBankAccount(currentAccount);
-            }
-        }).collect(Collectors.toList());
+        List<BankAccountDTO> bankAccountDTOS= dtoMapper.fromBankAccounts(bankAccounts);
 
         return bankAccountDTOS;
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BankAccountPageDTO getBankAccountPage(BankAccountFilterDTO filter, int page, int size) throws InvalidPageException {
+        log.info("trying to get page {} of bank accounts",page);
+        if (page < 0) throw new InvalidPageException("Invalid page " + page);
+        size = pageSize(size);
+        Page<BankAccount> bankAccounts = bankAccountRepository.findAll(BankAccountSpecifications.matching(filter),
+                PageRequest.of(page, size, Sort.by("id")));
+        BankAccountPageDTO bankAccountPageDTO = new BankAccountPageDTO();
+        bankAccountPageDTO.setBankAccountDTOS(dtoMapper.fromBankAccounts(bankAccounts.getContent()));
+        bankAccountPageDTO.setPageSize(size);
+        bankAccountPageDTO.setCurrentPage(page);
+        bankAccountPageDTO.setTotalPages(bankAccounts.getTotalPages());
+        bankAccountPageDTO.setTotalElements(bankAccounts.getTotalElements());
+        return bankAccountPageDTO;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BankAccountPageDTO getBankAccountPage(BankAccountFilterDTO filter, String cursor, int size) throws InvalidCursorException {
+        log.info("trying to get a keyset page of bank accounts after {}",cursor);
+        size = pageSize(size);
+        Specification<BankAccount> specification = BankAccountSpecifications.matching(filter);
+        if (cursor != null && !cursor.isEmpty()) {
+            UUID after;
+            try {
+                after = UUID.fromString(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            specification = specification.and(BankAccountSpecifications.idAfter(after));
+        }
+        //ids are time ordered, so this is also creation order; one extra row tells whether there is a next page
+        List<BankAccount> bankAccounts = bankAccountRepository.findWithCustomer(specification, Sort.by("id"), size + 1);
+        boolean hasNext = bankAccounts.size() > size;
+        if (hasNext) bankAccounts = bankAccounts.subList(0, size);
+        BankAccountPageDTO bankAccountPageDTO = new BankAccountPageDTO();
+        bankAccountPageDTO.setBankAccountDTOS(dtoMapper.fromBankAccounts(bankAccounts));
+        bankAccountPageDTO.setPageSize(size);
+        if (hasNext) bankAccountPageDTO.setNextCursor(bankAccounts.get(size - 1).getId().toString());
+        return bankAccountPageDTO;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerPageDTO getCustomerPage(int page, int size) throws InvalidPageException {
+        log.info("trying to get page {} of customers",page);
+        if (page < 0) throw new InvalidPageException("Invalid page " + page);
+        size = pageSize(size);
+        Page<Customer> customers = customerRepository.findAll(PageRequest.of(page, size, Sort.by("id")));
+        CustomerPageDTO customerPageDTO = new CustomerPageDTO();
+        customerPageDTO.setCustomerDTOS(customers.getContent().stream().map(customer -> dtoMapper.fromCustomer(customer)).collect(Collectors.toList()));
+        customerPageDTO.setPageSize(size);
+        customerPageDTO.setCurrentPage(page);
+        customerPageDTO.setTotalPages(customers.getTotalPages());
+        customerPageDTO.setTotalElements(customers.getTotalElements());
+        return customerPageDTO;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerPageDTO getCustomerPage(String cursor, int size) throws InvalidCursorException {
+        log.info("trying to get a keyset page of customers after {}",cursor);
+        size = pageSize(size);
+        long after = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+        }
+        List<Customer> customers = customerRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+        boolean hasNext = customers.size() > size;
+        if (hasNext) customers = customers.subList(0, size);
+        CustomerPageDTO customerPageDTO = new CustomerPageDTO();
+        customerPageDTO.setCustomerDTOS(customers.stream().map(customer -> dtoMapper.fromCustomer(customer)).collect(Collectors.toList()));
+        customerPageDTO.setPageSize(size);
+        if (hasNext) customerPageDTO.setNextCursor(String.valueOf(customers.get(size - 1).getId()));
+        return customerPageDTO;
+    }
+
     /* to add methods to interface you should alt + enter + pull..*/
     @Override
+    @Transactional(readOnly = true)
     public CustomerDTO getCustomer(Long customerId) throws CustomerNotFoundException{
         log.info("trying to get customer {}",customerId);
         Customer customer = customerRepository.findById(customerId)
@@ -193,6 +599,8 @@ public class BankAccountServiceImpl implements BankAccountService{
         log.info("trying to update customer {}",customerDTO);
         Customer customer = dtoMapper.fromCustomerDto(customerDTO);
         Customer updatedCustomer = customerRepository.save(customer);
+        customerSearchIndex.indexAfterCommit(updatedCustomer);
+        accountSnapshotCache.clearAfterCommit();
         return dtoMapper.fromCustomer(updatedCustomer);
     }
 
@@ -200,26 +608,52 @@ public class BankAccountServiceImpl implements BankAccountService{
     public void deleteCustomer(Long customerId){
         log.info("trying to delete customer {}",customerId);
         customerRepository.deleteById(customerId);
+        customerSearchIndex.removeAfterCommit(customerId);
+        accountSnapshotCache.clearAfterCommit();
     }
     @Override
+    @Transactional(readOnly = true)
     public List<AccountOperationDTO> accountHistory(String accountId){
         log.info("trying to get operation history for account {}",accountId);
-       List<AccountOperation> accountOperations = accountOperationRepository.findByBankAccount_Id(accountId);
+        UUID id;
+        try {
+            id = toAccountId(accountId);
+        } catch (BankAccountNotFoundException e) {
+            return Collections.emptyList();
+        }
+       List<AccountOperation> accountOperations = accountOperationRepository.findByBankAccount_Id(id);
        return accountOperations.stream().map(op->dtoMapper.fromAccountOperation(op)).collect((Collectors.toList()));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public void streamAccountHistory(String accountId, Consumer<AccountOperationDTO> consumer) throws BankAccountNotFoundException {
+        log.info("streaming operation history for account {}",accountId);
+        UUID id = toAccountId(accountId);
+        if (!bankAccountRepository.existsById(id)) throw new BankAccountNotFoundException("Account not Found");
+        try (Stream<AccountOperation> accountOperations = accountOperationRepository.streamByBankAccountId(id)) {
+            accountOperations.forEach(op -> {
+                consumer.accept(dtoMapper.fromAccountOperation(op));
+                //keep the persistence context empty so memory does not grow with the history
+                entityManager.detach(op);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public AccountHistoryDTO getAccountHistory(String accountId, int page, int size) throws BankAccountNotFoundException {
         log.info("trying to get a page of account history for account {}",accountId);
-        BankAccount bankAccount = bankAccountRepository.findById(accountId)
+        UUID id = toAccountId(accountId);
+        BankAccountView bankAccount = bankAccountRepository.findViewById(id)
                 .orElse(null);
         if(bankAccount==null) throw new BankAccountNotFoundException("Account not Found");
-        Page<AccountOperation> accountOperations =accountOperationRepository.findByBankAccount_Id(accountId, PageRequest.of(page,size));
+        Page<AccountOperation> accountOperations =accountOperationRepository.findByBankAccount_Id(id, PageRequest.of(page,size));
         AccountHistoryDTO accountHistoryDTO = new AccountHistoryDTO();
         List<AccountOperationDTO> accountOperationDTOS = accountOperations.getContent().stream().map(op -> dtoMapper.fromAccountOperation(op)).collect(Collectors.toList());
         accountHistoryDTO.setAccountOperationDTOS(accountOperationDTOS);
-        accountHistoryDTO.setAccountId(bankAccount.getId());
-        accountHistoryDTO.setBalance(bankAccount.getBalance());
+        accountHistoryDTO.setAccountId(bankAccount.getId().toString());
+        accountHistoryDTO.setBalance(Money.fromMinorUnits(bankAccount.getBalance()));
         accountHistoryDTO.setCurrentPage(page);
         accountHistoryDTO.setPageSize(size);
         accountHistoryDTO.setTotalPages(accountOperations.getTotalPages());
@@ -227,8 +661,107 @@ public class BankAccountServiceImpl implements BankAccountService{
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public AccountHistoryCursorDTO getAccountHistory(String accountId, String cursor, int size, boolean withTotal) throws BankAccountNotFoundException, InvalidCursorException {
+        log.info("trying to get a keyset page of account history for account {}",accountId);
+        UUID id = toAccountId(accountId);
+        BankAccountView bankAccount = bankAccountRepository.findViewById(id)
+                .orElseThrow(() -> new BankAccountNotFoundException("Account not Found"));
+        size = pageSize(size);
+        //fetch one extra row to know whether a next page exists without counting
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<AccountOperation> accountOperations;
+        if (cursor == null || cursor.isEmpty()) {
+            accountOperations = accountOperationRepository.findFirstHistoryPage(id, limit);
+        } else {
+            OperationCursor after = OperationCursor.decode(cursor);
+            accountOperations = accountOperationRepository.findHistoryPageAfter(id, after.getOperationDate(), after.getId(), limit);
+        }
+        boolean hasNext = accountOperations.size() > size;
+        if (hasNext) accountOperations = accountOperations.subList(0, size);
+
+        AccountHistoryCursorDTO accountHistoryCursorDTO = new AccountHistoryCursorDTO();
+        accountHistoryCursorDTO.setAccountId(bankAccount.getId().toString());
+        accountHistoryCursorDTO.setBalance(Money.fromMinorUnits(bankAccount.getBalance()));
+        accountHistoryCursorDTO.setPageSize(size);
+        accountHistoryCursorDTO.setAccountOperationDTOS(accountOperations.stream().map(op -> dtoMapper.fromAccountOperation(op)).collect(Collectors.toList()));
+        if (hasNext) accountHistoryCursorDTO.setNextCursor(OperationCursor.of(accountOperations.get(size - 1)).encode());
+        if (withTotal) accountHistoryCursorDTO.setTotalElements(accountOperationRepository.countByBankAccount_Id(id));
+        return accountHistoryCursorDTO;
+    }
+
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AccountBalanceDTO getBalanceAt(String accountId, Date at) throws BankAccountNotFoundException {
+        log.info("trying to get the balance of account {} at {}",accountId,at);
+        UUID id = toAccountId(accountId);
+        BankAccountView bankAccount = bankAccountRepository.findViewById(id)
+                .orElseThrow(() -> new BankAccountNotFoundException("Account not Found"));
+        AccountBalanceDTO accountBalanceDTO = new AccountBalanceDTO();
+        accountBalanceDTO.setAccountId(accountId);
+        accountBalanceDTO.setAt(at);
+        accountBalanceDTO.setBalance(Money.fromMinorUnits(balanceAt(bankAccount, at)));
+        return accountBalanceDTO;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AccountStatementDTO getStatement(String accountId, Date from, Date to) throws BankAccountNotFoundException {
+        log.info("trying to get the statement of account {} from {} to {}",accountId,from,to);
+        UUID id = toAccountId(accountId);
+        BankAccountView bankAccount = bankAccountRepository.findViewById(id)
+                .orElseThrow(() -> new BankAccountNotFoundException("Account not Found"));
+        long openingBalance = balanceAt(bankAccount, from);
+        List<AccountOperation> accountOperations = accountOperationRepository.findBetween(id, from, to);
+
+        AccountStatementDTO accountStatementDTO = new AccountStatementDTO();
+        accountStatementDTO.setAccountId(accountId);
+        accountStatementDTO.setFrom(from);
+        accountStatementDTO.setTo(to);
+        accountStatementDTO.setOpeningBalance(Money.fromMinorUnits(openingBalance));
+        accountStatementDTO.setClosingBalance(Money.fromMinorUnits(accountOperations.isEmpty()
+                ? openingBalance : accountOperations.get(accountOperations.size() - 1).getBalanceAfter()));
+        accountStatementDTO.setAccountOperationDTOS(accountOperations.stream().map(op -> dtoMapper.fromAccountOperation(op)).collect(Collectors.toList()));
+        return accountStatementDTO;
+    }
+
+    //balance counting every operation dated before 'at': the newest daily snapshot up to 'at', then the
+    //balanceAfter of the newest operation since that snapshot; both are single-row index lookups
+    private long balanceAt(BankAccountView bankAccount, Date at) {
+        UUID id = bankAccount.getId();
+        Pageable first = PageRequest.of(0, 1);
+        List<AccountBalanceSnapshot> snapshots = accountBalanceSnapshotRepository.findLatest(id, at, first);
+        Date tailFrom = snapshots.isEmpty() ? new Date(0) : snapshots.get(0).getAsOf();
+        List<AccountOperation> latest = accountOperationRepository.findLatestBetween(id, tailFrom, at, first);
+        if (!latest.isEmpty()) return latest.get(0).getBalanceAfter();
+        if (!snapshots.isEmpty()) return snapshots.get(0).getBalance();
+        //nothing before 'at': the opening balance, i.e. the balance before the first operation, if any
+        List<AccountOperation> next = accountOperationRepository.findEarliestFrom(id, at, first);
+        if (next.isEmpty()) return bankAccount.getBalance();
+        AccountOperation operation = next.get(0);
+        return operation.getType() == OperationType.CREDIT
+                ? operation.getBalanceAfter() - operation.getAmount()
+                : operation.getBalanceAfter() + operation.getAmount();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<CustomerDTO> searchCustomers(String keyword) {
-        List<Customer> customers = customerRepository.searchCustomer(keyword);
+        String query = keyword == null ? "" : keyword.trim();
+        List<Customer> customers;
+        if (query.length() < CustomerSearchIndex.GRAM) {
+            customers = customerRepository.findByNameStartingWithOrderByNameAsc(query, PageRequest.of(0, searchMaxResults));
+        } else {
+            List<Long> customerIds = customerSearchIndex.search(query, searchMaxResults);
+            //findAllById does not keep the ranking
+            Map<Long, Customer> customersById = customerRepository.findAllById(customerIds).stream()
+                    .collect(Collectors.toMap(Customer::getId, customer -> customer));
+            customers = customerIds.stream().map(customersById::get).filter(Objects::nonNull).collect(Collectors.toList());
+        }
         List<CustomerDTO> customerDTOS = customers.stream().map(cust -> dtoMapper.fromCustomer(cust)).collect(Collectors.toList());
 
         return customerDTOS;
@@ -0,0 +1,41 @@
+package com.example.ebankbackend.services;
+
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import lombok.Data;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of the last operation of a history page, (operationDate, id) in descending order.
+ * Serialized as 16 url-safe base64 bytes so clients treat it as opaque.
+ */
+@Data
+class OperationCursor {
+    private final Date operationDate;
+    private final Long id;
+
+    static OperationCursor of(AccountOperation accountOperation) {
+        return new OperationCursor(accountOperation.getOperationDate(), accountOperation.getId());
+    }
+
+    String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        buffer.putLong(operationDate.getTime()).putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    static OperationCursor decode(String cursor) throws InvalidCursorException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        if (bytes.length != 2 * Long.BYTES) throw new InvalidCursorException("Invalid cursor");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new OperationCursor(new Date(buffer.getLong()), buffer.getLong());
+    }
+}
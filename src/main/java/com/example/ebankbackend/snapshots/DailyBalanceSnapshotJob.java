@@ -0,0 +1,90 @@
+package com.example.ebankbackend.snapshots;
+
+import com.example.ebankbackend.entities.AccountBalanceSnapshot;
+import com.example.ebankbackend.repositories.AccountBalanceSnapshotRepository;
+import com.example.ebankbackend.repositories.AccountBalanceView;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Closes every finished day with one {@link AccountBalanceSnapshot} per account that moved that day,
+ * taken from the balanceAfter of its last operation. Accounts that did not move keep their previous
+ * snapshot, balance lookups take the newest one up to the date asked for.
+ * <p>
+ * Days missed while the application was down are caught up on the next run, and rerunning a day
+ * replaces its snapshots.
+ */
+@Component
+@Slf4j
+public class DailyBalanceSnapshotJob {
+
+    @Autowired
+    private AccountOperationRepository accountOperationRepository;
+
+    @Autowired
+    private AccountBalanceSnapshotRepository accountBalanceSnapshotRepository;
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    @Scheduled(cron = "${ebank.snapshots.cron:0 15 0 * * *}")
+    public void snapshotClosedDays() {
+        Date lastAsOf = accountBalanceSnapshotRepository.findLastAsOf();
+        Date firstOperation = lastAsOf == null ? accountOperationRepository.findFirstOperationDate() : null;
+        if (lastAsOf == null && firstOperation == null) return;
+        LocalDate day = toLocalDate(lastAsOf != null ? lastAsOf : firstOperation);
+        LocalDate today = LocalDate.now(clock);
+        for (; day.isBefore(today); day = day.plusDays(1)) {
+            snapshotDay(day);
+        }
+    }
+
+    //one transaction per day, the day's snapshots are inserted in JDBC batches
+    public void snapshotDay(LocalDate day) {
+        Date from = startOf(day);
+        Date asOf = startOf(day.plusDays(1));
+        int count = transactionTemplate.execute(status -> {
+            accountBalanceSnapshotRepository.deleteByAsOf(asOf);
+            List<AccountBalanceView> closingBalances = accountOperationRepository.findClosingBalances(from, asOf);
+            accountBalanceSnapshotRepository.saveAll(closingBalances.stream()
+                    .map(closing -> new AccountBalanceSnapshot(null, bankAccountRepository.getReferenceById(closing.getAccountId()),
+                            asOf, closing.getBalance()))
+                    .collect(Collectors.toList()));
+            return closingBalances.size();
+        });
+        log.info("closed {} with {} balance snapshots", day, count);
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    private ZoneId zone() {
+        return clock.getZone();
+    }
+
+    private Date startOf(LocalDate day) {
+        return Date.from(day.atStartOfDay(zone()).toInstant());
+    }
+
+    private LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(zone()).toLocalDate();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.ebankbackend.submissions;
+
+import com.example.ebankbackend.dtos.CreditDTO;
+import com.example.ebankbackend.dtos.DebitDTO;
+import com.example.ebankbackend.dtos.SubmittedOperationDTO;
+import com.example.ebankbackend.dtos.TransfertRequestDTO;
+import com.example.ebankbackend.enums.SubmittedOperationStatus;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.SubmissionQueueFullException;
+import com.example.ebankbackend.exceptions.SubmittedOperationNotFoundException;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Debits, credits and transfers accepted now and applied later: a submission is validated, queued behind
+ * the other operations of its account and answered with an operation id right away, so a client can
+ * pipeline thousands of them without holding a request thread for each.
+ * <p>
+ * Every account with queued operations has a lane, run by one of {@code ebank.submissions.workers} threads
+ * at a time, so the operations of an account are applied in submission order (those of a transfer in the
+ * order of its source account). A lane gives its worker back after a few operations so that busy accounts
+ * do not starve the others. Queues are bounded per account and in total: a submission beyond either bound
+ * is refused with a {@link SubmissionQueueFullException} (429), nothing waits for room.
+ * <p>
+ * Outcomes are kept for {@code ebank.submissions.status-retention} after completion, and pushed to the
+ * listeners of the account as they happen. Submissions only live in memory: those still queued when the
+ * application stops are lost, their clients see them unknown and resubmit.
+ */
+@Component
+@Slf4j
+public class OperationSubmissions implements DisposableBean {
+
+    //operations a lane applies before giving its worker to the next lane
+    private static final int OPERATIONS_PER_TURN = 32;
+
+    private final BankAccountService bankAccountService;
+    private final int accountQueueCapacity;
+    private final int maxPending;
+    private final Duration statusRetention;
+    private final ExecutorService workers;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, Submission> submissions = new ConcurrentHashMap<>();
+    private final Map<String, Set<Consumer<SubmittedOperationDTO>>> listeners = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public OperationSubmissions(BankAccountService bankAccountService,
+                                @Value("${ebank.submissions.workers:8}") int workers,
+                                @Value("${ebank.submissions.account-queue-capacity:1000}") int accountQueueCapacity,
+                                @Value("${ebank.submissions.max-pending:100000}") int maxPending,
+                                @Value("${ebank.submissions.status-retention:10m}") Duration statusRetention) {
+        this.bankAccountService = bankAccountService;
+        this.accountQueueCapacity = accountQueueCapacity;
+        this.maxPending = maxPending;
+        this.statusRetention = statusRetention;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "submission-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SubmittedOperationDTO submitDebit(DebitDTO debitDTO) throws BankAccountNotFoundException, SubmissionQueueFullException {
+        String accountId = validate(debitDTO.getAccountId(), debitDTO.getAmount());
+        return submit("debit", accountId, () -> bankAccountService.debit(accountId, debitDTO.getAmount(), debitDTO.getDescription()));
+    }
+
+    public SubmittedOperationDTO submitCredit(CreditDTO creditDTO) throws BankAccountNotFoundException, SubmissionQueueFullException {
+        String accountId = validate(creditDTO.getAccountId(), creditDTO.getAmount());
+        return submit("credit", accountId, () -> bankAccountService.credit(accountId, creditDTO.getAmount(), creditDTO.getDescription()));
+    }
+
+    public SubmittedOperationDTO submitTransfer(TransfertRequestDTO transfertRequestDTO) throws BankAccountNotFoundException, SubmissionQueueFullException {
+        String source = validate(transfertRequestDTO.getAccountSource(), transfertRequestDTO.getAmount());
+        String destination = existingAccount(transfertRequestDTO.getAccountDestination());
+        return submit("transfer", source, () -> bankAccountService.transfer(source, destination, transfertRequestDTO.getAmount()));
+    }
+
+    private String validate(String accountId, BigDecimal amount) throws BankAccountNotFoundException {
+        Money.toMinorUnits(amount);
+        return existingAccount(accountId);
+    }
+
+    //the account comes from the snapshot cache, so validating does not cost a query per submission;
+    //the id is returned in its canonical form, one lane per account whatever the case it was written in
+    public String existingAccount(String accountId) throws BankAccountNotFoundException {
+        bankAccountService.getBankAccount(accountId);
+        return UUID.fromString(accountId).toString();
+    }
+
+    SubmittedOperationDTO submit(String operation, String accountId, SubmittedCall call) throws SubmissionQueueFullException {
+        Submission submission = new Submission(operation, accountId, call);
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(accountId, Lane::new);
+            synchronized (lane) {
+                //emptied and dropped meanwhile, a new lane takes over so that two never run for one account
+                if (lane.retired) continue;
+                if (lane.queue.size() >= accountQueueCapacity)
+                    throw new SubmissionQueueFullException(accountQueueCapacity + " operations already queued for account " + accountId);
+                if (pending.incrementAndGet() > maxPending) {
+                    pending.decrementAndGet();
+                    throw new SubmissionQueueFullException(maxPending + " operations already queued");
+                }
+                submissions.put(submission.status.getOperationId(), submission);
+                lane.queue.add(submission);
+                if (!lane.scheduled) {
+                    lane.scheduled = true;
+                    workers.execute(lane);
+                }
+                return submission.status;
+            }
+        }
+    }
+
+    public SubmittedOperationDTO getStatus(String operationId) throws SubmittedOperationNotFoundException {
+        return find(operationId).status;
+    }
+
+    //completes with the final status, right away if the operation is already done
+    public CompletableFuture<SubmittedOperationDTO> completion(String operationId) throws SubmittedOperationNotFoundException {
+        return find(operationId).completion;
+    }
+
+    private Submission find(String operationId) throws SubmittedOperationNotFoundException {
+        Submission submission = submissions.get(operationId);
+        if (submission == null) throw new SubmittedOperationNotFoundException("Operation " + operationId + " not found");
+        return submission;
+    }
+
+    /**
+     * Calls the listener with the final status of every operation of the account completing from now on,
+     * on the worker thread that applied it, until the returned action is run.
+     */
+    public Runnable subscribe(String accountId, Consumer<SubmittedOperationDTO> listener) {
+        listeners.computeIfAbsent(accountId, id -> new CopyOnWriteArraySet<>()).add(listener);
+        return () -> listeners.computeIfPresent(accountId, (id, accountListeners) -> {
+            accountListeners.remove(listener);
+            return accountListeners.isEmpty() ? null : accountListeners;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${ebank.submissions.sweep-interval:PT1M}")
+    public void sweepCompleted() {
+        long completedBefore = System.currentTimeMillis() - statusRetention.toMillis();
+        submissions.values().removeIf(submission -> submission.status.getCompletedAt() != null
+                && submission.status.getCompletedAt().getTime() < completedBefore);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS))
+            log.warn("{} submitted operations still queued at shutdown", pending.get());
+    }
+
+    private void apply(Submission submission) {
+        Exception error = null;
+        try {
+            submission.call.call();
+        } catch (BankAccountNotFoundException | BalanceNotSufficientException | RuntimeException e) {
+            error = e;
+        } finally {
+            pending.decrementAndGet();
+        }
+        SubmittedOperationDTO status = submission.complete(error);
+        Set<Consumer<SubmittedOperationDTO>> accountListeners = listeners.get(submission.status.getAccountId());
+        if (accountListeners == null) return;
+        for (Consumer<SubmittedOperationDTO> listener : accountListeners) {
+            try {
+                listener.accept(status);
+            } catch (RuntimeException e) {
+                log.warn("listener of account {} failed", submission.status.getAccountId(), e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface SubmittedCall {
+        void call() throws BankAccountNotFoundException, BalanceNotSufficientException;
+    }
+
+    private static final class Submission {
+
+        final SubmittedCall call;
+        final CompletableFuture<SubmittedOperationDTO> completion = new CompletableFuture<>();
+        //replaced, never modified, once the operation completes
+        volatile SubmittedOperationDTO status;
+
+        Submission(String operation, String accountId, SubmittedCall call) {
+            this.call = call;
+            SubmittedOperationDTO submitted = new SubmittedOperationDTO();
+            submitted.setOperationId(UUID.randomUUID().toString());
+            submitted.setOperation(operation);
+            submitted.setAccountId(accountId);
+            submitted.setStatus(SubmittedOperationStatus.PENDING);
+            submitted.setSubmittedAt(new Date());
+            this.status = submitted;
+        }
+
+        SubmittedOperationDTO complete(Exception error) {
+            SubmittedOperationDTO completed = new SubmittedOperationDTO();
+            completed.setOperationId(status.getOperationId());
+            completed.setOperation(status.getOperation());
+            completed.setAccountId(status.getAccountId());
+            completed.setSubmittedAt(status.getSubmittedAt());
+            completed.setCompletedAt(new Date());
+            if (error == null) {
+                completed.setStatus(SubmittedOperationStatus.APPLIED);
+            } else {
+                completed.setStatus(SubmittedOperationStatus.REJECTED);
+                completed.setError(error.getClass().getSimpleName());
+                completed.setMessage(error.getMessage());
+            }
+            status = completed;
+            completion.complete(completed);
+            return completed;
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        final String accountId;
+        final Deque<Submission> queue = new ArrayDeque<>();
+        boolean scheduled;
+        boolean retired;
+
+        Lane(String accountId) {
+            this.accountId = accountId;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < OPERATIONS_PER_TURN; i++) {
+                Submission next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        retired = true;
+                        lanes.remove(accountId, this);
+                        return;
+                    }
+                }
+                apply(next);
+            }
+            workers.execute(this);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.ebankbackend.support;
+
+import java.math.BigDecimal;
+
+/**
+ * Money is stored and computed as a long count of minor units (cents), exactly, and crosses the API
+ * as a {@link BigDecimal} with {@value #SCALE} decimals, the same decimal number on the wire as before.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) throw new IllegalArgumentException("Amount is required");
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " has more than " + SCALE + " decimals or is out of range");
+        }
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public static BigDecimal fromMinorUnits(Long minorUnits) {
+        return minorUnits == null ? null : fromMinorUnits(minorUnits.longValue());
+    }
+}
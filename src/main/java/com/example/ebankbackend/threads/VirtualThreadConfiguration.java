@@ -0,0 +1,53 @@
+package com.example.ebankbackend.threads;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in ({@code ebank.threads.virtual.enabled=true}, Java 21 runtime): Tomcat serves every request on
+ * its own virtual thread and the application task executor, used by {@code @Async} methods and by async
+ * MVC responses such as the history export, runs its tasks on virtual threads too.
+ * <p>
+ * Requests then no longer queue for one of Tomcat's worker threads while others block on JDBC; they
+ * queue for a Hikari connection instead, so {@code spring.datasource.hikari.maximum-pool-size} becomes
+ * the real limit on concurrent database work. That only holds while a thread blocked on I/O unmounts
+ * from its carrier: a {@code synchronized} block around the wait pins the carrier instead, and then the
+ * carrier count ({@code jdk.virtualThreadScheduler.parallelism}, the number of cores by default) is the
+ * limit. mysql-connector-j 9.x no longer does its socket I/O under {@code synchronized} (8.0.x did); run
+ * with {@code -Djdk.tracePinnedThreads=short} to find what still pins.
+ * <p>
+ * Not measured yet: the virtual mode of {@code RestLoadTest} has not been run on a Java 21 runtime, so
+ * there is no comparison with the platform thread mode so far.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ebank.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService virtualThreadExecutor() {
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        log.info("serving requests and async tasks on virtual threads");
+        return executor;
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    //replaces the pooled executor Spring Boot would otherwise create under this name
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+}
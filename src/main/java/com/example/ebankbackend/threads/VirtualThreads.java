@@ -0,0 +1,49 @@
+package com.example.ebankbackend.threads;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads while the build still targets Java 17: the factory method is looked up
+ * at runtime and is only there on a Java 21 (or newer) JVM.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * One new virtual thread per task, no pooling: limits belong to the resources the tasks wait on.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported())
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime, this is Java " + Runtime.version());
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle lookup() {
+        //preview on 19 and 20, only final from 21 on
+        if (Runtime.version().feature() < 21) return null;
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -3,10 +3,37 @@ package com.example.ebankbackend.web;
 import com.example.ebankbackend.dtos.*;
 import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
 import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.IdempotencyConflictException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.exceptions.InvalidPageException;
+import com.example.ebankbackend.exceptions.SubmissionQueueFullException;
+import com.example.ebankbackend.exceptions.SubmittedOperationNotFoundException;
+import com.example.ebankbackend.idempotency.IdempotentRequests;
 import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.submissions.OperationSubmissions;
+import io.micrometer.core.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
 import java.util.List;
 
 @CrossOrigin("*")
@@ -14,9 +41,28 @@ import java.util.List;
 @RestController
 public class BankAccountRestAPI {
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    //clients retrying a debit, credit or transfer send the same key to get the first response back
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    //longest a status request may wait for its operation to complete
+    private static final long MAX_WAIT_MILLIS = 30_000;
+
     @Autowired
     private BankAccountService bankAccountService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private IdempotentRequests idempotentRequests;
+
+    @Autowired
+    private OperationSubmissions operationSubmissions;
+
+    @Value("${ebank.submissions.stream-timeout:30m}")
+    private Duration streamTimeout;
+
     @GetMapping("/accounts/{accountId}")
     public BankAccountDTO getBankAccount(@PathVariable String accountId) throws BankAccountNotFoundException {
         return bankAccountService.getBankAccount(accountId);
@@ -27,11 +73,59 @@ public class BankAccountRestAPI {
         return bankAccountService.getBankAccountList();
     }
 
+    @GetMapping("/accounts/page")
+    public BankAccountPageDTO pageAccounts(
+            BankAccountFilterDTO filter,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size) throws InvalidPageException {
+        return bankAccountService.getBankAccountPage(filter, page, size);
+    }
+
+    @GetMapping("/accounts/cursor")
+    public BankAccountPageDTO cursorAccounts(
+            BankAccountFilterDTO filter,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "20") int size) throws InvalidCursorException {
+        return bankAccountService.getBankAccountPage(filter, cursor, size);
+    }
+
     @GetMapping("/accounts/{accountId}/operations")
     public List<AccountOperationDTO> getHistory(@PathVariable String accountId){
         return bankAccountService.accountHistory(accountId);
     }
 
+    //constant memory whatever the size of the history, rows are written as they are fetched; written by the
+    //application task executor, for up to spring.mvc.async.request-timeout
+    @GetMapping("/accounts/{accountId}/operations/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @PathVariable String accountId,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format) throws BankAccountNotFoundException {
+        bankAccountService.getBankAccount(accountId);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            SequenceWriter jsonLines = csv ? null : objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).withRootValueSeparator("\n").writeValues(writer);
+            if (csv) writer.write("id,operationDate,amount,type,description,balanceAfter\n");
+            try {
+                bankAccountService.streamAccountHistory(accountId, op -> {
+                    try {
+                        if (csv) writer.write(toCsvLine(op));
+                        else jsonLines.write(op);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (BankAccountNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+            if (jsonLines != null) jsonLines.flush();
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/accounts/{accountId}/pageOperations")
     public AccountHistoryDTO getAccountHistory(
             @PathVariable String accountId,
@@ -40,22 +134,120 @@ public class BankAccountRestAPI {
         return bankAccountService.getAccountHistory(accountId, page, size);
     }
 
+    @GetMapping("/accounts/{accountId}/cursorOperations")
+    public AccountHistoryCursorDTO getAccountHistory(
+            @PathVariable String accountId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "5") int size,
+            @RequestParam(name = "withTotal", defaultValue = "false") boolean withTotal) throws BankAccountNotFoundException, InvalidCursorException {
+        return bankAccountService.getAccountHistory(accountId, cursor, size, withTotal);
+    }
+
+    @GetMapping("/accounts/{accountId}/balance")
+    public AccountBalanceDTO getBalanceAt(
+            @PathVariable String accountId,
+            @RequestParam(name = "at") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date at) throws BankAccountNotFoundException {
+        return bankAccountService.getBalanceAt(accountId, at);
+    }
+
+    @GetMapping("/accounts/{accountId}/statement")
+    public AccountStatementDTO getStatement(
+            @PathVariable String accountId,
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) throws BankAccountNotFoundException {
+        return bankAccountService.getStatement(accountId, from, to);
+    }
+
     @PostMapping("/accounts/debit")
-    public DebitDTO debit(@RequestBody DebitDTO debitDTO) throws BankAccountNotFoundException, BalanceNotSufficientException {
-        this.bankAccountService.debit(debitDTO.getAccountId(), debitDTO.getAmount(), debitDTO.getDescription());
-        return debitDTO;
+    public DebitDTO debit(@RequestBody DebitDTO debitDTO,
+                          @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) throws BankAccountNotFoundException, BalanceNotSufficientException, IdempotencyConflictException {
+        return idempotentRequests.execute(idempotencyKey, "debit", debitDTO, DebitDTO.class, () -> {
+            this.bankAccountService.debit(debitDTO.getAccountId(), debitDTO.getAmount(), debitDTO.getDescription());
+            return debitDTO;
+        });
     }
 
     @PostMapping("/accounts/credit")
-    public CreditDTO credit(@RequestBody CreditDTO creditDTO) throws BankAccountNotFoundException, BalanceNotSufficientException {
-        this.bankAccountService.debit(creditDTO.getAccountId(), creditDTO.getAmount(), creditDTO.getDescription());
-        return creditDTO;
+    public CreditDTO credit(@RequestBody CreditDTO creditDTO,
+                            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) throws BankAccountNotFoundException, BalanceNotSufficientException, IdempotencyConflictException {
+        return idempotentRequests.execute(idempotencyKey, "credit", creditDTO, CreditDTO.class, () -> {
+            this.bankAccountService.credit(creditDTO.getAccountId(), creditDTO.getAmount(), creditDTO.getDescription());
+            return creditDTO;
+        });
+    }
+
+    @PostMapping("/accounts/operations/batch")
+    public List<BatchOperationResultDTO> applyOperations(@RequestBody List<BatchOperationDTO> operations) {
+        return this.bankAccountService.applyOperations(operations);
     }
 
     @PostMapping("/accounts/transfert")
-    public void transfer(@RequestBody TransfertRequestDTO transfertRequestDTO) throws BankAccountNotFoundException, BalanceNotSufficientException {
-        this.bankAccountService.transfer(transfertRequestDTO.getAccountSource(),
-                transfertRequestDTO.getAccountDestination(),
-                transfertRequestDTO.getAmount());
+    @Timed(value = "ebank.transfer", percentiles = {0.5, 0.99}, description = "Transfers between two accounts")
+    public void transfer(@RequestBody TransfertRequestDTO transfertRequestDTO,
+                         @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) throws BankAccountNotFoundException, BalanceNotSufficientException, IdempotencyConflictException {
+        idempotentRequests.execute(idempotencyKey, "transfer", transfertRequestDTO, Void.class, () -> {
+            this.bankAccountService.transfer(transfertRequestDTO.getAccountSource(),
+                    transfertRequestDTO.getAccountDestination(),
+                    transfertRequestDTO.getAmount());
+            return null;
+        });
+    }
+
+    //the async variants answer 202 once the operation is queued, see GET /operations/{operationId}
+    @PostMapping("/accounts/debit/async")
+    public ResponseEntity<SubmittedOperationDTO> submitDebit(@RequestBody DebitDTO debitDTO) throws BankAccountNotFoundException, SubmissionQueueFullException {
+        return accepted(operationSubmissions.submitDebit(debitDTO));
+    }
+
+    @PostMapping("/accounts/credit/async")
+    public ResponseEntity<SubmittedOperationDTO> submitCredit(@RequestBody CreditDTO creditDTO) throws BankAccountNotFoundException, SubmissionQueueFullException {
+        return accepted(operationSubmissions.submitCredit(creditDTO));
+    }
+
+    @PostMapping("/accounts/transfert/async")
+    public ResponseEntity<SubmittedOperationDTO> submitTransfer(@RequestBody TransfertRequestDTO transfertRequestDTO) throws BankAccountNotFoundException, SubmissionQueueFullException {
+        return accepted(operationSubmissions.submitTransfer(transfertRequestDTO));
+    }
+
+    //long polling: with waitMillis, answers as soon as the operation completes or with its pending status after that long
+    @GetMapping("/operations/{operationId}")
+    public DeferredResult<SubmittedOperationDTO> getSubmittedOperation(
+            @PathVariable String operationId,
+            @RequestParam(name = "waitMillis", defaultValue = "0") long waitMillis) throws SubmittedOperationNotFoundException {
+        SubmittedOperationDTO status = operationSubmissions.getStatus(operationId);
+        DeferredResult<SubmittedOperationDTO> result = new DeferredResult<>(Math.min(Math.max(waitMillis, 1), MAX_WAIT_MILLIS),
+                () -> status);
+        if (waitMillis <= 0) result.setResult(status);
+        else operationSubmissions.completion(operationId).thenAccept(result::setResult);
+        return result;
+    }
+
+    //server-sent events: the final status of every submitted operation of the account, as they complete
+    @GetMapping(path = "/accounts/{accountId}/operations/submitted", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSubmittedOperations(@PathVariable String accountId) throws BankAccountNotFoundException {
+        String id = operationSubmissions.existingAccount(accountId);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Runnable unsubscribe = operationSubmissions.subscribe(id, operation -> {
+            try {
+                emitter.send(SseEmitter.event().name("operation").id(operation.getOperationId()).data(operation));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    private static ResponseEntity<SubmittedOperationDTO> accepted(SubmittedOperationDTO operation) {
+        return ResponseEntity.accepted().location(URI.create("/operations/" + operation.getOperationId())).body(operation);
+    }
+
+    private static String toCsvLine(AccountOperationDTO op) {
+        String date = op.getOperationDate() == null ? "" : op.getOperationDate().toInstant().toString();
+        String description = op.getDescription() == null ? "" : "\"" + op.getDescription().replace("\"", "\"\"") + "\"";
+        String balanceAfter = op.getBalanceAfter() == null ? "" : op.getBalanceAfter().toString();
+        return op.getId() + "," + date + "," + op.getAmount() + "," + op.getType() + "," + description + "," + balanceAfter + "\n";
     }
 }
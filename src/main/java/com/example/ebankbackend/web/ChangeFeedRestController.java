@@ -0,0 +1,90 @@
+package com.example.ebankbackend.web;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+import com.example.ebankbackend.outbox.ChangeFeed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+//change feed of account operations, for consumers that would otherwise re-read whole histories to find new operations
+@CrossOrigin("*")
+
+@RestController
+public class ChangeFeedRestController {
+
+    private static final int MAX_LIMIT = 1000;
+    //longest a feed request may wait for new events
+    private static final long MAX_WAIT_MILLIS = 30_000;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Value("${ebank.outbox.stream-timeout:30m}")
+    private Duration streamTimeout;
+
+    //the events after the given offset; with waitMillis, a long poll answering as soon as there is one
+    @GetMapping("/events")
+    public DeferredResult<List<ChangeEventDTO>> getEvents(
+            @RequestParam(name = "after", defaultValue = "0") long after,
+            @RequestParam(name = "accountId", required = false) String accountId,
+            @RequestParam(name = "limit", defaultValue = "100") int limit,
+            @RequestParam(name = "waitMillis", defaultValue = "0") long waitMillis) {
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        DeferredResult<List<ChangeEventDTO>> result = new DeferredResult<>(Math.min(Math.max(waitMillis, 1), MAX_WAIT_MILLIS), List::of);
+        if (waitMillis <= 0) {
+            result.setResult(changeFeed.read(after, accountId, size));
+            return result;
+        }
+        Runnable unsubscribe = changeFeed.subscribe(after, accountId, events -> {
+            if (!result.isSetOrExpired()) result.setResult(events.size() > size ? events.subList(0, size) : events);
+        });
+        result.onCompletion(unsubscribe);
+        return result;
+    }
+
+    //server-sent events from the given offset on, or from the Last-Event-ID an EventSource sends when it reconnects
+    @GetMapping(path = "/events/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestParam(name = "after", defaultValue = "0") long after,
+            @RequestParam(name = "accountId", required = false) String accountId,
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        FeedStream stream = new FeedStream(emitter);
+        Runnable unsubscribe = changeFeed.subscribe(lastEventId != null ? lastEventId : after, accountId, stream::send);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    //sends the events the change feed hands over, in offset order
+    private static final class FeedStream {
+
+        private final SseEmitter emitter;
+        private boolean closed;
+
+        FeedStream(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void send(List<ChangeEventDTO> events) {
+            if (closed) return;
+            for (ChangeEventDTO event : events) {
+                try {
+                    emitter.send(SseEmitter.event().id(Long.toString(event.getOffset())).name(event.getType()).data(event));
+                } catch (IOException | IllegalStateException e) {
+                    closed = true;
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
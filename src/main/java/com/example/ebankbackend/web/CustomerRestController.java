@@ -1,7 +1,10 @@
 package com.example.ebankbackend.web;
 
 import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.dtos.CustomerPageDTO;
 import com.example.ebankbackend.exceptions.CustomerNotFoundException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.exceptions.InvalidPageException;
 import com.example.ebankbackend.services.BankAccountService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,9 +25,21 @@ public class CustomerRestController {
         return bankAccountService.listCustomers();
     }
 
+    @GetMapping("/customers/page")
+    public CustomerPageDTO pageCustomers(@RequestParam(name = "page", defaultValue = "0") int page,
+                                         @RequestParam(name = "size", defaultValue = "20") int size) throws InvalidPageException {
+        return bankAccountService.getCustomerPage(page, size);
+    }
+
+    @GetMapping("/customers/cursor")
+    public CustomerPageDTO cursorCustomers(@RequestParam(name = "cursor", required = false) String cursor,
+                                           @RequestParam(name = "size", defaultValue = "20") int size) throws InvalidCursorException {
+        return bankAccountService.getCustomerPage(cursor, size);
+    }
+
     @GetMapping("/customers/search")
     public List<CustomerDTO> searchCustomers(@RequestParam(name = "keyword", defaultValue = "") String keyword) {
-        return bankAccountService.searchCustomers("%" + keyword + "%");
+        return bankAccountService.searchCustomers(keyword);
     }
 
     @GetMapping("/customers/{id}")
@@ -0,0 +1,46 @@
+package com.example.ebankbackend;
+
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+//the seed fails the start if any of its operations fails
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:seed-ledger;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "ebank.balance.update-mode=ledger",
+        "ebank.seed.enabled=true"})
+@ActiveProfiles("test")
+@DirtiesContext
+class EbankBackendApplicationLedgerTests {
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+    @Autowired
+    private AccountOperationRepository accountOperationRepository;
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("ebank.ledger.journal-dir", Files.createTempDirectory("seed-ledger")::toString);
+    }
+
+    @Test
+    void seedRunsInLedgerMode() throws InterruptedException {
+        //then: 3 customers with 2 accounts each, 10 credits and 10 debits per account, written behind
+        Assertions.assertEquals(6, bankAccountRepository.count());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (accountOperationRepository.count() < 120 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(120, accountOperationRepository.count());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.ebankbackend.cache;
+
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AccountSnapshotCacheTest {
+
+    private final AccountSnapshotCache accountSnapshotCache =
+            new AccountSnapshotCache(new ConcurrentMapCacheManager(AccountSnapshotCache.CACHE_NAME));
+
+    @Test
+    void loadsOnceThenServesFromCache() {
+        //given
+        UUID accountId = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        accountSnapshotCache.get(accountId, id -> snapshot(loads.incrementAndGet()));
+        BankAccountDTO cached = accountSnapshotCache.get(accountId, id -> snapshot(loads.incrementAndGet()));
+
+        //then
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(BigDecimal.valueOf(1), ((CurrentBankAccountDTO) cached).getBalance());
+    }
+
+    @Test
+    void evictionForcesReload() {
+        //given
+        UUID accountId = UUID.randomUUID();
+        accountSnapshotCache.get(accountId, id -> snapshot(100));
+
+        //when
+        accountSnapshotCache.evictAfterCommit(accountId);
+        BankAccountDTO reloaded = accountSnapshotCache.get(accountId, id -> snapshot(50));
+
+        //then
+        Assertions.assertEquals(BigDecimal.valueOf(50), ((CurrentBankAccountDTO) reloaded).getBalance());
+    }
+
+    @Test
+    void snapshotLoadedBeforeAConcurrentWriteIsNotCached() {
+        //given
+        UUID accountId = UUID.randomUUID();
+
+        //when a write commits and evicts while the reader is still loading the old balance
+        BankAccountDTO stale = accountSnapshotCache.get(accountId, id -> {
+            accountSnapshotCache.evictAfterCommit(accountId);
+            return snapshot(100);
+        });
+        BankAccountDTO next = accountSnapshotCache.get(accountId, id -> snapshot(90));
+
+        //then
+        Assertions.assertEquals(BigDecimal.valueOf(100), ((CurrentBankAccountDTO) stale).getBalance());
+        Assertions.assertEquals(BigDecimal.valueOf(90), ((CurrentBankAccountDTO) next).getBalance());
+    }
+
+    private static BankAccountDTO snapshot(long balance) {
+        CurrentBankAccountDTO currentBankAccountDTO = new CurrentBankAccountDTO();
+        currentBankAccountDTO.setBalance(BigDecimal.valueOf(balance));
+        return currentBankAccountDTO;
+    }
+}
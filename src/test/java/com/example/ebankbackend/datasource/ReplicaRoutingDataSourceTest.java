@@ -0,0 +1,163 @@
+package com.example.ebankbackend.datasource;
+
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.services.BankAccountService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.Cookie;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//two embedded databases: nothing replicates between them, so each read shows which one served it
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingDataSourceTest.PRIMARY_URL,
+        "ebank.datasource.replicas[0].url=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+        "ebank.datasource.replicas[0].username=sa",
+        "ebank.datasource.replicas[0].password="})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext
+class ReplicaRoutingDataSourceTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private ReplicaPools replicaPools;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    void copySchemaToReplica() {
+        if (replica.queryForObject("select count(*) from information_schema.tables where table_name = 'CUSTOMER'", Integer.class) > 0) return;
+        primary.queryForList("script nodata", String.class).forEach(replica::execute);
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromTheReplicaAndWritesGoToThePrimary() {
+        //given
+        String written = "written-" + UUID.randomUUID();
+        String replicated = "replicated-" + UUID.randomUUID();
+        replica.update("insert into customer (id, name, email) values (?, ?, ?)", System.nanoTime(), replicated, "r@gmail.com");
+
+        //when
+        bankAccountService.saveCustomer(customer(written));
+        List<String> names = bankAccountService.listCustomers().stream().map(CustomerDTO::getName).toList();
+
+        //then
+        Assertions.assertEquals(1, primary.queryForObject("select count(*) from customer where name = ?", Integer.class, written));
+        Assertions.assertEquals(0, replica.queryForObject("select count(*) from customer where name = ?", Integer.class, written));
+        Assertions.assertTrue(names.contains(replicated));
+        Assertions.assertFalse(names.contains(written));
+    }
+
+    @Test
+    void aDebitMakesTheNextReadsOfTheSessionGoToThePrimary() throws Exception {
+        //given
+        String name = "debtor-" + UUID.randomUUID();
+        Long customerId = bankAccountService.saveCustomer(customer(name)).getId();
+        String accountId = bankAccountService.saveCurrentBankAccount(BigDecimal.valueOf(100), BigDecimal.ZERO, customerId).getId();
+
+        //when
+        Cookie cookie = mockMvc.perform(post("/accounts/debit").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountId\":\"" + accountId + "\",\"amount\":10,\"description\":\"d\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        String withCookie = mockMvc.perform(get("/customers").cookie(cookie)).andReturn().getResponse().getContentAsString();
+        String withoutCookie = mockMvc.perform(get("/customers")).andReturn().getResponse().getContentAsString();
+
+        //then
+        Assertions.assertNotNull(cookie);
+        Assertions.assertTrue(withCookie.contains(name));
+        Assertions.assertFalse(withoutCookie.contains(name));
+    }
+
+    @Test
+    void accountSnapshotsAreCachedFromThePrimary() throws Exception {
+        //given: the replica still has the account as it was before a debit
+        Long customerId = bankAccountService.saveCustomer(customer("cached-" + UUID.randomUUID())).getId();
+        String accountId = bankAccountService.saveCurrentBankAccount(BigDecimal.valueOf(100), BigDecimal.ZERO, customerId).getId();
+        copyToReplica("customer", "id", customerId);
+        copyToReplica("bank_account", "id", UUID.fromString(accountId));
+        bankAccountService.debit(accountId, BigDecimal.TEN, "d");
+
+        //when: a read-only transaction reads it first, then a client without the cookie
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        BankAccountDTO fromReplica = readOnly.execute(status -> {
+            try {
+                return bankAccountService.getBankAccount(accountId);
+            } catch (BankAccountNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        String cached = mockMvc.perform(get("/accounts/{accountId}", accountId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        //then
+        Assertions.assertEquals(0, BigDecimal.valueOf(100).compareTo(((CurrentBankAccountDTO) fromReplica).getBalance()));
+        Assertions.assertTrue(cached.contains("\"balance\":90"));
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    void readsFallBackToThePrimaryWhenTheReplicaIsDown() {
+        //given
+        String name = "primary-only-" + UUID.randomUUID();
+        bankAccountService.saveCustomer(customer(name));
+        ((HikariDataSource) replicaPools.getPools().get("replica-0")).close();
+
+        //when
+        List<String> names = bankAccountService.listCustomers().stream().map(CustomerDTO::getName).toList();
+
+        //then
+        Assertions.assertTrue(names.contains(name));
+        Assertions.assertFalse(replicaPools.isUp("replica-0"));
+    }
+
+    private void copyToReplica(String table, String idColumn, Object id) {
+        Map<String, Object> row = primary.queryForMap("select * from " + table + " where " + idColumn + " = ?", id);
+        String columns = String.join(", ", row.keySet());
+        String values = String.join(", ", Collections.nCopies(row.size(), "?"));
+        replica.update("insert into " + table + " (" + columns + ") values (" + values + ")", row.values().toArray());
+    }
+
+    private static CustomerDTO customer(String name) {
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setName(name);
+        customerDTO.setEmail(name + "@gmail.com");
+        return customerDTO;
+    }
+}
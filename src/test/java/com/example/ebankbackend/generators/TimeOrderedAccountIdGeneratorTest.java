@@ -0,0 +1,67 @@
+package com.example.ebankbackend.generators;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class TimeOrderedAccountIdGeneratorTest {
+
+    @Test
+    void idsAreVersion7AndCarryTheTimestamp() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        TimeOrderedAccountIdGenerator generator = new TimeOrderedAccountIdGenerator(Clock.fixed(now, ZoneOffset.UTC));
+
+        UUID id = generator.nextId();
+
+        Assertions.assertEquals(7, id.version());
+        Assertions.assertEquals(2, id.variant());
+        Assertions.assertEquals(now.toEpochMilli(), id.getMostSignificantBits() >>> 16);
+        Assertions.assertEquals(id, UUID.fromString(id.toString()));
+    }
+
+    @Test
+    void idsIncreaseWithinTheSameMillisecond() {
+        TimeOrderedAccountIdGenerator generator = new TimeOrderedAccountIdGenerator(Clock.fixed(Instant.now(), ZoneOffset.UTC));
+
+        UUID previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            UUID next = generator.nextId();
+            Assertions.assertTrue(Long.compareUnsigned(previous.getMostSignificantBits(), next.getMostSignificantBits()) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        TimeOrderedAccountIdGenerator generator = new TimeOrderedAccountIdGenerator();
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        ids.add(generator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(160_000, ids.size());
+    }
+}
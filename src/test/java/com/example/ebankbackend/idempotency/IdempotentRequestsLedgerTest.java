@@ -0,0 +1,127 @@
+package com.example.ebankbackend.idempotency;
+
+import com.example.ebankbackend.dtos.DebitDTO;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.IdempotencyConflictException;
+import com.example.ebankbackend.repositories.IdempotencyRecordRepository;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.TestAccounts;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency-ledger;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "ebank.balance.update-mode=ledger",
+        "ebank.ledger.shards=2"})
+@ActiveProfiles("test")
+@DirtiesContext
+class IdempotentRequestsLedgerTest {
+
+    @Autowired
+    private IdempotentRequests idempotentRequests;
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("ebank.ledger.journal-dir", Files.createTempDirectory("idempotency-ledger")::toString);
+    }
+
+    @Test
+    void keyIsCommittedBeforeTheLedgerRunsTheCall() throws Exception {
+        //given
+        UUID accountId = TestAccounts.newAccountId(bankAccountService, 100);
+        DebitDTO debitDTO = debit(accountId, 30);
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+        boolean[] seenDuringTheCall = new boolean[2];
+
+        //when
+        DebitDTO first = idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> {
+            calls.incrementAndGet();
+            seenDuringTheCall[0] = TransactionSynchronizationManager.isActualTransactionActive();
+            seenDuringTheCall[1] = idempotencyRecordRepository.existsById(key);
+            return debitOnce(debitDTO);
+        });
+        DebitDTO replayed = idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> {
+            calls.incrementAndGet();
+            return debitOnce(debitDTO);
+        });
+
+        //then
+        Assertions.assertEquals(first, replayed);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertFalse(seenDuringTheCall[0]);
+        Assertions.assertTrue(seenDuringTheCall[1]);
+        Assertions.assertNotNull(idempotencyRecordRepository.findById(key).orElseThrow().getResponse());
+    }
+
+    @Test
+    void keyOfACallThatMayHaveBeenAppliedStaysReserved() {
+        //given: a call failing after the ledger may have applied it
+        UUID accountId = TestAccounts.newAccountId(bankAccountService, 100);
+        DebitDTO debitDTO = debit(accountId, 10);
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> {
+                    debitOnce(debitDTO);
+                    throw new IllegalStateException("Interrupted while the operation was applied, it may still complete");
+                }));
+
+        //when
+        Assertions.assertThrows(IdempotencyConflictException.class,
+                () -> idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> {
+                    calls.incrementAndGet();
+                    return debitOnce(debitDTO);
+                }));
+
+        //then
+        Assertions.assertEquals(0, calls.get());
+        Assertions.assertNull(idempotencyRecordRepository.findById(key).orElseThrow().getResponse());
+    }
+
+    @Test
+    void refusedCallReleasesTheKey() {
+        //given
+        UUID accountId = TestAccounts.newAccountId(bankAccountService, 10);
+        DebitDTO debitDTO = debit(accountId, 20);
+        String key = UUID.randomUUID().toString();
+
+        //when
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> debitOnce(debitDTO)));
+
+        //then
+        Assertions.assertFalse(idempotencyRecordRepository.existsById(key));
+    }
+
+    private DebitDTO debitOnce(DebitDTO debitDTO) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        bankAccountService.debit(debitDTO.getAccountId(), debitDTO.getAmount(), debitDTO.getDescription());
+        return debitDTO;
+    }
+
+    private static DebitDTO debit(UUID accountId, long amount) {
+        DebitDTO debitDTO = new DebitDTO();
+        debitDTO.setAccountId(accountId.toString());
+        debitDTO.setAmount(BigDecimal.valueOf(amount));
+        debitDTO.setDescription("debit");
+        return debitDTO;
+    }
+}
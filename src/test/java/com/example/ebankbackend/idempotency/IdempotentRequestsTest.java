@@ -0,0 +1,201 @@
+package com.example.ebankbackend.idempotency;
+
+import com.example.ebankbackend.dtos.DebitDTO;
+import com.example.ebankbackend.entities.IdempotencyRecord;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.IdempotencyConflictException;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.IdempotencyRecordRepository;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.TestAccounts;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotentRequestsTest {
+
+    @Autowired
+    private IdempotentRequests idempotentRequests;
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+    @Autowired
+    private AccountOperationRepository accountOperationRepository;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Test
+    void replayReturnsTheStoredResponseWithoutDebitingAgain() throws Exception {
+        //given
+        String accountId = TestAccounts.newAccount(bankAccountService, 100);
+        DebitDTO debitDTO = debit(accountId, 30);
+        String key = UUID.randomUUID().toString();
+
+        //when
+        DebitDTO first = idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> debitOnce(debitDTO));
+        DebitDTO replayed = idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> debitOnce(debitDTO));
+
+        //then
+        Assertions.assertEquals(first, replayed);
+        Assertions.assertEquals(70_00, bankAccountRepository.findById(UUID.fromString(accountId)).orElseThrow().getBalance());
+        Assertions.assertEquals(1, accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountId)).size());
+    }
+
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        //given
+        String accountId = TestAccounts.newAccount(bankAccountService, 100);
+        DebitDTO debitDTO = debit(accountId, 10);
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //when
+        List<Future<DebitDTO>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> {
+                        calls.incrementAndGet();
+                        return debitOnce(debitDTO);
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<DebitDTO> future : futures) {
+                Assertions.assertEquals(debitDTO, future.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(90_00, bankAccountRepository.findById(UUID.fromString(accountId)).orElseThrow().getBalance());
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRefused() throws Exception {
+        //given
+        String accountId = TestAccounts.newAccount(bankAccountService, 100);
+        String key = UUID.randomUUID().toString();
+        DebitDTO debitDTO = debit(accountId, 10);
+        idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> debitOnce(debitDTO));
+
+        //when
+        DebitDTO other = debit(accountId, 20);
+
+        //then
+        Assertions.assertThrows(IdempotencyConflictException.class,
+                () -> idempotentRequests.execute(key, "debit", other, DebitDTO.class, () -> debitOnce(other)));
+        Assertions.assertEquals(90_00, bankAccountRepository.findById(UUID.fromString(accountId)).orElseThrow().getBalance());
+    }
+
+    @Test
+    void failedRequestLeavesNoRecord() throws Exception {
+        //given
+        String accountId = TestAccounts.newAccount(bankAccountService, 10);
+        String key = UUID.randomUUID().toString();
+        DebitDTO debitDTO = debit(accountId, 20);
+
+        //when
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> debitOnce(debitDTO)));
+
+        //then
+        Assertions.assertFalse(idempotencyRecordRepository.existsById(key));
+    }
+
+    @Test
+    void sweeperDeletesExpiredKeys() {
+        //given
+        Date now = new Date();
+        idempotencyRecordRepository.save(new IdempotencyRecord("expired", "debit", "", "null", now, new Date(now.getTime() - 1)));
+        idempotencyRecordRepository.save(new IdempotencyRecord("live", "debit", "", "null", now, new Date(now.getTime() + 60_000)));
+
+        //when
+        idempotentRequests.sweepExpired();
+
+        //then
+        Assertions.assertFalse(idempotencyRecordRepository.existsById("expired"));
+        Assertions.assertTrue(idempotencyRecordRepository.existsById("live"));
+    }
+
+    @Test
+    void concurrentKeyedDebitsRetryTheirOptimisticConflicts() throws Exception {
+        //given: distinct keys, every debit commits together with its record
+        useBalanceUpdateMode(BalanceUpdateMode.OPTIMISTIC);
+        ReflectionTestUtils.setField(idempotentRequests, "maxAttempts", 50);
+        String accountId = TestAccounts.newAccount(bankAccountService, 1_000);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //when
+        List<Future<DebitDTO>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 16; i++) {
+                DebitDTO debitDTO = debit(accountId, 10);
+                String key = UUID.randomUUID().toString();
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return idempotentRequests.execute(key, "debit", debitDTO, DebitDTO.class, () -> debitOnce(debitDTO));
+                }));
+            }
+            start.countDown();
+            for (Future<DebitDTO> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+            useBalanceUpdateMode(BalanceUpdateMode.CONDITIONAL);
+            ReflectionTestUtils.setField(idempotentRequests, "maxAttempts", 5);
+        }
+
+        //then
+        Assertions.assertEquals(840_00, bankAccountRepository.findById(UUID.fromString(accountId)).orElseThrow().getBalance());
+        Assertions.assertEquals(16, accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountId)).size());
+    }
+
+    private DebitDTO debitOnce(DebitDTO debitDTO) throws BankAccountNotFoundException, BalanceNotSufficientException {
+        bankAccountService.debit(debitDTO.getAccountId(), debitDTO.getAmount(), debitDTO.getDescription());
+        return debitDTO;
+    }
+
+    private static DebitDTO debit(String accountId, long amount) {
+        DebitDTO debitDTO = new DebitDTO();
+        debitDTO.setAccountId(accountId);
+        debitDTO.setAmount(BigDecimal.valueOf(amount));
+        debitDTO.setDescription("debit");
+        return debitDTO;
+    }
+
+    private void useBalanceUpdateMode(BalanceUpdateMode balanceUpdateMode) {
+        Object target = AopTestUtils.getTargetObject(bankAccountService);
+        ReflectionTestUtils.setField(target, "balanceUpdateMode", balanceUpdateMode);
+        ReflectionTestUtils.setField(idempotentRequests, "balanceUpdateMode", balanceUpdateMode);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.ebankbackend.imports;
+
+import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
+import com.example.ebankbackend.dtos.SavingBankAccountDTO;
+import com.example.ebankbackend.entities.ImportCheckpoint;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.ImportCheckpointRepository;
+import com.example.ebankbackend.services.BankAccountService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+//chunks of 4 lines and 2 validator threads, so that a few lines already go through several chunks in flight
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:imports;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "ebank.import.chunk-size=4",
+        "ebank.import.threads=2"})
+@ActiveProfiles("test")
+@DirtiesContext
+class StatementImporterTest {
+
+    @Autowired
+    private StatementImporter statementImporter;
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private ImportCheckpointRepository importCheckpointRepository;
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importsCustomersAccountsAndOperationsWithRecomputedBalances() throws Exception {
+        //given
+        Path customers = write("customers.csv",
+                "ref,name,email",
+                "C1,\"Doe, Jane\",jane@example.com",
+                "C2,John,john@example.com",
+                "C3,Bad,not-an-email",
+                "C1,Jane again,jane@example.com");
+        Path accounts = write("accounts.csv",
+                "ref,customerRef,type,balance,openedAt,overdraft,interestRate,status",
+                "A1,C1,CURRENT,100.00,2020-01-15,50,,ACTIVATED",
+                "A2,C2,SAVING,10,2021-06-01T08:00:00Z,,3.5,",
+                "A3,C9,CURRENT,0,,,,",
+                "A4,C2,CHECKING,0,,,,");
+        Path operations = write("operations.csv",
+                "accountRef,date,type,amount,description",
+                "A1,2023-01-01,CREDIT,20.50,salary",
+                "A2,2023-01-02,CREDIT,5,interest",
+                "A1,2023-01-03,DEBIT,200,rent",
+                "A9,2023-01-03,DEBIT,1,unknown account",
+                "A1,2023-01-04,DEBIT,-1,negative",
+                "A1,2023-01-05,CREDIT,10,refund",
+                "A2,yesterday,DEBIT,1,bad date");
+
+        //when
+        ImportReport customerReport = statementImporter.importCustomers("main", customers);
+        ImportReport accountReport = statementImporter.importAccounts("main", accounts);
+        ImportReport operationReport = statementImporter.importOperations("main", operations);
+
+        //then
+        Assertions.assertEquals(2, customerReport.getImported());
+        Assertions.assertEquals(2, customerReport.getRejected());
+        Assertions.assertEquals(2, accountReport.getImported());
+        Assertions.assertEquals(2, accountReport.getRejected());
+        Assertions.assertEquals(7, operationReport.getLines());
+        Assertions.assertEquals(4, operationReport.getImported());
+        Assertions.assertEquals(3, operationReport.getRejected());
+
+        String a1 = accountId("A1");
+        String a2 = accountId("A2");
+        Assertions.assertEquals(7, UUID.fromString(a1).version());
+        CurrentBankAccountDTO current = (CurrentBankAccountDTO) bankAccountService.getBankAccount(a1);
+        Assertions.assertEquals(0, new BigDecimal("-69.50").compareTo(current.getBalance()));
+        Assertions.assertEquals(0, new BigDecimal("50").compareTo(current.getOverDraft()));
+        Assertions.assertEquals("Doe, Jane", current.getCustomerDTO().getName());
+        SavingBankAccountDTO saving = (SavingBankAccountDTO) bankAccountService.getBankAccount(a2);
+        Assertions.assertEquals(0, new BigDecimal("15").compareTo(saving.getBalance()));
+        Assertions.assertEquals(3.5, saving.getInterestRate());
+
+        List<BigDecimal> balancesAfter = bankAccountService.accountHistory(a1).stream()
+                .sorted(Comparator.comparing(AccountOperationDTO::getOperationDate))
+                .map(AccountOperationDTO::getBalanceAfter).collect(Collectors.toList());
+        Assertions.assertEquals(3, balancesAfter.size());
+        Assertions.assertEquals(0, new BigDecimal("120.50").compareTo(balancesAfter.get(0)));
+        Assertions.assertEquals(0, new BigDecimal("-79.50").compareTo(balancesAfter.get(1)));
+        Assertions.assertEquals(0, new BigDecimal("-69.50").compareTo(balancesAfter.get(2)));
+
+        List<String> rejected = Files.readAllLines(directory.resolve("operations.csv.rejected"));
+        Assertions.assertEquals(3, rejected.size());
+        Assertions.assertTrue(rejected.get(0).startsWith("4,") && rejected.get(0).contains("Unknown account A9"));
+        Assertions.assertTrue(rejected.get(1).startsWith("5,"));
+        Assertions.assertTrue(rejected.get(2).startsWith("7,"));
+    }
+
+    @Test
+    void rerunResumesAfterTheCheckpoint() throws Exception {
+        //given
+        Path customers = write("resumed-customers.csv", "ref,name,email", "R1,First,", "R2,Second,");
+        Path accounts = write("resumed-accounts.csv", "ref,customerRef,type,balance", "R1,R1,CURRENT,0");
+        Path operations = write("resumed-operations.csv",
+                "accountRef,date,type,amount",
+                "R1,2023-02-01,CREDIT,1",
+                "R1,2023-02-02,CREDIT,2",
+                "R1,2023-02-03,CREDIT,3",
+                "R1,2023-02-04,CREDIT,4",
+                "R1,2023-02-05,CREDIT,5");
+        statementImporter.importCustomers("resumed", customers);
+        statementImporter.importAccounts("resumed", accounts);
+        statementImporter.importOperations("resumed", operations);
+
+        //when: the same file again, then with two more lines
+        ImportReport unchanged = statementImporter.importOperations("resumed", operations);
+        Files.write(operations, List.of("R1,2023-02-06,CREDIT,6", "R1,2023-02-07,DEBIT,1"), StandardOpenOption.APPEND);
+        ImportReport appended = statementImporter.importOperations("resumed", operations);
+
+        //then
+        Assertions.assertEquals(5, unchanged.getResumedAfterLine());
+        Assertions.assertEquals(0, unchanged.getLines());
+        Assertions.assertEquals(5, appended.getResumedAfterLine());
+        Assertions.assertEquals(2, appended.getImported());
+        String r1 = accountId("R1");
+        Assertions.assertEquals(0, new BigDecimal("20").compareTo(((CurrentBankAccountDTO) bankAccountService.getBankAccount(r1)).getBalance()));
+        Assertions.assertEquals(7, bankAccountService.accountHistory(r1).size());
+        ImportCheckpoint checkpoint = importCheckpointRepository.findById("operations:resumed").orElseThrow();
+        Assertions.assertEquals(7, checkpoint.getLastLine());
+        Assertions.assertEquals(7, checkpoint.getImported());
+        Assertions.assertEquals(0, checkpoint.getRejected());
+    }
+
+    @Test
+    void filesOfAnotherImportStartOver() throws Exception {
+        //given: an import of operations.csv, then another migration with a file of the same name
+        write("other-customers.csv", "ref,name,email", "O1,Other,");
+        write("other-accounts.csv", "ref,customerRef,type,balance", "O1,O1,CURRENT,0");
+        statementImporter.importCustomers("first", directory.resolve("other-customers.csv"));
+        statementImporter.importAccounts("first", directory.resolve("other-accounts.csv"));
+        Path first = Files.createDirectories(directory.resolve("first")).resolve("operations.csv");
+        Files.write(first, List.of("accountRef,date,type,amount", "O1,2023-03-01,CREDIT,1", "O1,2023-03-02,CREDIT,2"));
+        statementImporter.importOperations("first", first);
+        Path second = Files.createDirectories(directory.resolve("second")).resolve("operations.csv");
+        Files.write(second, List.of("accountRef,date,type,amount", "O1,2023-04-01,CREDIT,10", "O1,2023-04-02,CREDIT,20", "O1,2023-04-03,CREDIT,30"));
+
+        //when
+        ImportReport report = statementImporter.importOperations("second", second);
+
+        //then
+        Assertions.assertEquals(0, report.getResumedAfterLine());
+        Assertions.assertEquals(3, report.getImported());
+        Assertions.assertEquals(2, importCheckpointRepository.findById("operations:first").orElseThrow().getLastLine());
+        Assertions.assertEquals(3, importCheckpointRepository.findById("operations:second").orElseThrow().getLastLine());
+    }
+
+    @Test
+    void operationsAreRefusedInLedgerMode() throws Exception {
+        //given
+        Path operations = write("ledger-operations.csv", "accountRef,date,type,amount", "A1,2023-01-01,CREDIT,1");
+        ReflectionTestUtils.setField(statementImporter, "balanceUpdateMode", BalanceUpdateMode.LEDGER);
+
+        //when
+        try {
+            Assertions.assertThrows(IllegalStateException.class, () -> statementImporter.importOperations("ledger", operations));
+        } finally {
+            ReflectionTestUtils.setField(statementImporter, "balanceUpdateMode", BalanceUpdateMode.CONDITIONAL);
+        }
+
+        //then
+        Assertions.assertFalse(importCheckpointRepository.existsById("operations:ledger"));
+    }
+
+    private String accountId(String ref) {
+        return bankAccountRepository.findByExternalRefs(List.of(ref)).get(0).getAccountId().toString();
+    }
+
+    private Path write(String name, String... lines) throws Exception {
+        Path file = directory.resolve(name);
+        Files.write(file, List.of(lines));
+        return file;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.ebankbackend.ledger;
+
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.LedgerCheckpointRepository;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.TestAccounts;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "ebank.balance.update-mode=ledger",
+        "ebank.ledger.shards=4"})
+@ActiveProfiles("test")
+@DirtiesContext
+class LedgerEngineTest {
+
+    private static final int RECOVERY_SHARD = 99;
+    private static final int REPLAY_SHARD = 98;
+    private static final int EVICTION_SHARD = 97;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    @Autowired
+    private LedgerPersister ledgerPersister;
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+    @Autowired
+    private AccountOperationRepository accountOperationRepository;
+    @Autowired
+    private LedgerCheckpointRepository ledgerCheckpointRepository;
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        Path journalDir = Files.createTempDirectory("ledger");
+        registry.add("ebank.ledger.journal-dir", journalDir::toString);
+    }
+
+    @Test
+    void operationsAreAnsweredFromMemoryAndWrittenBehind() throws Exception {
+        //given
+        UUID source = TestAccounts.newAccountId(bankAccountService, 100);
+        UUID destination = TestAccounts.newAccountId(bankAccountService, 0);
+
+        //when
+        bankAccountService.debit(source.toString(), new BigDecimal("30"), "Debit");
+        bankAccountService.credit(source.toString(), new BigDecimal("5.50"), "Credit");
+        bankAccountService.transfer(source.toString(), destination.toString(), new BigDecimal("10"));
+
+        //then
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> bankAccountService.debit(destination.toString(), new BigDecimal("10.01"), "Too much"));
+        awaitTrue(() -> balance(source) == 65_50 && balance(destination) == 10_00);
+        awaitTrue(() -> accountOperationRepository.findByBankAccount_Id(source).size() == 3);
+        List<AccountOperation> history = accountOperationRepository.findByBankAccount_Id(destination);
+        Assertions.assertEquals(1, history.size());
+        Assertions.assertEquals(10_00, history.get(0).getBalanceAfter());
+        Assertions.assertEquals("Transfer from" + source, history.get(0).getDescription());
+    }
+
+    @Test
+    void concurrentTransfersAcrossShardsKeepTheTotal() throws Exception {
+        //given
+        List<UUID> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) accounts.add(TestAccounts.newAccountId(bankAccountService, 1000));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 200; i++) {
+                    UUID from = accounts.get(random.nextInt(accounts.size()));
+                    UUID to = accounts.get(random.nextInt(accounts.size()));
+                    try {
+                        ledgerEngine.transfer(from, to, random.nextLong(1, 100_00));
+                    } catch (BalanceNotSufficientException ignored) {
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        //then
+        awaitTrue(() -> accounts.stream().mapToLong(this::balance).sum() == 8 * 1000_00);
+        for (UUID account : accounts) {
+            long inMemory = ledgerEngine.credit(account, 0, "Probe");
+            Assertions.assertTrue(inMemory >= 0);
+            awaitTrue(() -> balance(account) == inMemory);
+        }
+    }
+
+    @Test
+    void recoveryWritesTheJournalEntriesTheDatabaseMisses() throws Exception {
+        //given: a shard that journaled three entries, persisted the first one and crashed in the middle of a fourth
+        UUID account = TestAccounts.newAccountId(bankAccountService, 100);
+        Path file = Files.createTempFile("shard-" + RECOVERY_SHARD, ".journal");
+        LedgerEntry first = entry(1, LedgerEntry.Kind.DEBIT, account, 10_00, 90_00);
+        try (FileChannelJournal journal = new FileChannelJournal(file)) {
+            journal.append(first);
+            journal.append(entry(2, LedgerEntry.Kind.CREDIT, account, 5_00, 95_00));
+            journal.append(entry(3, LedgerEntry.Kind.DEBIT, account, 20_00, 75_00));
+        }
+        ledgerPersister.persist(RECOVERY_SHARD, List.of(first));
+        tearTheTail(file);
+
+        //when
+        LedgerShard shard = new LedgerShard(RECOVERY_SHARD, new FileChannelJournal(file), ledgerPersister, 16, 16, 16, 16, 16);
+        shard.recover();
+
+        //then
+        Assertions.assertEquals(75_00, balance(account));
+        Assertions.assertEquals(3, accountOperationRepository.findByBankAccount_Id(account).size());
+        Assertions.assertEquals(3, ledgerCheckpointRepository.findById(RECOVERY_SHARD).orElseThrow().getSequence());
+        Assertions.assertEquals(0, Files.size(file));
+
+        //and recovering again changes nothing
+        new LedgerShard(RECOVERY_SHARD, new FileChannelJournal(file), ledgerPersister, 16, 16, 16, 16, 16).recover();
+        Assertions.assertEquals(75_00, balance(account));
+    }
+
+    @Test
+    void shardKeepsAtMostMaxAccountsOnceTheyArePersisted() throws Exception {
+        //given: a shard holding a single account
+        List<UUID> accounts = List.of(TestAccounts.newAccountId(bankAccountService, 100), TestAccounts.newAccountId(bankAccountService, 100), TestAccounts.newAccountId(bankAccountService, 100));
+        LedgerShard shard = new LedgerShard(EVICTION_SHARD, new FileChannelJournal(Files.createTempFile("shard-" + EVICTION_SHARD, ".journal")),
+                ledgerPersister, 16, 16, 16, 16, 1);
+        shard.recover();
+        shard.start();
+
+        //when: every account debited, written behind, then the first one dropped from memory is debited again
+        try {
+            for (UUID account : accounts) {
+                Assertions.assertEquals(90_00, debit(shard, account, 10_00));
+            }
+            awaitTrue(() -> accounts.stream().allMatch(account -> balance(account) == 90_00));
+            Assertions.assertEquals(80_00, debit(shard, accounts.get(0), 10_00));
+        } finally {
+            shard.stop();
+        }
+
+        //then
+        Assertions.assertEquals(1, shard.loadedAccounts());
+        Assertions.assertEquals(80_00, balance(accounts.get(0)));
+    }
+
+    @Test
+    void replayRebuildsOperationsAndBalancesFromArchivedSegments() throws Exception {
+        //given: a restored database that misses what a shard journaled and archived after its checkpoint
+        UUID account = TestAccounts.newAccountId(bankAccountService, 100);
+        Path journalDir = Files.createTempDirectory("replay");
+        try (MappedSegmentJournal journal = new MappedSegmentJournal(journalDir.resolve("shard-" + REPLAY_SHARD),
+                2 * LedgerEntryCodec.MAX_RECORD_SIZE, true)) {
+            long balance = 100_00;
+            for (long sequence = 1; sequence <= 50; sequence++) {
+                balance -= 1_00;
+                journal.append(entry(sequence, LedgerEntry.Kind.DEBIT, account, 1_00, balance));
+            }
+            journal.force();
+            journal.truncate(50);
+        }
+        LedgerReplay replay = new LedgerReplay(ledgerPersister, 20);
+
+        //when
+        int dryRun = replay.replay(journalDir, true);
+        int replayed = replay.replay(journalDir, false);
+
+        //then
+        Assertions.assertEquals(50, dryRun);
+        Assertions.assertEquals(50, replayed);
+        Assertions.assertEquals(50_00, balance(account));
+        Assertions.assertEquals(50, accountOperationRepository.findByBankAccount_Id(account).size());
+        Assertions.assertEquals(50, ledgerCheckpointRepository.findById(REPLAY_SHARD).orElseThrow().getSequence());
+        Assertions.assertEquals(0, replay.replay(journalDir, false));
+    }
+
+    private static long debit(LedgerShard shard, UUID account, long amount) throws Exception {
+        LedgerCommand command = new LedgerCommand(LedgerEntry.Kind.DEBIT, account, null, amount, "Debit");
+        shard.enqueue(command);
+        return LedgerEngine.await(command.result).getBalanceAfter();
+    }
+
+    private long balance(UUID accountId) {
+        return bankAccountRepository.findViewById(accountId).orElseThrow().getBalance();
+    }
+
+    private static LedgerEntry entry(long sequence, LedgerEntry.Kind kind, UUID account, long amount, long balanceAfter) {
+        return new LedgerEntry(sequence, kind, System.currentTimeMillis(), account, amount, balanceAfter, null, 0, kind.name(), null);
+    }
+
+    //the header of a record whose payload never made it to the disk
+    private static void tearTheTail(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(12).putInt(0, 90).putInt(4, 12345));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) Assertions.fail("Not written behind within 10s");
+            Thread.sleep(20);
+        }
+    }
+}
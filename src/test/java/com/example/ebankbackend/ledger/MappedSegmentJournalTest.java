@@ -0,0 +1,124 @@
+package com.example.ebankbackend.ledger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class MappedSegmentJournalTest {
+
+    private static final int SEGMENT_SIZE = 2 * LedgerEntryCodec.MAX_RECORD_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void entriesRollOverSegmentsAndReplayAfterReopening() throws IOException {
+        //given
+        UUID account = UUID.randomUUID();
+        try (MappedSegmentJournal journal = new MappedSegmentJournal(directory, SEGMENT_SIZE, false)) {
+            for (long sequence = 1; sequence <= 200; sequence++) {
+                journal.append(entry(sequence, account, "key-" + sequence));
+                if (sequence % 10 == 0) journal.force();
+            }
+        }
+
+        //when
+        List<LedgerEntry> replayed = new ArrayList<>();
+        long last;
+        try (MappedSegmentJournal journal = new MappedSegmentJournal(directory, SEGMENT_SIZE, false)) {
+            last = journal.replay(150, replayed::add);
+        }
+
+        //then
+        Assertions.assertTrue(segments(directory).size() > 1);
+        Assertions.assertEquals(200, last);
+        Assertions.assertEquals(50, replayed.size());
+        Assertions.assertEquals(151, replayed.get(0).getSequence());
+        Assertions.assertEquals("key-151", replayed.get(0).getIdempotencyKey());
+        Assertions.assertEquals(account, replayed.get(0).getAccountId());
+    }
+
+    @Test
+    void aTornRecordEndsTheJournalAndIsWrittenOver() throws IOException {
+        //given: the header of a record whose payload never made it to the disk
+        UUID account = UUID.randomUUID();
+        try (MappedSegmentJournal journal = new MappedSegmentJournal(directory, SEGMENT_SIZE, false)) {
+            journal.append(entry(1, account, null));
+            journal.force();
+        }
+        Path segment = segments(directory).get(0);
+        long end = recordsEnd(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(0, 90).putInt(4, 12345), end);
+        }
+
+        //when
+        try (MappedSegmentJournal journal = new MappedSegmentJournal(directory, SEGMENT_SIZE, false)) {
+            Assertions.assertEquals(1, journal.replay(0, e -> { }));
+            journal.append(entry(2, account, null));
+            journal.force();
+        }
+
+        //then
+        List<LedgerEntry> read = new ArrayList<>();
+        Assertions.assertEquals(2, MappedSegmentJournal.read(directory, 0, read::add));
+        Assertions.assertEquals(2, read.size());
+        Assertions.assertNull(read.get(1).getIdempotencyKey());
+    }
+
+    @Test
+    void persistedSegmentsAreArchivedAndStillRead() throws IOException {
+        //given
+        UUID account = UUID.randomUUID();
+        MappedSegmentJournal journal = new MappedSegmentJournal(directory, SEGMENT_SIZE, true);
+        for (long sequence = 1; sequence <= 200; sequence++) {
+            journal.append(entry(sequence, account, null));
+        }
+        journal.force();
+        int segments = segments(directory).size();
+
+        //when
+        journal.truncate(200);
+        journal.close();
+
+        //then: only the active segment is left, and the archive still has every entry
+        Assertions.assertEquals(1, segments(directory).size());
+        Assertions.assertEquals(segments - 1, segments(directory.resolve(MappedSegmentJournal.ARCHIVE)).size());
+        List<LedgerEntry> read = new ArrayList<>();
+        MappedSegmentJournal.read(directory, 0, read::add);
+        Assertions.assertEquals(200, read.size());
+        Assertions.assertEquals(200, read.get(199).getSequence());
+    }
+
+    private static LedgerEntry entry(long sequence, UUID account, String idempotencyKey) {
+        return new LedgerEntry(sequence, LedgerEntry.Kind.CREDIT, System.currentTimeMillis(), account, 1_00, sequence * 1_00,
+                null, 0, "Credit", idempotencyKey);
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long recordsEnd(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (LedgerEntryCodec.decode(buffer) != null) {
+            }
+            return buffer.position();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.ebankbackend.mappers;
+
+import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.dtos.CurrentBankAccountDTO;
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.dtos.SavingBankAccountDTO;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.entities.SavingAccount;
+import com.example.ebankbackend.enums.AccountStatus;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.repositories.BankAccountView;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+class BankAccountMapperImplTest {
+
+    private final BankAccountMapperImpl dtoMapper = new BankAccountMapperImpl();
+
+    @Test
+    void fromCurrentBankAccountCopiesEveryField() {
+        //given
+        CurrentAccount currentAccount = currentAccount(customer(1L));
+
+        //when
+        CurrentBankAccountDTO currentBankAccountDTO = dtoMapper.fromCurrentBankAccount(currentAccount);
+
+        //then
+        Assertions.assertEquals(currentAccount.getId().toString(), currentBankAccountDTO.getId());
+        Assertions.assertEquals(new BigDecimal("1500.00"), currentBankAccountDTO.getBalance());
+        Assertions.assertEquals(currentAccount.getCreationDat(), currentBankAccountDTO.getCreationDat());
+        Assertions.assertEquals(AccountStatus.ACTIVATED, currentBankAccountDTO.getStatus());
+        Assertions.assertEquals(new BigDecimal("900.00"), currentBankAccountDTO.getOverDraft());
+        Assertions.assertEquals("CurrentAccount", currentBankAccountDTO.getType());
+        Assertions.assertEquals(new CustomerDTO(1L, "Customer1", "Customer1@gmail.com"), currentBankAccountDTO.getCustomerDTO());
+        Assertions.assertEquals(currentAccount.getId(), dtoMapper.fromCurrentBankAccountDTO(currentBankAccountDTO).getId());
+        Assertions.assertEquals(900_00, dtoMapper.fromCurrentBankAccountDTO(currentBankAccountDTO).getOverDraft());
+    }
+
+    @Test
+    void fromAccountOperationCopiesEveryField() {
+        //given
+        AccountOperation accountOperation = new AccountOperation(7L, new Date(), 250_00, 750_00, OperationType.DEBIT, null, "debit");
+
+        //when
+        AccountOperationDTO accountOperationDTO = dtoMapper.fromAccountOperation(accountOperation);
+
+        //then
+        Assertions.assertEquals(7L, accountOperationDTO.getId());
+        Assertions.assertEquals(accountOperation.getOperationDate(), accountOperationDTO.getOperationDate());
+        Assertions.assertEquals(new BigDecimal("250.00"), accountOperationDTO.getAmount());
+        Assertions.assertEquals(new BigDecimal("750.00"), accountOperationDTO.getBalanceAfter());
+        Assertions.assertEquals(OperationType.DEBIT, accountOperationDTO.getType());
+        Assertions.assertEquals("debit", accountOperationDTO.getDescription());
+    }
+
+    @Test
+    void fromBankAccountsSharesCustomerDtos() {
+        //given
+        Customer customer = customer(1L);
+        SavingAccount savingAccount = new SavingAccount(3.5);
+        savingAccount.setId(UUID.randomUUID());
+        savingAccount.setCustomer(customer);
+        List<BankAccount> bankAccounts = List.of(currentAccount(customer), savingAccount, currentAccount(customer(2L)));
+
+        //when
+        List<BankAccountDTO> bankAccountDTOS = dtoMapper.fromBankAccounts(bankAccounts);
+
+        //then
+        CurrentBankAccountDTO first = (CurrentBankAccountDTO) bankAccountDTOS.get(0);
+        SavingBankAccountDTO second = (SavingBankAccountDTO) bankAccountDTOS.get(1);
+        CurrentBankAccountDTO third = (CurrentBankAccountDTO) bankAccountDTOS.get(2);
+        Assertions.assertSame(first.getCustomerDTO(), second.getCustomerDTO());
+        Assertions.assertEquals(2L, third.getCustomerDTO().getId());
+        Assertions.assertEquals(3.5, second.getInterestRate());
+        Assertions.assertEquals("SavingAccount", second.getType());
+    }
+
+    @Test
+    void fromBankAccountViewWithoutCustomerHasNoCustomerDto() {
+        //given
+        BankAccountView bankAccountView = new BankAccountView(UUID.randomUUID(), 1500_00, new Date(), AccountStatus.CREATED,
+                CurrentAccount.class, 900_00L, null, null, null, null);
+
+        //when
+        BankAccountDTO bankAccountDTO = dtoMapper.fromBankAccountView(bankAccountView);
+
+        //then
+        Assertions.assertNull(((CurrentBankAccountDTO) bankAccountDTO).getCustomerDTO());
+        Assertions.assertEquals(new BigDecimal("1500.00"), ((CurrentBankAccountDTO) bankAccountDTO).getBalance());
+    }
+
+    private static Customer customer(Long id) {
+        Customer customer = new Customer();
+        customer.setId(id);
+        customer.setName("Customer" + id);
+        customer.setEmail("Customer" + id + "@gmail.com");
+        return customer;
+    }
+
+    private static CurrentAccount currentAccount(Customer customer) {
+        CurrentAccount currentAccount = new CurrentAccount(900_00);
+        currentAccount.setId(UUID.randomUUID());
+        currentAccount.setBalance(1500_00);
+        currentAccount.setCreationDat(new Date());
+        currentAccount.setStatus(AccountStatus.ACTIVATED);
+        currentAccount.setCustomer(customer);
+        return currentAccount;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.ebankbackend.metrics;
+
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.services.BankAccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.math.BigDecimal;
+
+class ServiceMetricsAspectTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BankAccountService target = Mockito.mock(BankAccountService.class);
+    private BankAccountService bankAccountService;
+
+    @BeforeEach
+    void setUp() {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addInterface(BankAccountService.class);
+        factory.addAspect(new ServiceMetricsAspect(meterRegistry));
+        bankAccountService = factory.getProxy();
+    }
+
+    @Test
+    void callsAreTimedByOperationAndOutcome() throws Exception {
+        //given
+        Mockito.doThrow(new BalanceNotSufficientException("Balance not sufficient"))
+                .when(target).debit("a", BigDecimal.valueOf(100), "rent");
+
+        //when
+        bankAccountService.debit("a", BigDecimal.TEN, "rent");
+        bankAccountService.debit("a", BigDecimal.TEN, "rent");
+        Assertions.assertThrows(BalanceNotSufficientException.class, () -> bankAccountService.debit("a", BigDecimal.valueOf(100), "rent"));
+        bankAccountService.credit("a", BigDecimal.TEN, "salary");
+
+        //then
+        Assertions.assertEquals(2, timerCount("debit", ServiceMetricsAspect.SUCCESS));
+        Assertions.assertEquals(1, timerCount("debit", "BalanceNotSufficientException"));
+        Assertions.assertEquals(1, timerCount("credit", ServiceMetricsAspect.SUCCESS));
+    }
+
+    private long timerCount(String operation, String outcome) {
+        return meterRegistry.get(ServiceMetricsAspect.METER_NAME)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .timer().count();
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.ebankbackend.outbox;
+
+import com.example.ebankbackend.dtos.ChangeEventDTO;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.TestAccounts;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//the relay is run by the tests, its schedule is too slow to interfere
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "ebank.outbox.sink=queue",
+        "ebank.outbox.relay-interval=PT1H",
+        "ebank.outbox.batch-size=3"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext
+class OutboxRelayTest {
+
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private QueueOutboxSink queueOutboxSink;
+    @Autowired
+    private ChangeFeed changeFeed;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void committedOperationsAreRelayedInBatchesWithDenseOffsets() throws Exception {
+        //given
+        outboxRelay.relay();
+        long start = lastOffset();
+        String source = TestAccounts.newAccount(bankAccountService, 100);
+        String destination = TestAccounts.newAccount(bankAccountService, 0);
+
+        //when: a debit, a credit, a transfer (two operations) and a debit that is rolled back
+        bankAccountService.debit(source, BigDecimal.TEN, "debit");
+        bankAccountService.credit(source, BigDecimal.ONE, "credit");
+        bankAccountService.transfer(source, destination, BigDecimal.ONE);
+        Assertions.assertThrows(BalanceNotSufficientException.class, () -> bankAccountService.debit(source, BigDecimal.valueOf(1000), "debit"));
+        outboxRelay.relay();
+
+        //then
+        List<ChangeEventDTO> events = changeFeed.read(start, null, 100);
+        Assertions.assertEquals(List.of(start + 1, start + 2, start + 3, start + 4),
+                events.stream().map(ChangeEventDTO::getOffset).collect(Collectors.toList()));
+        Assertions.assertEquals(OperationOutbox.OPERATION_RECORDED, events.get(0).getType());
+        Assertions.assertTrue(events.get(0).getPayload().contains("\"description\":\"debit\""));
+        Assertions.assertEquals(destination, events.get(3).getAccountId());
+        Assertions.assertEquals(3, changeFeed.read(start, source, 100).size());
+
+        List<ChangeEventDTO> published = queueOutboxSink.poll(100, 1, TimeUnit.SECONDS);
+        Assertions.assertEquals(events.stream().map(ChangeEventDTO::getEventId).collect(Collectors.toList()),
+                published.stream().map(ChangeEventDTO::getEventId).skip(published.size() - 4L).collect(Collectors.toList()));
+    }
+
+    @Test
+    void longPollAnswersOnceTheNextEventIsRelayed() throws Exception {
+        //given
+        String account = TestAccounts.newAccount(bankAccountService, 100);
+        outboxRelay.relay();
+        long after = lastOffset();
+        MvcResult result = mockMvc.perform(get("/events").param("after", Long.toString(after)).param("accountId", account)
+                        .param("waitMillis", "10000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        bankAccountService.credit(account, BigDecimal.ONE, "credit");
+        outboxRelay.relay();
+
+        //then
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertTrue(body.contains("\"offset\":" + (after + 1)));
+        Assertions.assertTrue(body.contains("\"payload\":{"));
+    }
+
+    @Test
+    void offsetsGoOnAfterEverythingPublishedIsSwept() throws Exception {
+        //given
+        String account = TestAccounts.newAccount(bankAccountService, 100);
+        bankAccountService.credit(account, BigDecimal.ONE, "credit");
+        outboxRelay.relay();
+        long last = lastOffset();
+
+        //when: every published event is past the retention
+        ReflectionTestUtils.setField(outboxRelay, "retention", Duration.ZERO);
+        try {
+            Thread.sleep(5);
+            outboxRelay.sweepPublished();
+        } finally {
+            ReflectionTestUtils.setField(outboxRelay, "retention", Duration.ofDays(7));
+        }
+        bankAccountService.credit(account, BigDecimal.ONE, "credit");
+        outboxRelay.relay();
+
+        //then
+        Assertions.assertEquals(List.of(last, last + 1),
+                changeFeed.read(0, null, 100).stream().map(ChangeEventDTO::getOffset).collect(Collectors.toList()));
+    }
+
+    @Test
+    void subscriptionsShareOneReadOfTheNewEvents() throws Exception {
+        //given: ten subscriptions of one account each, caught up
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            accounts.add(TestAccounts.newAccount(bankAccountService, 100));
+        }
+        bankAccountService.credit(accounts.get(0), BigDecimal.ONE, "credit");
+        outboxRelay.relay();
+        long after = lastOffset();
+        Map<String, List<ChangeEventDTO>> received = new ConcurrentHashMap<>();
+        List<Runnable> unsubscribes = new ArrayList<>();
+        for (String account : accounts) {
+            unsubscribes.add(changeFeed.subscribe(after, account, events -> received.computeIfAbsent(account, key -> new CopyOnWriteArrayList<>()).addAll(events)));
+        }
+        //catch-ups run in subscription order: the last one answered, all are done
+        CountDownLatch caughtUp = new CountDownLatch(1);
+        unsubscribes.add(changeFeed.subscribe(after - 1, null, events -> caughtUp.countDown()));
+        Assertions.assertTrue(caughtUp.await(10, TimeUnit.SECONDS));
+        for (String account : accounts) {
+            bankAccountService.credit(account, BigDecimal.ONE, "credit");
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //when
+        try {
+            outboxRelay.relay();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (received.size() < accounts.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            unsubscribes.forEach(Runnable::run);
+        }
+
+        //then
+        for (String account : accounts) {
+            Assertions.assertEquals(List.of(account), received.get(account).stream().map(ChangeEventDTO::getAccountId).collect(Collectors.toList()));
+        }
+        //reads of the feed, with or without an account
+        Assertions.assertEquals(1, Arrays.stream(statistics.getQueries())
+                .filter(query -> query.contains(".feedOffset>"))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum());
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    void nothingIsRelayedOrNotifiedOnceStopped() throws Exception {
+        //given: stopped in the order the context stops them
+        String account = TestAccounts.newAccount(bankAccountService, 100);
+        outboxRelay.relay();
+        long last = lastOffset();
+        outboxRelay.destroy();
+        changeFeed.destroy();
+
+        //when
+        bankAccountService.credit(account, BigDecimal.ONE, "credit");
+        outboxRelay.relay();
+        outboxRelay.sweepPublished();
+        changeFeed.advancedTo(last + 1);
+
+        //then: the event waits for the next start
+        Assertions.assertTrue(changeFeed.read(last, null, 100).isEmpty());
+    }
+
+    private long lastOffset() {
+        List<ChangeEventDTO> events = changeFeed.read(0, null, Integer.MAX_VALUE);
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getOffset();
+    }
+}
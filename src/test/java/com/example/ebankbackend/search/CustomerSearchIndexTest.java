@@ -0,0 +1,88 @@
+package com.example.ebankbackend.search;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.repositories.CustomerRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerSearchIndexTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+    @InjectMocks
+    private CustomerSearchIndex customerSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        //given
+        Mockito.when(customerRepository.findSearchEntriesAfter(anyLong(), any())).thenReturn(List.of(
+                new CustomerDTO(1L, "Hassan Ali", "hassan@gmail.com"),
+                new CustomerDTO(2L, "Ali Mansouri", "ali.mansouri@yahoo.fr"),
+                new CustomerDTO(3L, "Alice", "contact@alice.org"),
+                new CustomerDTO(4L, "Mohamed", "m.khalil@gmail.com"),
+                new CustomerDTO(5L, "Banana Bank", "hello@banana.com")));
+    }
+
+    @Test
+    void searchRanksPrefixMatchesFirst() {
+        //when
+        List<Long> customerIds = customerSearchIndex.search("ali", 10);
+
+        //then name prefix (shortest first), then word prefix, then email-only match
+        Assertions.assertEquals(List.of(3L, 2L, 1L, 4L), customerIds);
+    }
+
+    @Test
+    void searchChecksTheWholeKeywordNotOnlyItsTrigrams() {
+        //"nan" and "ana" both occur in "banana" but "nanana" does not
+        Assertions.assertEquals(List.of(), customerSearchIndex.search("nanana", 10));
+        Assertions.assertEquals(List.of(1L), customerSearchIndex.search("SAN ALI", 10));
+    }
+
+    @Test
+    void searchRespectsTheLimitAndShortKeywords() {
+        Assertions.assertEquals(List.of(3L, 2L), customerSearchIndex.search("ali", 2));
+        Assertions.assertEquals(List.of(), customerSearchIndex.search("al", 10));
+    }
+
+    @Test
+    void changesAreVisibleOnlyAfterCommit() {
+        //given
+        customerSearchIndex.search("ali", 10);
+        Customer renamed = new Customer();
+        renamed.setId(4L);
+        renamed.setName("Mohamed Alaoui");
+        renamed.setEmail("m.alaoui@gmail.com");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            //when
+            customerSearchIndex.indexAfterCommit(renamed);
+            customerSearchIndex.removeAfterCommit(2L);
+            Assertions.assertEquals(List.of(3L, 2L, 1L, 4L), customerSearchIndex.search("ali", 10));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        Assertions.assertEquals(List.of(3L, 1L), customerSearchIndex.search("ali", 10));
+        Assertions.assertEquals(List.of(), customerSearchIndex.search("khalil", 10));
+        Assertions.assertEquals(List.of(4L), customerSearchIndex.search("alaoui", 10));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.ebankbackend.services;
+
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.repositories.AccountOperationRepository;
+import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.support.TestAccounts;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hammers hot accounts from 64 writers and checks that every committed
+ * operation is reflected in the balances exactly once.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BalanceContentionStressTest {
+
+    private static final int WRITERS = 64;
+    private static final int OPERATIONS_PER_WRITER = 10;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+    @Autowired
+    private AccountOperationRepository accountOperationRepository;
+
+    @Test
+    void oppositeTransfersDoNotDeadlock() throws Exception {
+        String accountA = TestAccounts.newAccount(bankAccountService, 1_000_000);
+        String accountB = TestAccounts.newAccount(bankAccountService, 1_000_000);
+        AtomicInteger sequence = new AtomicInteger();
+
+        runConcurrently(() -> {
+            if (sequence.incrementAndGet() % 2 == 0) {
+                bankAccountService.transfer(accountA, accountB, BigDecimal.TEN);
+            } else {
+                bankAccountService.transfer(accountB, accountA, BigDecimal.valueOf(7));
+            }
+            return null;
+        }, OPERATIONS_PER_WRITER);
+
+        int transfers = WRITERS * OPERATIONS_PER_WRITER;
+        //balances are in cents
+        long balanceA = bankAccountRepository.findById(UUID.fromString(accountA)).orElseThrow().getBalance();
+        long balanceB = bankAccountRepository.findById(UUID.fromString(accountB)).orElseThrow().getBalance();
+        Assertions.assertEquals(2_000_000 * 100L, balanceA + balanceB);
+        Assertions.assertEquals((1_000_000 - (transfers / 2) * 10 + (transfers / 2) * 7) * 100L, balanceA);
+        Assertions.assertEquals(transfers, accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountA)).size());
+        Assertions.assertEquals(transfers, accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountB)).size());
+    }
+
+    @Nested
+    @TestPropertySource(properties = "ebank.balance.update-mode=conditional")
+    class Conditional {
+
+        @Test
+        void noLostUpdates() throws Exception {
+            assertNoLostUpdates();
+        }
+
+        @Test
+        void noOverdraw() throws Exception {
+            String accountId = TestAccounts.newAccount(bankAccountService, 100);
+            AtomicInteger accepted = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            runConcurrently(() -> {
+                try {
+                    bankAccountService.debit(accountId, BigDecimal.TEN, "debit");
+                    accepted.incrementAndGet();
+                } catch (BalanceNotSufficientException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }, 1);
+
+            Assertions.assertEquals(10, accepted.get());
+            Assertions.assertEquals(WRITERS - 10, rejected.get());
+            Assertions.assertEquals(0, bankAccountRepository.findById(UUID.fromString(accountId)).orElseThrow().getBalance());
+            Assertions.assertEquals(10, accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountId)).size());
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = {"ebank.balance.update-mode=optimistic", "ebank.balance.max-attempts=50"})
+    class Optimistic {
+
+        @Test
+        void noLostUpdates() throws Exception {
+            assertNoLostUpdates();
+        }
+    }
+
+    private void assertNoLostUpdates() throws Exception {
+        long initialBalance = 1_000_000;
+        String accountId = TestAccounts.newAccount(bankAccountService, initialBalance);
+        AtomicInteger credits = new AtomicInteger();
+        AtomicInteger debits = new AtomicInteger();
+        AtomicInteger retriesExhausted = new AtomicInteger();
+
+        AtomicInteger sequence = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                if (sequence.incrementAndGet() % 2 == 0) {
+                    bankAccountService.credit(accountId, BigDecimal.TEN, "credit");
+                    credits.incrementAndGet();
+                } else {
+                    bankAccountService.debit(accountId, BigDecimal.valueOf(5), "debit");
+                    debits.incrementAndGet();
+                }
+            } catch (ObjectOptimisticLockingFailureException e) {
+                retriesExhausted.incrementAndGet();
+            }
+            return null;
+        }, OPERATIONS_PER_WRITER);
+
+        long expectedBalance = (initialBalance + credits.get() * 10 - debits.get() * 5) * 100L;
+        Assertions.assertEquals(WRITERS * OPERATIONS_PER_WRITER, credits.get() + debits.get() + retriesExhausted.get());
+        Assertions.assertEquals(expectedBalance, bankAccountRepository.findById(UUID.fromString(accountId)).orElseThrow().getBalance());
+        Assertions.assertEquals(credits.get() + debits.get(), accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountId)).size());
+    }
+
+    private void runConcurrently(Callable<Void> operation, int operationsPerWriter) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < operationsPerWriter; j++) {
+                        operation.call();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.example.ebankbackend.services;
+
+import com.example.ebankbackend.cache.AccountSnapshotCache;
+import com.example.ebankbackend.dtos.AccountHistoryCursorDTO;
+import com.example.ebankbackend.dtos.AccountStatementDTO;
+import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.dtos.BankAccountDTO;
+import com.example.ebankbackend.dtos.BankAccountFilterDTO;
+import com.example.ebankbackend.dtos.BankAccountPageDTO;
+import com.example.ebankbackend.dtos.BatchOperationDTO;
+import com.example.ebankbackend.dtos.BatchOperationResultDTO;
+import com.example.ebankbackend.dtos.CustomerPageDTO;
+import com.example.ebankbackend.dtos.SavingBankAccountDTO;
+import com.example.ebankbackend.entities.AccountBalanceSnapshot;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.entities.Customer;
+import com.example.ebankbackend.entities.OutboxEvent;
+import com.example.ebankbackend.entities.SavingAccount;
+import com.example.ebankbackend.enums.AccountStatus;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.enums.BatchOperationStatus;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.exceptions.InvalidPageException;
+import com.example.ebankbackend.generators.TimeOrderedAccountIdGenerator;
+import com.example.ebankbackend.mappers.BankAccountMapperImpl;
+import com.example.ebankbackend.outbox.OperationOutbox;
+import com.example.ebankbackend.search.CustomerSearchIndex;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SessionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+//the id pool covers the whole fixture so no sequence call lands inside the measured debit
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.ebank.id.allocation-size=1000000"})
+//@DataJpaTest switches caching off by default, the snapshot cache is part of what is measured
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@ActiveProfiles("test")
+@Import({BankAccountServiceImpl.class, BankAccountMapperImpl.class, TimeOrderedAccountIdGenerator.class,
+        CustomerSearchIndex.class, AccountSnapshotCache.class, OperationOutbox.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class BankAccountServiceImplQueryCountTest {
+
+    private static final int HISTORY_DEPTH = 500;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private String accountId;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = new Customer();
+        customer.setName("Customer");
+        customer.setEmail("Customer@gmail.com");
+        entityManager.persist(customer);
+
+        CurrentAccount currentAccount = new CurrentAccount();
+        currentAccount.setId(UUID.randomUUID());
+        currentAccount.setCreationDat(new Date());
+        currentAccount.setBalance(1_000_000_00);
+        currentAccount.setOverDraft(900_00);
+        currentAccount.setCustomer(customer);
+        entityManager.persist(currentAccount);
+        accountId = currentAccount.getId().toString();
+
+        for (int i = 0; i < HISTORY_DEPTH; i++) {
+            AccountOperation accountOperation = new AccountOperation();
+            accountOperation.setType(OperationType.CREDIT);
+            accountOperation.setAmount(10_00);
+            accountOperation.setOperationDate(new Date());
+            accountOperation.setBankAccount(currentAccount);
+            entityManager.persist(accountOperation);
+        }
+        //draws the outbox id pool as well
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setType("Fixture");
+        entityManager.persist(outboxEvent);
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void optimisticDebitDoesNotLoadOperationHistory() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        useBalanceUpdateMode(BalanceUpdateMode.OPTIMISTIC);
+        bankAccountService.debit(accountId, BigDecimal.valueOf(100), "debit");
+        entityManager.flush();
+
+        //one select for the account, one insert for the operation and one for its outbox event, one versioned update for the balance
+        Assertions.assertEquals(4, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(1, statistics.getEntityLoadCount());
+        Assertions.assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void conditionalDebitLoadsNoEntity() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        useBalanceUpdateMode(BalanceUpdateMode.CONDITIONAL);
+        bankAccountService.debit(accountId, BigDecimal.valueOf(100), "debit");
+        entityManager.flush();
+
+        //one conditional update for the balance, one scalar select of the new balance, one insert for the operation
+        //and one for its outbox event
+        Assertions.assertEquals(4, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(0, statistics.getEntityLoadCount());
+        Assertions.assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void conditionalDebitAppliesTheOverdraftInTheSameUpdate() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        useBalanceUpdateMode(BalanceUpdateMode.CONDITIONAL);
+        //balance 1 000 000 plus an overdraft of 900
+        bankAccountService.debit(accountId, new BigDecimal("1000900.00"), "debit");
+        entityManager.flush();
+
+        //the same statements as a debit within the balance
+        Assertions.assertEquals(4, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(-900_00, entityManager.find(BankAccount.class, UUID.fromString(accountId)).getBalance());
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> bankAccountService.debit(accountId, new BigDecimal("0.01"), "debit"));
+    }
+
+    @Test
+    void conditionalDebitGivesSavingAccountsNoOverdraft() {
+        useBalanceUpdateMode(BalanceUpdateMode.CONDITIONAL);
+        persistAccounts(2);
+        //the second account is a saving account with a balance of 10
+        String savingAccountId = entityManager.createQuery("select a.id from SavingAccount a", UUID.class)
+                .getSingleResult().toString();
+
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> bankAccountService.debit(savingAccountId, new BigDecimal("10.01"), "debit"));
+        Assertions.assertEquals(10_00, entityManager.find(BankAccount.class, UUID.fromString(savingAccountId)).getBalance());
+    }
+
+    @Test
+    void transferReadsBothBalancesOnce() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        persistAccounts(2);
+        String savingAccountId = entityManager.createQuery("select a.id from SavingAccount a", UUID.class)
+                .getSingleResult().toString();
+        statistics.clear();
+        bankAccountService.transfer(accountId, savingAccountId, BigDecimal.valueOf(100));
+        entityManager.flush();
+
+        //one locking select of both accounts, one versioned update per account type, one insert for the two
+        //operations and one for their outbox events: no read of the balances after the updates
+        Assertions.assertEquals(5, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(2, statistics.getEntityLoadCount());
+        Assertions.assertEquals(1_000_000_00 - 100_00, entityManager.find(BankAccount.class, UUID.fromString(accountId)).getBalance());
+        Assertions.assertEquals(110_00, entityManager.find(BankAccount.class, UUID.fromString(savingAccountId)).getBalance());
+    }
+
+    @Test
+    void getBankAccountUsesProjection() throws BankAccountNotFoundException {
+        bankAccountService.getBankAccount(accountId);
+
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(0, statistics.getEntityLoadCount());
+        Assertions.assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void getBankAccountIsServedFromCacheOnSecondRead() throws BankAccountNotFoundException {
+        BankAccountDTO first = bankAccountService.getBankAccount(accountId);
+        BankAccountDTO second = bankAccountService.getBankAccount(accountId);
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cursorHistoryWalksEveryOperationOnceWithoutCounting() throws BankAccountNotFoundException, InvalidCursorException {
+        Set<Long> seen = new HashSet<>();
+        AccountOperationDTO previous = null;
+        String cursor = null;
+        int pages = 0;
+        do {
+            AccountHistoryCursorDTO page = bankAccountService.getAccountHistory(accountId, cursor, 100, false);
+            for (AccountOperationDTO operation : page.getAccountOperationDTOS()) {
+                Assertions.assertTrue(seen.add(operation.getId()));
+                if (previous != null) {
+                    //the fixture writes many operations in the same millisecond, the id breaks the tie
+                    Assertions.assertTrue(previous.getOperationDate().compareTo(operation.getOperationDate()) > 0
+                            || (previous.getOperationDate().equals(operation.getOperationDate()) && previous.getId() > operation.getId()));
+                }
+                previous = operation;
+            }
+            Assertions.assertNull(page.getTotalElements());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        Assertions.assertEquals(HISTORY_DEPTH, seen.size());
+        Assertions.assertEquals(HISTORY_DEPTH / 100, pages);
+        //one projection and one limited seek per page, never a count
+        Assertions.assertEquals(2L * pages, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamedHistoryKeepsPersistenceContextEmpty() throws BankAccountNotFoundException {
+        SessionStatistics session = entityManager.unwrap(Session.class).getStatistics();
+        AtomicInteger streamed = new AtomicInteger();
+        AtomicInteger maxManagedEntities = new AtomicInteger();
+
+        bankAccountService.streamAccountHistory(accountId, operation -> {
+            streamed.incrementAndGet();
+            maxManagedEntities.accumulateAndGet(session.getEntityCount(), Math::max);
+        });
+
+        Assertions.assertEquals(HISTORY_DEPTH, streamed.get());
+        //only the row being mapped is managed, whatever the history depth
+        Assertions.assertTrue(maxManagedEntities.get() <= 1);
+        Assertions.assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void accountListingFetchesCustomersInTheSameSelect() {
+        persistAccounts(30);
+
+        Assertions.assertEquals(31, bankAccountService.getBankAccountList().size());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void keysetAccountPagesApplyFiltersWithoutCounting() throws InvalidCursorException {
+        persistAccounts(30);
+        BankAccountFilterDTO filter = new BankAccountFilterDTO();
+        filter.setType("SavingAccount");
+        filter.setMinBalance(BigDecimal.valueOf(50));
+        filter.setStatus(AccountStatus.ACTIVATED);
+
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            BankAccountPageDTO page = bankAccountService.getBankAccountPage(filter, cursor, 4);
+            for (BankAccountDTO bankAccount : page.getBankAccountDTOS()) {
+                SavingBankAccountDTO savingAccount = (SavingBankAccountDTO) bankAccount;
+                Assertions.assertTrue(seen.add(savingAccount.getId()));
+                Assertions.assertTrue(savingAccount.getBalance().compareTo(BigDecimal.valueOf(50)) >= 0);
+                Assertions.assertNotNull(savingAccount.getCustomerDTO().getName());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        //savings are the odd accounts, balances 10..290, the ones below 50 are filtered out
+        Assertions.assertEquals(13, seen.size());
+        Assertions.assertEquals(4, pages);
+        Assertions.assertEquals(pages, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void offsetAccountPageCostsOneSelectAndOneCount() throws InvalidPageException {
+        persistAccounts(30);
+        BankAccountFilterDTO filter = new BankAccountFilterDTO();
+        filter.setType("CurrentAccount");
+
+        BankAccountPageDTO page = bankAccountService.getBankAccountPage(filter, 1, 5);
+
+        Assertions.assertEquals(5, page.getBankAccountDTOS().size());
+        Assertions.assertEquals(16, page.getTotalElements());
+        Assertions.assertEquals(4, page.getTotalPages());
+        Assertions.assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void keysetCustomerPagesWalkEveryCustomer() throws InvalidCursorException {
+        persistAccounts(30);
+
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        do {
+            CustomerPageDTO page = bankAccountService.getCustomerPage(cursor, 8);
+            page.getCustomerDTOS().forEach(customer -> Assertions.assertTrue(seen.add(customer.getId())));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        Assertions.assertEquals(31, seen.size());
+    }
+
+    @Test
+    void batchLocksAccountsOnceAndWritesInJdbcBatches() {
+        persistAccounts(3);
+        List<String> accountIds = entityManager.createQuery("select a.id from BankAccount a", UUID.class)
+                .getResultStream().map(UUID::toString).collect(Collectors.toList());
+        List<BatchOperationDTO> operations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            for (String id : accountIds) operations.add(new BatchOperationDTO(id, OperationType.CREDIT, BigDecimal.ONE, "credit"));
+        }
+        operations.add(new BatchOperationDTO(accountId, OperationType.DEBIT, BigDecimal.valueOf(2_000_000), "too much"));
+        statistics.clear();
+
+        List<BatchOperationResultDTO> results = bankAccountService.applyOperations(operations);
+        entityManager.flush();
+
+        Assertions.assertEquals(40, results.stream().filter(result -> result.getStatus() == BatchOperationStatus.APPLIED).count());
+        Assertions.assertEquals("BalanceNotSufficientException", results.get(40).getError());
+        //one locking select, one batch of 40 operation inserts and one of their 40 outbox events, one batch of
+        //versioned balance updates per account type (their UPDATE statements differ by the subclass column)
+        Assertions.assertEquals(5, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(4, statistics.getEntityLoadCount());
+        Assertions.assertEquals(80, statistics.getEntityInsertCount());
+        Assertions.assertEquals(4, statistics.getEntityUpdateCount());
+    }
+
+    @Test
+    void balanceAtReadsOneSnapshotAndOneOperationWhateverTheHistory() throws BankAccountNotFoundException {
+        BankAccount bankAccount = entityManager.find(BankAccount.class, UUID.fromString(accountId));
+        //opened with 1000, credited 100 on day 1, debited 30 on day 2 after the day 1 snapshot
+        persistOperation(bankAccount, "2026-03-01T09:00:00Z", OperationType.CREDIT, 100_00, 1100_00);
+        entityManager.persist(new AccountBalanceSnapshot(null, bankAccount, Date.from(Instant.parse("2026-03-02T00:00:00Z")), 1100_00));
+        persistOperation(bankAccount, "2026-03-02T09:00:00Z", OperationType.DEBIT, 30_00, 1070_00);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        //the setUp history is dated now, after every date asked for here
+        Assertions.assertEquals(new BigDecimal("1070.00"), bankAccountService.getBalanceAt(accountId, Date.from(Instant.parse("2026-03-02T12:00:00Z"))).getBalance());
+        //account view, newest snapshot, newest operation since the snapshot
+        Assertions.assertEquals(3, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(new BigDecimal("1100.00"), bankAccountService.getBalanceAt(accountId, Date.from(Instant.parse("2026-03-02T08:00:00Z"))).getBalance());
+        Assertions.assertEquals(new BigDecimal("1000.00"), bankAccountService.getBalanceAt(accountId, Date.from(Instant.parse("2026-02-01T00:00:00Z"))).getBalance());
+
+        AccountStatementDTO statement = bankAccountService.getStatement(accountId,
+                Date.from(Instant.parse("2026-03-01T12:00:00Z")), Date.from(Instant.parse("2026-03-03T00:00:00Z")));
+        Assertions.assertEquals(new BigDecimal("1100.00"), statement.getOpeningBalance());
+        Assertions.assertEquals(new BigDecimal("1070.00"), statement.getClosingBalance());
+        Assertions.assertEquals(1, statement.getAccountOperationDTOS().size());
+    }
+
+    private void persistOperation(BankAccount bankAccount, String date, OperationType type, long amount, long balanceAfter) {
+        AccountOperation accountOperation = new AccountOperation();
+        accountOperation.setBankAccount(bankAccount);
+        accountOperation.setOperationDate(Date.from(Instant.parse(date)));
+        accountOperation.setType(type);
+        accountOperation.setAmount(amount);
+        accountOperation.setBalanceAfter(balanceAfter);
+        entityManager.persist(accountOperation);
+    }
+
+    //even accounts are current accounts, odd ones activated savings, each with its own customer
+    private void persistAccounts(int count) {
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setName("Customer" + i);
+            customer.setEmail("Customer" + i + "@gmail.com");
+            entityManager.persist(customer);
+            BankAccount bankAccount;
+            if (i % 2 == 0) {
+                bankAccount = new CurrentAccount();
+            } else {
+                SavingAccount savingAccount = new SavingAccount();
+                savingAccount.setStatus(AccountStatus.ACTIVATED);
+                bankAccount = savingAccount;
+            }
+            bankAccount.setId(UUID.randomUUID());
+            bankAccount.setCreationDat(new Date());
+            bankAccount.setBalance(i * 10_00);
+            bankAccount.setCustomer(customer);
+            entityManager.persist(bankAccount);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    private void useBalanceUpdateMode(BalanceUpdateMode balanceUpdateMode) {
+        Object target = AopTestUtils.getTargetObject(bankAccountService);
+        ReflectionTestUtils.setField(target, "balanceUpdateMode", balanceUpdateMode);
+    }
+}
@@ -1,38 +1,61 @@
 package com.example.ebankbackend.services;
 
+import com.example.ebankbackend.cache.AccountSnapshotCache;
 import com.example.ebankbackend.dtos.*;
 import com.example.ebankbackend.entities.*;
 import com.example.ebankbackend.enums.AccountStatus;
+import com.example.ebankbackend.enums.BalanceUpdateMode;
+import com.example.ebankbackend.enums.BatchOperationStatus;
 import com.example.ebankbackend.enums.OperationType;
 import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
 import com.example.ebankbackend.exceptions.BankAccountNotFoundException;
 import com.example.ebankbackend.exceptions.CustomerNotFoundException;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.exceptions.InvalidPageException;
+import com.example.ebankbackend.generators.AccountIdGenerator;
 import com.example.ebankbackend.mappers.BankAccountMapperImpl;
+import com.example.ebankbackend.outbox.OperationOutbox;
+import com.example.ebankbackend.repositories.AccountBalanceView;
 import com.example.ebankbackend.repositories.AccountOperationRepository;
 import com.example.ebankbackend.repositories.BankAccountRepository;
+import com.example.ebankbackend.repositories.BankAccountView;
 import com.example.ebankbackend.repositories.CustomerRepository;
+import com.example.ebankbackend.search.CustomerSearchIndex;
+import com.example.ebankbackend.support.Money;
 import org.aspectj.lang.annotation.Before;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.Nullable;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 
 import javax.security.auth.login.AccountNotFoundException;
 import javax.validation.constraints.Null;
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -53,6 +76,26 @@ class BankAccountServiceImplTest {
     AccountOperationRepository accountOperationRepository;
     @Mock
     private CustomerRepository customerRepository;
+    @Mock
+    private AccountIdGenerator accountIdGenerator;
+    @Mock
+    private CustomerSearchIndex customerSearchIndex;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private OperationOutbox operationOutbox;
+    @Spy
+    private AccountSnapshotCache accountSnapshotCache = new AccountSnapshotCache(new ConcurrentMapCacheManager(AccountSnapshotCache.CACHE_NAME));
+
+    //debits, credits and transfers run their updates through the TransactionTemplate
+    @BeforeEach
+    void runTransactionCallbacks() {
+        Mockito.lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
 
     @Test
     void saveCustomer() {
@@ -84,12 +127,12 @@ class BankAccountServiceImplTest {
           customer.setId(customerId);
           customer.setName("Customer");
           customer.setEmail("Customer@gmail.com");
-          double initialBalance = 1000L;
-          double overDraft=900;
-          currentAccount.setId(UUID.randomUUID().toString());
+          BigDecimal initialBalance = BigDecimal.valueOf(1000);
+          BigDecimal overDraft = BigDecimal.valueOf(900);
+          currentAccount.setId(UUID.randomUUID());
           currentAccount.setCreationDat(new Date());
-          currentAccount.setBalance(initialBalance);
-          currentAccount.setOverDraft(overDraft);
+          currentAccount.setBalance(Money.toMinorUnits(initialBalance));
+          currentAccount.setOverDraft(Money.toMinorUnits(overDraft));
           currentAccount.setCustomer(customer);
 
         //when
@@ -104,8 +147,8 @@ class BankAccountServiceImplTest {
     void saveCurrentBankAccountNotFound() {
         //given
         Long customerId = 1L;
-        double initialBalance = 1000L;
-        double overDraft=900;
+        BigDecimal initialBalance = BigDecimal.valueOf(1000);
+        BigDecimal overDraft = BigDecimal.valueOf(900);
 
         //when
         Mockito.when(customerRepository.findById(customerId)).thenReturn(Optional.ofNullable(null));
@@ -129,12 +172,12 @@ class BankAccountServiceImplTest {
         customer.setId(customerId);
         customer.setName(name);
         customer.setEmail(email);
-        double initialBalance=1900.00;
+        BigDecimal initialBalance = new BigDecimal("1900.00");
         double interestRate=5.1;
         SavingAccount savingAccount = new SavingAccount();
-        savingAccount.setId(UUID.randomUUID().toString());
+        savingAccount.setId(UUID.randomUUID());
         savingAccount.setCreationDat(new Date());
-        savingAccount.setBalance(initialBalance);
+        savingAccount.setBalance(Money.toMinorUnits(initialBalance));
         savingAccount.setInterestRate(interestRate);
         savingAccount.setCustomer(customer);
         //when
@@ -147,7 +190,7 @@ class BankAccountServiceImplTest {
     void saveSavingBankAccountNotFound(){
         //given
         Long customerId=1L;
-        double initialBalance=1900.00;
+        BigDecimal initialBalance = new BigDecimal("1900.00");
         double interestRate=5.1;
         //when
         Mockito.when(customerRepository.findById(customerId)).thenReturn(Optional.ofNullable(null));
@@ -178,42 +221,36 @@ class BankAccountServiceImplTest {
     void getBankAccountAsSavingAccount() throws BankAccountNotFoundException {
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double initialBalance=1900.00;
+        long initialBalance = 1900_00;
         double interestRate=5.1;
-        SavingAccount savingAccount=new SavingAccount();
-        savingAccount.setId(UUID.randomUUID().toString());
-        savingAccount.setCreationDat(new Date());
-        savingAccount.setBalance(initialBalance);
-        savingAccount.setInterestRate(interestRate);
+        BankAccountView savingAccount = new BankAccountView(UUID.fromString(accountId), initialBalance, new Date(), null,
+                SavingAccount.class, null, interestRate, 1L, "Customer", "Customer@gmail.com");
 
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.of(savingAccount));
+        Mockito.when(bankAccountRepository.findViewById(UUID.fromString(accountId))).thenReturn(Optional.of(savingAccount));
         bankAccountServiceImpl.getBankAccount(accountId);
 
         //then
-        Assertions.assertNotNull(savingAccount);
-        Assertions.assertTrue(savingAccount instanceof SavingAccount );
+        verify(dtoMapper,times(1)).fromBankAccountView(savingAccount);
+        verify(bankAccountRepository,Mockito.never()).findById(any());
     }
 
     @Test
     void getBankAccountAsCurrentAccount() throws BankAccountNotFoundException {
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double initialBalance=1900.00;
-        double overDraft=900;
-        CurrentAccount currentAccount=new CurrentAccount();
-        currentAccount.setId(UUID.randomUUID().toString());
-        currentAccount.setCreationDat(new Date());
-        currentAccount.setBalance(initialBalance);
-        currentAccount.setOverDraft(overDraft);
+        long initialBalance = 1900_00;
+        Long overDraft = 900_00L;
+        BankAccountView currentAccount = new BankAccountView(UUID.fromString(accountId), initialBalance, new Date(), null,
+                CurrentAccount.class, overDraft, null, 1L, "Customer", "Customer@gmail.com");
 
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.of(currentAccount));
+        Mockito.when(bankAccountRepository.findViewById(UUID.fromString(accountId))).thenReturn(Optional.of(currentAccount));
         bankAccountServiceImpl.getBankAccount(accountId);
 
         //then
-        Assertions.assertNotNull(currentAccount);
-        Assertions.assertTrue(currentAccount instanceof CurrentAccount );
+        verify(dtoMapper,times(1)).fromBankAccountView(currentAccount);
+        verify(bankAccountRepository,Mockito.never()).findById(any());
     }
 
     @Test
@@ -221,7 +258,7 @@ class BankAccountServiceImplTest {
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.ofNullable(null));
+        Mockito.when(bankAccountRepository.findViewById(UUID.fromString(accountId))).thenReturn(Optional.ofNullable(null));
         try {
             bankAccountServiceImpl.getBankAccount(accountId);
         }catch(BankAccountNotFoundException e){
@@ -232,10 +269,10 @@ class BankAccountServiceImplTest {
     void debit() throws BankAccountNotFoundException, BalanceNotSufficientException {
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double amount = 1900.00;
+        BigDecimal amount = new BigDecimal("1900.00");
         String description = "debit";
         BankAccount bankAccount = new CurrentAccount();
-        double balance = 2000.00;
+        long balance = 2000_00;
         Date creationDat = new Date();
         bankAccount.setBalance(balance);
         bankAccount.setCreationDat(creationDat);
@@ -243,15 +280,20 @@ class BankAccountServiceImplTest {
         AccountOperation accountOperation = new AccountOperation();
         accountOperation.setType(OperationType.DEBIT);
         accountOperation.setDescription(description);
-        accountOperation.setAmount(amount);
+        accountOperation.setAmount(Money.toMinorUnits(amount));
+        accountOperation.setBalanceAfter(balance - Money.toMinorUnits(amount));
         accountOperation.setBankAccount(bankAccount);
 
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.of(bankAccount));
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId))).thenReturn(Optional.of(bankAccount));
         bankAccountServiceImpl.debit(accountId,amount,description);
 
         //then
-        verify(accountOperationRepository,times(1)).save(accountOperation);
+        ArgumentCaptor<AccountOperation> savedOperation = ArgumentCaptor.forClass(AccountOperation.class);
+        verify(accountOperationRepository,times(1)).save(savedOperation.capture());
+        Assertions.assertNotNull(savedOperation.getValue().getOperationDate());
+        accountOperation.setOperationDate(savedOperation.getValue().getOperationDate());
+        Assertions.assertEquals(accountOperation,savedOperation.getValue());
         verify(bankAccountRepository,times(1)).save(bankAccount);
     }
 
@@ -259,10 +301,10 @@ class BankAccountServiceImplTest {
     void debitBankAccountNotFound() throws BalanceNotSufficientException {
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double amount = 1900.00;
+        BigDecimal amount = new BigDecimal("1900.00");
         String description = "debit";
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.ofNullable(null));
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId))).thenReturn(Optional.ofNullable(null));
         try {
             bankAccountServiceImpl.debit(accountId, amount, description);
         }catch(BankAccountNotFoundException e) {
@@ -277,16 +319,16 @@ class BankAccountServiceImplTest {
         //given
 
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double amount = 2000.00;
+        BigDecimal amount = new BigDecimal("2000.00");
         String description = "debit";
         BankAccount bankAccount = new CurrentAccount();
-        double balance = 1900.00;
+        long balance = 1900_00;
         Date creationDat = new Date();
         bankAccount.setBalance(balance);
         bankAccount.setCreationDat(creationDat);
         //when
 
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.of(bankAccount));
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId))).thenReturn(Optional.of(bankAccount));
         try {
             bankAccountServiceImpl.debit(accountId, amount, description);
         }catch(BalanceNotSufficientException e){
@@ -297,42 +339,152 @@ class BankAccountServiceImplTest {
         verify(accountOperationRepository,Mockito.never()).save(any());
         verify(bankAccountRepository,Mockito.never()).save(any());
     }
+    @Test
+    void debitWithinOverdraft() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        CurrentAccount currentAccount = new CurrentAccount(50_00);
+        currentAccount.setBalance(100_00);
+        SavingAccount savingAccount = new SavingAccount(5.1);
+        savingAccount.setBalance(100_00);
+
+        //when
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId)))
+                .thenReturn(Optional.of(currentAccount), Optional.of(savingAccount));
+        bankAccountServiceImpl.debit(accountId, new BigDecimal("150.00"), "debit");
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> bankAccountServiceImpl.debit(accountId, new BigDecimal("100.01"), "debit"));
+
+        //then
+        Assertions.assertEquals(-50_00, currentAccount.getBalance());
+        Assertions.assertEquals(100_00, savingAccount.getBalance());
+        verify(bankAccountRepository,times(1)).save(currentAccount);
+        verify(bankAccountRepository,Mockito.never()).save(savingAccount);
+    }
+
+    @Test
+    void debitConditional() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BigDecimal amount = new BigDecimal("1900.00");
+        String description = "debit";
+        BankAccount bankAccount = new CurrentAccount();
+        bankAccount.setId(UUID.fromString(accountId));
+        ReflectionTestUtils.setField(bankAccountServiceImpl, "balanceUpdateMode", BalanceUpdateMode.CONDITIONAL);
+
+        //when
+        Mockito.when(bankAccountRepository.debitIfSufficient(UUID.fromString(accountId), Money.toMinorUnits(amount))).thenReturn(1);
+        Mockito.when(bankAccountRepository.findBalances(List.of(UUID.fromString(accountId))))
+                .thenReturn(List.of(new AccountBalanceView(UUID.fromString(accountId), 100_00)));
+        Mockito.when(bankAccountRepository.getReferenceById(UUID.fromString(accountId))).thenReturn(bankAccount);
+        bankAccountServiceImpl.debit(accountId, amount, description);
+
+        //then
+        ArgumentCaptor<AccountOperation> savedOperation = ArgumentCaptor.forClass(AccountOperation.class);
+        verify(accountOperationRepository,times(1)).save(savedOperation.capture());
+        Assertions.assertEquals(OperationType.DEBIT, savedOperation.getValue().getType());
+        Assertions.assertEquals(Money.toMinorUnits(amount), savedOperation.getValue().getAmount());
+        Assertions.assertEquals(100_00, savedOperation.getValue().getBalanceAfter());
+        Assertions.assertSame(bankAccount, savedOperation.getValue().getBankAccount());
+        verify(bankAccountRepository,Mockito.never()).findById(any());
+        verify(bankAccountRepository,Mockito.never()).save(any());
+    }
+
+    @Test
+    void debitConditionalBalanceNotSufficient() {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BigDecimal amount = new BigDecimal("2000.00");
+        ReflectionTestUtils.setField(bankAccountServiceImpl, "balanceUpdateMode", BalanceUpdateMode.CONDITIONAL);
+
+        //when
+        Mockito.when(bankAccountRepository.debitIfSufficient(UUID.fromString(accountId), Money.toMinorUnits(amount))).thenReturn(0);
+        Mockito.when(bankAccountRepository.existsById(UUID.fromString(accountId))).thenReturn(true);
+        BalanceNotSufficientException e = Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> bankAccountServiceImpl.debit(accountId, amount, "debit"));
+
+        //then
+        Assertions.assertEquals("Balance not sufficient", e.getMessage());
+        verify(accountOperationRepository,Mockito.never()).save(any());
+    }
+
+    @Test
+    void debitConditionalBankAccountNotFound() {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BigDecimal amount = new BigDecimal("2000.00");
+        ReflectionTestUtils.setField(bankAccountServiceImpl, "balanceUpdateMode", BalanceUpdateMode.CONDITIONAL);
+
+        //when
+        Mockito.when(bankAccountRepository.debitIfSufficient(UUID.fromString(accountId), Money.toMinorUnits(amount))).thenReturn(0);
+        Mockito.when(bankAccountRepository.existsById(UUID.fromString(accountId))).thenReturn(false);
+        BankAccountNotFoundException e = Assertions.assertThrows(BankAccountNotFoundException.class,
+                () -> bankAccountServiceImpl.debit(accountId, amount, "debit"));
+
+        //then
+        Assertions.assertEquals("BankAccount not found", e.getMessage());
+        verify(accountOperationRepository,Mockito.never()).save(any());
+    }
+
     @Test
     void credit() throws BankAccountNotFoundException {
 
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double amount = 1900.00;
+        BigDecimal amount = new BigDecimal("1900.00");
         String description = "credit";
-        double balance = 2000.00;
+        long balance = 2000_00;
         BankAccount bankAccount = new CurrentAccount();
         bankAccount.setBalance(balance);
-        bankAccount.setId(accountId);
+        bankAccount.setId(UUID.fromString(accountId));
         bankAccount.setCreationDat(new Date());
 
         AccountOperation accountOperation = new AccountOperation();
         accountOperation.setType(OperationType.CREDIT);
         accountOperation.setDescription(description);
-        accountOperation.setAmount(amount);
+        accountOperation.setAmount(Money.toMinorUnits(amount));
+        accountOperation.setBalanceAfter(balance + Money.toMinorUnits(amount));
         accountOperation.setBankAccount(bankAccount);
 
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.of(bankAccount));
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId))).thenReturn(Optional.of(bankAccount));
         bankAccountServiceImpl.credit(accountId, amount, description);
 
         //then
         verify(bankAccountRepository,times(1)).save(bankAccount);
-        verify(accountOperationRepository,times(1)).save(accountOperation);
+        ArgumentCaptor<AccountOperation> savedOperation = ArgumentCaptor.forClass(AccountOperation.class);
+        verify(accountOperationRepository,times(1)).save(savedOperation.capture());
+        Assertions.assertNotNull(savedOperation.getValue().getOperationDate());
+        accountOperation.setOperationDate(savedOperation.getValue().getOperationDate());
+        Assertions.assertEquals(accountOperation,savedOperation.getValue());
+    }
+    @Test
+    void creditOverflowIsRejected() {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BankAccount bankAccount = new CurrentAccount();
+        bankAccount.setBalance(Long.MAX_VALUE - 1);
+
+        //when
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId))).thenReturn(Optional.of(bankAccount));
+        Assertions.assertThrows(ArithmeticException.class,
+                () -> bankAccountServiceImpl.credit(accountId, new BigDecimal("0.02"), "credit"));
+
+        //then
+        Assertions.assertEquals(Long.MAX_VALUE - 1, bankAccount.getBalance());
+        verify(accountOperationRepository,Mockito.never()).save(any());
+        verify(bankAccountRepository,Mockito.never()).save(any());
     }
+
     @Test
     void creditBankAccountNotFound(){
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double amount=1900.00;
+        BigDecimal amount = new BigDecimal("1900.00");
         String description="credit";
 
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.ofNullable(null));
+        Mockito.when(bankAccountRepository.findById(UUID.fromString(accountId))).thenReturn(Optional.ofNullable(null));
         try {
             bankAccountServiceImpl.credit(accountId, amount, description);
         }catch(BankAccountNotFoundException e){
@@ -343,6 +495,140 @@ class BankAccountServiceImplTest {
        verify(bankAccountRepository,Mockito.never()).save(any());
     }
 
+    @Test
+    void creditConditionalBankAccountNotFound() {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BigDecimal amount = new BigDecimal("1900.00");
+        ReflectionTestUtils.setField(bankAccountServiceImpl, "balanceUpdateMode", BalanceUpdateMode.CONDITIONAL);
+
+        //when
+        Mockito.when(bankAccountRepository.credit(UUID.fromString(accountId), Money.toMinorUnits(amount))).thenReturn(0);
+        BankAccountNotFoundException e = Assertions.assertThrows(BankAccountNotFoundException.class,
+                () -> bankAccountServiceImpl.credit(accountId, amount, "credit"));
+
+        //then
+        Assertions.assertEquals("BankAccount not found", e.getMessage());
+        verify(accountOperationRepository,Mockito.never()).save(any());
+    }
+
+    @Test
+    void transferLocksBothAccountsAndRecordsTheirBalances() throws BankAccountNotFoundException, BalanceNotSufficientException {
+        //given
+        String accountIdSource = "f5bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String accountIdDestination = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BigDecimal amount = new BigDecimal("100.00");
+        CurrentAccount source = new CurrentAccount();
+        source.setId(UUID.fromString(accountIdSource));
+        source.setBalance(100_00);
+        SavingAccount destination = new SavingAccount();
+        destination.setId(UUID.fromString(accountIdDestination));
+        destination.setBalance(100_00);
+
+        //when
+        Mockito.when(bankAccountRepository.lockAllById(anyList())).thenReturn(List.of(destination, source));
+        bankAccountServiceImpl.transfer(accountIdSource, accountIdDestination, amount);
+
+        //then
+        ArgumentCaptor<List<AccountOperation>> operations = ArgumentCaptor.forClass(List.class);
+        verify(accountOperationRepository).saveAll(operations.capture());
+        Assertions.assertEquals(0, source.getBalance());
+        Assertions.assertEquals(200_00, destination.getBalance());
+        Assertions.assertEquals(0, operations.getValue().get(0).getBalanceAfter());
+        Assertions.assertEquals(OperationType.DEBIT, operations.getValue().get(0).getType());
+        Assertions.assertEquals(200_00, operations.getValue().get(1).getBalanceAfter());
+        Assertions.assertEquals(OperationType.CREDIT, operations.getValue().get(1).getType());
+        verify(bankAccountRepository,Mockito.never()).findBalances(any());
+        verify(bankAccountRepository,Mockito.never()).debitIfSufficient(any(), anyLong());
+    }
+
+    @Test
+    void transferBalanceNotSufficient() {
+        //given
+        String accountIdSource = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String accountIdDestination = "f5bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BigDecimal amount = new BigDecimal("100.00");
+        SavingAccount source = new SavingAccount();
+        source.setId(UUID.fromString(accountIdSource));
+        source.setBalance(99_99);
+        CurrentAccount destination = new CurrentAccount();
+        destination.setId(UUID.fromString(accountIdDestination));
+
+        //when
+        Mockito.when(bankAccountRepository.lockAllById(anyList())).thenReturn(List.of(source, destination));
+        Assertions.assertThrows(BalanceNotSufficientException.class,
+                () -> bankAccountServiceImpl.transfer(accountIdSource, accountIdDestination, amount));
+
+        //then
+        Assertions.assertEquals(99_99, source.getBalance());
+        verify(accountOperationRepository,Mockito.never()).saveAll(any());
+    }
+
+    @Test
+    void transferBankAccountNotFound() {
+        //given
+        String accountIdSource = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String accountIdDestination = "f5bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        CurrentAccount source = new CurrentAccount();
+        source.setId(UUID.fromString(accountIdSource));
+        source.setBalance(100_00);
+
+        //when
+        Mockito.when(bankAccountRepository.lockAllById(anyList())).thenReturn(List.of(source));
+        Assertions.assertThrows(BankAccountNotFoundException.class,
+                () -> bankAccountServiceImpl.transfer(accountIdSource, accountIdDestination, BigDecimal.TEN));
+
+        //then
+        verify(accountOperationRepository,Mockito.never()).saveAll(any());
+    }
+
+    @Test
+    void applyOperationsReportsEveryItemInRequestOrder() {
+        //given
+        String accountIdA = "f5bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String accountIdB = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String unknownAccountId = "25bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BankAccount bankAccountA = new CurrentAccount();
+        bankAccountA.setId(UUID.fromString(accountIdA));
+        bankAccountA.setBalance(100_00);
+        BankAccount bankAccountB = new CurrentAccount();
+        bankAccountB.setId(UUID.fromString(accountIdB));
+        bankAccountB.setBalance(0);
+        List<BatchOperationDTO> operations = List.of(
+                new BatchOperationDTO(accountIdA, OperationType.DEBIT, BigDecimal.valueOf(150), "rent"),
+                new BatchOperationDTO(accountIdB, OperationType.CREDIT, BigDecimal.valueOf(50), "salary"),
+                new BatchOperationDTO(accountIdA, OperationType.CREDIT, BigDecimal.valueOf(100), "salary"),
+                new BatchOperationDTO(accountIdA, OperationType.DEBIT, BigDecimal.valueOf(150), "rent"),
+                new BatchOperationDTO(unknownAccountId, OperationType.CREDIT, BigDecimal.valueOf(10), "refund"),
+                new BatchOperationDTO("not-an-id", OperationType.CREDIT, BigDecimal.valueOf(10), "refund"));
+        ReflectionTestUtils.setField(bankAccountServiceImpl, "batchChunkSize", 500);
+
+        //when
+        Mockito.doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        Mockito.when(bankAccountRepository.lockAllById(any())).thenReturn(List.of(bankAccountB, bankAccountA));
+        List<BatchOperationResultDTO> results = bankAccountServiceImpl.applyOperations(operations);
+
+        //then
+        Assertions.assertEquals(List.of(BatchOperationStatus.REJECTED, BatchOperationStatus.APPLIED, BatchOperationStatus.APPLIED,
+                BatchOperationStatus.APPLIED, BatchOperationStatus.REJECTED, BatchOperationStatus.REJECTED),
+                results.stream().map(BatchOperationResultDTO::getStatus).collect(Collectors.toList()));
+        Assertions.assertEquals("BalanceNotSufficientException", results.get(0).getError());
+        Assertions.assertEquals("BankAccountNotFoundException", results.get(4).getError());
+        Assertions.assertEquals("BankAccountNotFoundException", results.get(5).getError());
+        Assertions.assertEquals(50_00, bankAccountA.getBalance());
+        Assertions.assertEquals(50_00, bankAccountB.getBalance());
+        //one locking select for all known and unknown accounts, one saveAll for the applied operations
+        verify(bankAccountRepository,times(1)).lockAllById(any());
+        ArgumentCaptor<List<AccountOperation>> savedOperations = ArgumentCaptor.forClass(List.class);
+        verify(accountOperationRepository,times(1)).saveAll(savedOperations.capture());
+        Assertions.assertEquals(3, savedOperations.getValue().size());
+        verify(bankAccountRepository,Mockito.never()).findById(any());
+    }
+
     //I should do unit tests also for debit and credit.
 
 //    @Test
@@ -385,17 +671,17 @@ class BankAccountServiceImplTest {
         //given
         String accountId1 = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
 
-        double balance = 2000.00;
+        long balance = 2000_00;
         CurrentAccount bankAccount1 = new CurrentAccount();
         bankAccount1.setBalance(balance);
-        bankAccount1.setId(accountId1);
-        bankAccount1.setOverDraft(100.0);
+        bankAccount1.setId(UUID.fromString(accountId1));
+        bankAccount1.setOverDraft(100_00);
         bankAccount1.setCreationDat(new Date());
 
         CurrentBankAccountDTO  currentBankAccountDTO = new CurrentBankAccountDTO();
-        currentBankAccountDTO.setBalance(balance);
+        currentBankAccountDTO.setBalance(Money.fromMinorUnits(balance));
         currentBankAccountDTO.setId(accountId1);
-        currentBankAccountDTO.setOverDraft(100.0);
+        currentBankAccountDTO.setOverDraft(new BigDecimal("100.00"));
         currentBankAccountDTO.setCreationDat(new Date());
 
         List<BankAccount> bankAccounts = new ArrayList<>();
@@ -406,7 +692,7 @@ class BankAccountServiceImplTest {
 
         //when
         Mockito.when(bankAccountRepository.findAll()).thenReturn(bankAccounts);
-        Mockito.when(dtoMapper.fromCurrentBankAccount(bankAccount1)).thenReturn(currentBankAccountDTO);
+        Mockito.when(dtoMapper.fromBankAccounts(bankAccounts)).thenReturn(bankAccountsDTO);
         List<BankAccountDTO> currentAccount= bankAccountServiceImpl.getBankAccountList();
         //then
         Assertions.assertNotNull(currentAccount);
@@ -416,15 +702,15 @@ class BankAccountServiceImplTest {
     void getSavingAccountList(){
         String accountId1 = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
 
-        double balance = 2000.00;
+        long balance = 2000_00;
         SavingAccount bankAccount1 = new SavingAccount();
         bankAccount1.setBalance(balance);
-        bankAccount1.setId(accountId1);
+        bankAccount1.setId(UUID.fromString(accountId1));
         bankAccount1.setInterestRate(5.1);
         bankAccount1.setCreationDat(new Date());
 
         SavingBankAccountDTO savingBankAccountDTO = new SavingBankAccountDTO();
-        savingBankAccountDTO.setBalance(balance);
+        savingBankAccountDTO.setBalance(Money.fromMinorUnits(balance));
         savingBankAccountDTO.setId(accountId1);
         savingBankAccountDTO.setInterestRate(5.1);
         savingBankAccountDTO.setCreationDat(new Date());
@@ -437,7 +723,7 @@ class BankAccountServiceImplTest {
 
         //when
         Mockito.when(bankAccountRepository.findAll()).thenReturn(bankAccounts);
-        Mockito.when(dtoMapper.fromSavingBankAccount(bankAccount1)).thenReturn(savingBankAccountDTO);
+        Mockito.when(dtoMapper.fromBankAccounts(bankAccounts)).thenReturn(bankAccountsDTO);
         List<BankAccountDTO> savingBankAccounts= bankAccountServiceImpl.getBankAccountList();
         //then
         Assertions.assertNotNull(savingBankAccounts);
@@ -526,7 +812,7 @@ class BankAccountServiceImplTest {
     void accountHistory() {
         //given
         String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
-        double amount = 1900.00;
+        long amount = 1900_00;
         String description = "credit";
         AccountOperation accountOperation = new AccountOperation();
         accountOperation.setType(OperationType.CREDIT);
@@ -545,7 +831,7 @@ class BankAccountServiceImplTest {
         accountOperationsDTO.add(accountOperationDTO);
 
         //when
-        Mockito.when(accountOperationRepository.findByBankAccount_Id(accountId)).thenReturn(accountOperations);
+        Mockito.when(accountOperationRepository.findByBankAccount_Id(UUID.fromString(accountId))).thenReturn(accountOperations);
         Mockito.when(dtoMapper.fromAccountOperation(accountOperation)).thenReturn(accountOperationDTO);
         List<AccountOperationDTO> accountOperationsDTO1=  bankAccountServiceImpl.accountHistory(accountId);
 
@@ -569,7 +855,7 @@ class BankAccountServiceImplTest {
 //        bankAccount.setOverDraft(100.0);
 //        bankAccount.setCreationDat(new Date());
 //
-//        double amount = 1900.00;
+//        long amount = 1900_00;
 //        String description = "credit";
 //        AccountOperation accountOperation = new AccountOperation();
 //        accountOperation.setType(OperationType.CREDIT);
@@ -624,7 +910,7 @@ class BankAccountServiceImplTest {
         int size = 5 ;
 
         //when
-        Mockito.when(bankAccountRepository.findById(accountId)).thenReturn(Optional.ofNullable(null));
+        Mockito.when(bankAccountRepository.findViewById(UUID.fromString(accountId))).thenReturn(Optional.ofNullable(null));
 
         try{
             bankAccountServiceImpl.getAccountHistory(accountId,page,size);
@@ -633,4 +919,112 @@ class BankAccountServiceImplTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAccountHistoryInvalidCursor() {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BankAccountView bankAccountView = new BankAccountView(UUID.fromString(accountId), 2000_00, new Date(), null,
+                CurrentAccount.class, 100_00L, null, null, null, null);
+
+        //when
+        Mockito.when(bankAccountRepository.findViewById(UUID.fromString(accountId))).thenReturn(Optional.of(bankAccountView));
+
+        //then
+        InvalidCursorException exception = Assertions.assertThrows(InvalidCursorException.class,
+                () -> bankAccountServiceImpl.getAccountHistory(accountId, "not a cursor", 5, false));
+        Assertions.assertEquals("Invalid cursor", exception.getMessage());
+        Mockito.verifyNoInteractions(accountOperationRepository);
+    }
+
+    @Test
+    void getAccountHistoryClampsPageSize() throws BankAccountNotFoundException, InvalidCursorException {
+        //given
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        BankAccountView bankAccountView = new BankAccountView(UUID.fromString(accountId), 2000_00, new Date(), null,
+                CurrentAccount.class, 100_00L, null, null, null, null);
+        AccountOperation first = new AccountOperation(1L, new Date(), 10_00, 2000_00, OperationType.CREDIT, null, null);
+        AccountOperation second = new AccountOperation(2L, new Date(), 10_00, 2010_00, OperationType.CREDIT, null, null);
+
+        //when
+        Mockito.when(bankAccountRepository.findViewById(UUID.fromString(accountId))).thenReturn(Optional.of(bankAccountView));
+        Mockito.when(accountOperationRepository.findFirstHistoryPage(eq(UUID.fromString(accountId)), any(Pageable.class)))
+                .thenReturn(List.of(first, second));
+        AccountHistoryCursorDTO empty = bankAccountServiceImpl.getAccountHistory(accountId, null, 0, false);
+        bankAccountServiceImpl.getAccountHistory(accountId, null, -5, false);
+        bankAccountServiceImpl.getAccountHistory(accountId, null, Integer.MAX_VALUE, false);
+
+        //then
+        Assertions.assertEquals(1, empty.getPageSize());
+        Assertions.assertEquals(1, empty.getAccountOperationDTOS().size());
+        Assertions.assertNotNull(empty.getNextCursor());
+        verify(accountOperationRepository, times(2)).findFirstHistoryPage(UUID.fromString(accountId), PageRequest.of(0, 2));
+        verify(accountOperationRepository).findFirstHistoryPage(UUID.fromString(accountId), PageRequest.of(0, 1001));
+    }
+
+    @Test
+    void getBankAccountPageClampsPageSize() throws InvalidCursorException {
+        //given
+        CurrentAccount first = new CurrentAccount();
+        first.setId(UUID.fromString("15bc138b-2e1c-44eb-8a3b-c3691c56c37c"));
+        CurrentAccount second = new CurrentAccount();
+        second.setId(UUID.fromString("25bc138b-2e1c-44eb-8a3b-c3691c56c37c"));
+
+        //when
+        Mockito.when(bankAccountRepository.findWithCustomer(any(), any(), anyInt())).thenReturn(List.of(first, second));
+        BankAccountPageDTO zero = bankAccountServiceImpl.getBankAccountPage(new BankAccountFilterDTO(), null, 0);
+        BankAccountPageDTO negative = bankAccountServiceImpl.getBankAccountPage(new BankAccountFilterDTO(), null, -1);
+
+        //then
+        Assertions.assertEquals(1, zero.getPageSize());
+        Assertions.assertEquals(first.getId().toString(), zero.getNextCursor());
+        Assertions.assertEquals(1, negative.getPageSize());
+        verify(bankAccountRepository, times(2)).findWithCustomer(any(), any(), eq(2));
+    }
+
+    @Test
+    void getCustomerPageClampsPageSize() throws InvalidCursorException {
+        //given
+        Customer first = new Customer();
+        first.setId(1L);
+        Customer second = new Customer();
+        second.setId(2L);
+
+        //when
+        Mockito.when(customerRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenReturn(List.of(first, second));
+        CustomerPageDTO zero = bankAccountServiceImpl.getCustomerPage(null, 0);
+        CustomerPageDTO negative = bankAccountServiceImpl.getCustomerPage(null, -1);
+
+        //then
+        Assertions.assertEquals(1, zero.getPageSize());
+        Assertions.assertEquals(1, zero.getCustomerDTOS().size());
+        Assertions.assertEquals("1", zero.getNextCursor());
+        Assertions.assertEquals(1, negative.getPageSize());
+        verify(customerRepository, times(2)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2));
+    }
+
+    @Test
+    void offsetPagesClampPageSize() throws InvalidPageException {
+        //given
+        Mockito.when(bankAccountRepository.findAll(Mockito.<Specification<BankAccount>>any(), any(Pageable.class))).thenReturn(Page.empty());
+        Mockito.when(customerRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+
+        //when
+        BankAccountPageDTO accounts = bankAccountServiceImpl.getBankAccountPage(new BankAccountFilterDTO(), 0, 5000);
+        CustomerPageDTO customers = bankAccountServiceImpl.getCustomerPage(2, 0);
+
+        //then
+        Assertions.assertEquals(1000, accounts.getPageSize());
+        Assertions.assertEquals(1, customers.getPageSize());
+        verify(bankAccountRepository).findAll(Mockito.<Specification<BankAccount>>any(), eq(PageRequest.of(0, 1000, Sort.by("id"))));
+        verify(customerRepository).findAll(PageRequest.of(2, 1, Sort.by("id")));
+    }
+
+    @Test
+    void offsetPagesRefuseANegativePage() {
+        Assertions.assertThrows(InvalidPageException.class,
+                () -> bankAccountServiceImpl.getBankAccountPage(new BankAccountFilterDTO(), -1, 20));
+        Assertions.assertThrows(InvalidPageException.class,
+                () -> bankAccountServiceImpl.getCustomerPage(-1, 20));
+    }
+}
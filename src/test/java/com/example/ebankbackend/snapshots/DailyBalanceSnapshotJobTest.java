@@ -0,0 +1,105 @@
+package com.example.ebankbackend.snapshots;
+
+import com.example.ebankbackend.entities.AccountBalanceSnapshot;
+import com.example.ebankbackend.entities.AccountOperation;
+import com.example.ebankbackend.entities.BankAccount;
+import com.example.ebankbackend.entities.CurrentAccount;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.repositories.AccountBalanceSnapshotRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(DailyBalanceSnapshotJob.class)
+class DailyBalanceSnapshotJobTest {
+
+    @Autowired
+    private DailyBalanceSnapshotJob dailyBalanceSnapshotJob;
+    @Autowired
+    private AccountBalanceSnapshotRepository accountBalanceSnapshotRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private BankAccount first;
+    private BankAccount second;
+
+    @BeforeEach
+    void setUp() {
+        dailyBalanceSnapshotJob.setClock(Clock.fixed(Instant.parse("2026-03-04T10:00:00Z"), ZoneOffset.UTC));
+        first = account();
+        second = account();
+        operation(first, "2026-03-01T09:00:00Z", OperationType.CREDIT, 100, 100);
+        operation(first, "2026-03-01T17:00:00Z", OperationType.DEBIT, 30, 70);
+        operation(second, "2026-03-01T12:00:00Z", OperationType.CREDIT, 50, 50);
+        operation(first, "2026-03-03T08:00:00Z", OperationType.CREDIT, 5, 75);
+        //today is not closed yet
+        operation(first, "2026-03-04T08:00:00Z", OperationType.CREDIT, 5, 80);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void closesEveryFinishedDayWithTheLastBalanceOfEachAccountThatMoved() {
+        //when
+        dailyBalanceSnapshotJob.snapshotClosedDays();
+
+        //then
+        List<AccountBalanceSnapshot> snapshots = accountBalanceSnapshotRepository.findAll().stream()
+                .sorted(Comparator.comparing(AccountBalanceSnapshot::getAsOf).thenComparing(AccountBalanceSnapshot::getBalance))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(3, snapshots.size());
+        Assertions.assertEquals(Date.from(Instant.parse("2026-03-02T00:00:00Z")), snapshots.get(0).getAsOf());
+        Assertions.assertEquals(50, snapshots.get(0).getBalance());
+        Assertions.assertEquals(70, snapshots.get(1).getBalance());
+        Assertions.assertEquals(Date.from(Instant.parse("2026-03-04T00:00:00Z")), snapshots.get(2).getAsOf());
+        Assertions.assertEquals(75, snapshots.get(2).getBalance());
+    }
+
+    @Test
+    void rerunsCatchUpFromTheLastSnapshotAndReplaceADay() {
+        //given
+        dailyBalanceSnapshotJob.snapshotClosedDays();
+
+        //when
+        dailyBalanceSnapshotJob.snapshotClosedDays();
+        dailyBalanceSnapshotJob.snapshotDay(LocalDate.of(2026, 3, 1));
+
+        //then
+        Assertions.assertEquals(3, accountBalanceSnapshotRepository.count());
+    }
+
+    private BankAccount account() {
+        CurrentAccount account = new CurrentAccount();
+        account.setId(UUID.randomUUID());
+        account.setCreationDat(new Date());
+        entityManager.persist(account);
+        return account;
+    }
+
+    private void operation(BankAccount account, String date, OperationType type, long amount, long balanceAfter) {
+        AccountOperation accountOperation = new AccountOperation();
+        accountOperation.setBankAccount(account);
+        accountOperation.setOperationDate(Date.from(Instant.parse(date)));
+        accountOperation.setType(type);
+        accountOperation.setAmount(amount);
+        accountOperation.setBalanceAfter(balanceAfter);
+        entityManager.persist(accountOperation);
+    }
+}
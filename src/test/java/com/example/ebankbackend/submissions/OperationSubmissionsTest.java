@@ -0,0 +1,122 @@
+package com.example.ebankbackend.submissions;
+
+import com.example.ebankbackend.dtos.SubmittedOperationDTO;
+import com.example.ebankbackend.enums.SubmittedOperationStatus;
+import com.example.ebankbackend.exceptions.BalanceNotSufficientException;
+import com.example.ebankbackend.exceptions.SubmissionQueueFullException;
+import com.example.ebankbackend.services.BankAccountService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+class OperationSubmissionsTest {
+
+    private OperationSubmissions operationSubmissions;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        operationSubmissions.destroy();
+    }
+
+    @Test
+    void operationsOfAnAccountAreAppliedInSubmissionOrder() throws Exception {
+        //given
+        operationSubmissions = new OperationSubmissions(Mockito.mock(BankAccountService.class), 4, 1000, 100_000, Duration.ofMinutes(1));
+        List<String> accounts = List.of(account(), account(), account(), account());
+        Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+        accounts.forEach(account -> applied.put(account, new CopyOnWriteArrayList<>()));
+
+        //when: 4 accounts interleaved, more operations each than a lane applies per turn
+        List<CompletableFuture<SubmittedOperationDTO>> completions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            for (String account : accounts) {
+                int position = i;
+                SubmittedOperationDTO submitted = operationSubmissions.submit("debit", account, () -> applied.get(account).add(position));
+                completions.add(operationSubmissions.completion(submitted.getOperationId()));
+            }
+        }
+        CompletableFuture.allOf(completions.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        //then
+        for (String account : accounts) {
+            List<Integer> positions = applied.get(account);
+            Assertions.assertEquals(200, positions.size());
+            for (int i = 0; i < positions.size(); i++) Assertions.assertEquals(i, positions.get(i));
+        }
+        Assertions.assertTrue(completions.stream().allMatch(c -> c.join().getStatus() == SubmittedOperationStatus.APPLIED));
+    }
+
+    @Test
+    void aFullAccountQueueRefusesSubmissionsAndOthersStillPass() throws Exception {
+        //given: the first operation of the account blocks its lane, two more fill its queue
+        operationSubmissions = new OperationSubmissions(Mockito.mock(BankAccountService.class), 2, 2, 100_000, Duration.ofMinutes(1));
+        String busy = account();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        operationSubmissions.submit("debit", busy, () -> {
+            started.countDown();
+            await(release);
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        operationSubmissions.submit("debit", busy, () -> { });
+        String last = operationSubmissions.submit("debit", busy, () -> {
+            throw new BalanceNotSufficientException("Balance not sufficient");
+        }).getOperationId();
+
+        //when / then
+        Assertions.assertThrows(SubmissionQueueFullException.class, () -> operationSubmissions.submit("debit", busy, () -> { }));
+        String other = operationSubmissions.submit("credit", account(), () -> { }).getOperationId();
+        Assertions.assertEquals(SubmittedOperationStatus.APPLIED, operationSubmissions.completion(other).get(5, TimeUnit.SECONDS).getStatus());
+
+        release.countDown();
+        SubmittedOperationDTO rejected = operationSubmissions.completion(last).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(SubmittedOperationStatus.REJECTED, rejected.getStatus());
+        Assertions.assertEquals("BalanceNotSufficientException", rejected.getError());
+        Assertions.assertEquals(rejected, operationSubmissions.getStatus(last));
+    }
+
+    @Test
+    void listenersOfAnAccountGetItsCompletedOperations() throws Exception {
+        //given
+        operationSubmissions = new OperationSubmissions(Mockito.mock(BankAccountService.class), 2, 1000, 100_000, Duration.ofMinutes(1));
+        String account = account();
+        List<SubmittedOperationDTO> received = new CopyOnWriteArrayList<>();
+        Runnable unsubscribe = operationSubmissions.subscribe(account, received::add);
+
+        //when
+        String first = operationSubmissions.submit("debit", account, () -> { }).getOperationId();
+        operationSubmissions.submit("debit", account(), () -> { });
+        operationSubmissions.completion(first).get(5, TimeUnit.SECONDS);
+        unsubscribe.run();
+        String second = operationSubmissions.submit("debit", account, () -> { }).getOperationId();
+        operationSubmissions.completion(second).get(5, TimeUnit.SECONDS);
+
+        //then
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertEquals(first, received.get(0).getOperationId());
+    }
+
+    private static String account() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
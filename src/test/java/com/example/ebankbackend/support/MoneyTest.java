@@ -0,0 +1,37 @@
+package com.example.ebankbackend.support;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class MoneyTest {
+
+    @Test
+    void decimalAmountsRoundTripExactly() {
+        //given
+        BigDecimal amount = new BigDecimal("0.10");
+
+        //when
+        long minorUnits = Money.toMinorUnits(amount);
+
+        //then
+        Assertions.assertEquals(10, minorUnits);
+        Assertions.assertEquals(30, Money.toMinorUnits(new BigDecimal("0.1")) + Money.toMinorUnits(new BigDecimal("0.2")));
+        Assertions.assertEquals(new BigDecimal("0.30"), Money.fromMinorUnits(30));
+        Assertions.assertEquals(new BigDecimal("1500.00"), Money.fromMinorUnits(Money.toMinorUnits(BigDecimal.valueOf(1500))));
+    }
+
+    @Test
+    void amountsThatCannotBeRepresentedAreRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.toMinorUnits(new BigDecimal("10.005")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.toMinorUnits(new BigDecimal("1e20")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.toMinorUnits(null));
+    }
+
+    @Test
+    void trailingZerosBeyondTheScaleAreAccepted() {
+        Assertions.assertEquals(1005, Money.toMinorUnits(new BigDecimal("10.0500")));
+        Assertions.assertNull(Money.fromMinorUnits((Long) null));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.ebankbackend.support;
+
+import com.example.ebankbackend.dtos.CustomerDTO;
+import com.example.ebankbackend.services.BankAccountService;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+//current accounts without overdraft, each with a customer of its own, for the tests that run against the service
+public final class TestAccounts {
+
+    private TestAccounts() {
+    }
+
+    public static String newAccount(BankAccountService bankAccountService, long initialBalance) {
+        try {
+            CustomerDTO customerDTO = new CustomerDTO();
+            customerDTO.setName("Customer");
+            customerDTO.setEmail("Customer@gmail.com");
+            Long customerId = bankAccountService.saveCustomer(customerDTO).getId();
+            return bankAccountService.saveCurrentBankAccount(BigDecimal.valueOf(initialBalance), BigDecimal.ZERO, customerId).getId();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static UUID newAccountId(BankAccountService bankAccountService, long initialBalance) {
+        return UUID.fromString(newAccount(bankAccountService, initialBalance));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ebankbackend.threads;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.Future;
+
+class VirtualThreadConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadConfiguration.class);
+
+    @Test
+    void platformThreadsByDefault() {
+        contextRunner.run(context -> Assertions.assertFalse(context.containsBean("virtualThreadExecutor")));
+    }
+
+    @Test
+    void asyncTasksRunOnVirtualThreads() {
+        Assumptions.assumeTrue(VirtualThreads.isSupported(), "needs a Java 21 runtime");
+
+        contextRunner.withPropertyValues("ebank.threads.virtual.enabled=true").run(context -> {
+            AsyncTaskExecutor executor = context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, AsyncTaskExecutor.class);
+            Future<Object> isVirtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+            Assertions.assertEquals(Boolean.TRUE, isVirtual.get());
+        });
+    }
+
+    @Test
+    void enablingWithoutVirtualThreadsFailsAtStartup() {
+        Assumptions.assumeFalse(VirtualThreads.isSupported());
+
+        contextRunner.withPropertyValues("ebank.threads.virtual.enabled=true").run(context -> {
+            Assertions.assertNotNull(context.getStartupFailure());
+            Assertions.assertTrue(context.getStartupFailure().getMessage().contains("Java 21"));
+        });
+    }
+}
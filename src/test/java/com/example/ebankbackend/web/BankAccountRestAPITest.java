@@ -0,0 +1,192 @@
+package com.example.ebankbackend.web;
+
+import com.example.ebankbackend.dtos.AccountOperationDTO;
+import com.example.ebankbackend.enums.OperationType;
+import com.example.ebankbackend.exceptions.InvalidCursorException;
+import com.example.ebankbackend.metrics.QueryCountFilter;
+import com.example.ebankbackend.services.BankAccountService;
+import com.example.ebankbackend.support.Money;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.function.Consumer;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+class BankAccountRestAPITest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockBean
+    private BankAccountService bankAccountService;
+
+    @Test
+    void transferIsTimed() throws Exception {
+        String body = "{\"accountSource\":\"a\",\"accountDestination\":\"b\",\"amount\":10}";
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/accounts/transfert").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isOk());
+        }
+
+        Timer timer = meterRegistry.get("ebank.transfer").timer();
+        Assertions.assertEquals(3, timer.count());
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertTrue(scrape.contains("quantile=\"0.99\""));
+        Assertions.assertTrue(scrape.contains("ebank_transfer_seconds_count"));
+    }
+
+    @Test
+    void accountCacheStatisticsArePublished() {
+        Assertions.assertNotNull(meterRegistry.find("cache.gets").tag("cache", "accounts").tag("result", "hit").functionCounter());
+        Assertions.assertNotNull(meterRegistry.find("cache.gets").tag("cache", "accounts").tag("result", "miss").functionCounter());
+        Assertions.assertNotNull(meterRegistry.find("cache.evictions").tag("cache", "accounts").functionCounter());
+    }
+
+    @Test
+    void queriesPerRequestAreRecordedByUriTemplate() throws Exception {
+        mockMvc.perform(get("/accounts/{accountId}", "15bc138b-2e1c-44eb-8a3b-c3691c56c37c"))
+                .andExpect(status().isOk());
+
+        DistributionSummary queries = meterRegistry.get(QueryCountFilter.METER_NAME)
+                .tag("method", "GET")
+                .tag("uri", "/accounts/{accountId}")
+                .summary();
+        Assertions.assertTrue(queries.count() >= 1);
+    }
+
+    @Test
+    void metricsAreScrapedInPrometheusFormat() throws Exception {
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertTrue(body.contains("hikaricp_connections_active"));
+        Assertions.assertTrue(body.contains("hibernate_statements_total"));
+        Assertions.assertTrue(body.contains("hibernate_entities_loads_total"));
+    }
+
+    @Test
+    void exportHistoryWritesOneJsonObjectPerLine() throws Exception {
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        streamOperations(accountId, 3);
+
+        MvcResult result = mockMvc.perform(get("/accounts/{accountId}/operations/export", accountId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        //long exports are not cut off by the default async timeout
+        Assertions.assertEquals(7_200_000L, result.getRequest().getAsyncContext().getTimeout());
+        String content = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = content.split("\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertTrue(lines[2].startsWith("{\"id\":3,"));
+    }
+
+    @Test
+    void exportHistoryAsCsv() throws Exception {
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        streamOperations(accountId, 2);
+
+        MvcResult result = mockMvc.perform(get("/accounts/{accountId}/operations/export", accountId).param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = content.split("\n");
+        Assertions.assertEquals("id,operationDate,amount,type,description,balanceAfter", lines[0]);
+        Assertions.assertEquals("2,1970-01-01T00:00:00.002Z,20.00,CREDIT,\"say \"\"2\"\"\",30.00", lines[2]);
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() throws Exception {
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        Mockito.when(bankAccountService.getAccountHistory(accountId, "garbage", 5, false))
+                .thenThrow(new InvalidCursorException("Invalid cursor"));
+
+        mockMvc.perform(get("/accounts/{accountId}/cursorOperations", accountId).param("cursor", "garbage"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void creditCreditsTheAccount() throws Exception {
+        String accountId = "25bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String body = "{\"accountId\":\"" + accountId + "\",\"amount\":15,\"description\":\"deposit\"}";
+
+        mockMvc.perform(post("/accounts/credit").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+
+        Mockito.verify(bankAccountService).credit(accountId, new BigDecimal("15"), "deposit");
+        Mockito.verify(bankAccountService, Mockito.never()).debit(Mockito.eq(accountId), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void submittedDebitIsAcceptedThenAppliedInTheBackground() throws Exception {
+        String accountId = "15bc138b-2e1c-44eb-8a3b-c3691c56c37c";
+        String body = "{\"accountId\":\"" + accountId + "\",\"amount\":10,\"description\":\"async\"}";
+
+        String location = mockMvc.perform(post("/accounts/debit/async").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader("Location");
+        MvcResult result = mockMvc.perform(get(location).param("waitMillis", "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String status = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertTrue(status.contains("\"status\":\"APPLIED\""));
+        Mockito.verify(bankAccountService).debit(accountId, new BigDecimal("10"), "async");
+        mockMvc.perform(get("/operations/{operationId}", "unknown")).andExpect(status().isNotFound());
+    }
+
+    private void streamOperations(String accountId, int count) throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<AccountOperationDTO> consumer = invocation.getArgument(1);
+            for (long i = 1; i <= count; i++) {
+                AccountOperationDTO operation = new AccountOperationDTO();
+                operation.setId(i);
+                operation.setOperationDate(new Date(i));
+                operation.setAmount(Money.fromMinorUnits(i * 10_00));
+                operation.setBalanceAfter(Money.fromMinorUnits(i * (i + 1) * 5_00));
+                operation.setType(OperationType.CREDIT);
+                operation.setDescription("say \"" + i + "\"");
+                consumer.accept(operation);
+            }
+            return null;
+        }).when(bankAccountService).streamAccountHistory(Mockito.eq(accountId), Mockito.any());
+    }
+}